@@ -20,7 +20,10 @@ public class Main {
         String dbFile = "data/marketsim.db";
 
         try {
+            long t0 = System.nanoTime();
             Database db = new Database(dbFile);
+            db.startMaintenance();
+            System.out.printf("[Startup] Database opened in %.1f ms%n", (System.nanoTime() - t0) / 1e6);
             StartupWindow.getStartWindow(db);
         } catch (Exception e) {
             throw new SQLException("Failed to open database: " + dbFile, e);
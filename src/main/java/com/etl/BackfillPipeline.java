@@ -0,0 +1,699 @@
+package com.etl;
+
+import com.google.gson.stream.JsonReader;
+import com.models.Database;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Staged pipeline for historical backfill. Each gap is split into chunks,
+ * which then pass through three stages:
+ * <ul>
+ *     <li>fetch: one thread sends chunk requests as rate-limit tokens allow,
+ *     without waiting for responses</li>
+ *     <li>parse: a small pool streams each response body into row batches</li>
+ *     <li>write: one thread drains whatever batches are waiting and commits
+ *     them together, one transaction per series</li>
+ * </ul>
+ * Unsent chunks wait in one queue per {@link BackfillScheduler.Priority}, so
+ * a visible chart's chunks go out ahead of background work already queued.
+ * Bounded queues sit between the later stages, so at most a few responses are
+ * open and a few batches are buffered at a time. The wait on one chunk's response
+ * overlaps with parsing and writing of the chunks before it.
+ *
+ * Every job and its chunks are recorded in the database, and each chunk is
+ * marked done in the same pass that commits its last rows, so a job cut short
+ * by a restart can be picked up with {@link #resume}. Rate-limited and 5xx
+ * responses, network failures and bodies that cannot be read through are
+ * retried with exponential backoff; a chunk that runs out of attempts is left
+ * marked failed for the next run rather than dropped. Only other HTTP statuses
+ * fail a job outright.
+ */
+public class BackfillPipeline implements AutoCloseable {
+    private static final int PARSERS = 2;
+    private static final int PARSE_QUEUE = 4;  // responses sent but not yet parsed
+    private static final int WRITE_QUEUE = 8;  // batches parsed but not yet written
+    private static final int MAX_ATTEMPTS = 8;
+    private static final long MAX_BACKOFF_MS = 5 * 60_000;
+
+    /**
+     * Blocks until the next request may be sent.
+     */
+    @FunctionalInterface
+    interface Gate {
+        void acquire() throws InterruptedException;
+    }
+
+    /**
+     * Builds the request URL for one chunk.
+     */
+    @FunctionalInterface
+    interface UrlBuilder {
+        String url(String symbol, int multiplier, HistoricalService.Timespan timespan,
+                   LocalDate from, LocalDate to);
+    }
+
+    /**
+     * Counters since the pipeline started, and current queue depths.
+     *
+     * @param elapsedMs     Time since the pipeline started.
+     * @param chunksFetched Requests sent by the fetch stage.
+     * @param chunksParsed  Responses fully parsed.
+     * @param rowsParsed    Rows produced by the parse stage.
+     * @param rowsWritten   Rows committed by the write stage for chunks it finished.
+     * @param commits       Transactions committed by the write stage.
+     * @param fetchQueued   Chunks waiting to be sent.
+     * @param parseQueued   Responses waiting for a parser.
+     * @param writeQueued   Batches waiting for the writer.
+     */
+    public record Stats(long elapsedMs, long chunksFetched, long chunksParsed, long rowsParsed,
+                        long rowsWritten, long commits, int fetchQueued, int parseQueued, int writeQueued) {
+        /**
+         * @return Rows committed per second since the pipeline started.
+         */
+        public double rowsPerSecond() {
+            return elapsedMs == 0 ? 0 : rowsWritten * 1000.0 / elapsedMs;
+        }
+    }
+
+    /**
+     * Receives per-job progress; called on pipeline threads.
+     */
+    @FunctionalInterface
+    interface ChunkListener {
+        /**
+         * @param chunksDone  Chunks written or given up so far.
+         * @param chunksTotal Chunks in the job.
+         * @param rows        Rows written so far.
+         */
+        void onChunkDone(int chunksDone, int chunksTotal, int rows);
+    }
+
+    // one submitted backfill; done completes once every chunk is written or given up
+    private static final class Job {
+        final String symbol;
+        long id;                // backfill_jobs row, or 0 if it could not be recorded
+        final CompletableFuture<Integer> done = new CompletableFuture<>();
+        final AtomicInteger pending = new AtomicInteger();
+        final AtomicInteger inserted = new AtomicInteger();
+        final ChunkListener listener;
+        volatile BackfillScheduler.Priority priority;
+        int total;
+
+        Job(String symbol, BackfillScheduler.Priority priority, ChunkListener listener) {
+            this.symbol = symbol;
+            this.priority = priority;
+            this.listener = listener;
+        }
+
+        void chunkDone() {
+            int left = pending.decrementAndGet();
+            if (listener != null) {
+                try {
+                    listener.onChunkDone(total - left, total, inserted.get());
+                } catch (RuntimeException e) {
+                    System.err.println("[Backfill] Listener failed: " + e.getMessage());
+                }
+            }
+            if (left == 0) done.complete(inserted.get());
+        }
+    }
+
+    // written counts this attempt's committed rows; a refetch starts over from zero
+    private record Chunk(Job job, HistoricalService.Range range, int attempt, AtomicInteger written) {
+        Chunk(Job job, HistoricalService.Range range, int attempt) {
+            this(job, range, attempt, new AtomicInteger());
+        }
+    }
+    private record InFlight(Chunk chunk, CompletableFuture<HttpResponse<InputStream>> response) { }
+    private record Batch(Chunk chunk, List<Database.CandleData> rows, boolean last) { }
+    private record SeriesKey(int multiplier, String timespan) { }
+
+    private final Database db;
+    private final HttpClient http;
+    private final Gate gate;
+    private final UrlBuilder urls;
+    // chunks waiting to be sent, one FIFO per priority
+    private final EnumMap<BackfillScheduler.Priority, ArrayDeque<Chunk>> fetchQueues =
+            new EnumMap<>(BackfillScheduler.Priority.class);
+    private final ReentrantLock fetchLock = new ReentrantLock();
+    private final Condition fetchReady = fetchLock.newCondition();
+    private final BlockingQueue<InFlight> parseQueue = new ArrayBlockingQueue<>(PARSE_QUEUE);
+    private final BlockingQueue<Batch> writeQueue = new ArrayBlockingQueue<>(WRITE_QUEUE);
+    private final List<Thread> threads = new ArrayList<>();
+    private volatile ScheduledExecutorService retries;
+    private volatile boolean running;
+    private Thread writer; // joined without a timeout on close, so no commit outlives it
+    private volatile long startedMs;
+    long retryBaseMs = 5_000; // backoff without a Retry-After; tests shorten it
+    int batchRows = 5_000;    // rows per write batch; tests shorten it
+
+    // metrics
+    private final AtomicLong chunksFetched = new AtomicLong();
+    private final AtomicLong chunksParsed = new AtomicLong();
+    private final AtomicLong rowsParsed = new AtomicLong();
+    private final AtomicLong rowsWritten = new AtomicLong();
+    private final AtomicLong commits = new AtomicLong();
+
+    /**
+     * Constructs a new BackfillPipeline. Threads start on the first submit.
+     *
+     * @param db   The database to write candles to.
+     * @param http The HTTP client to fetch with.
+     * @param gate Rate limiter, acquired once per request.
+     * @param urls Builds the request URL for a chunk.
+     */
+    BackfillPipeline(Database db, HttpClient http, Gate gate, UrlBuilder urls) {
+        this.db = db;
+        this.http = http;
+        this.gate = gate;
+        this.urls = urls;
+        for (BackfillScheduler.Priority p : BackfillScheduler.Priority.values()) fetchQueues.put(p, new ArrayDeque<>());
+    }
+
+    /**
+     * Queues the given gaps for one symbol at background priority.
+     *
+     * @param symbol The stock symbol.
+     * @param gaps   The ranges to fetch.
+     * @return See {@link #submit(String, List, BackfillScheduler.Priority, ChunkListener)}.
+     */
+    public CompletableFuture<Integer> submit(String symbol, List<HistoricalService.Range> gaps) {
+        return submit(symbol, gaps, BackfillScheduler.Priority.BACKGROUND, null);
+    }
+
+    /**
+     * Queues the given gaps for one symbol. Chunks are sent highest priority
+     * first, and in submission order within a priority.
+     *
+     * @param symbol   The stock symbol.
+     * @param gaps     The ranges to fetch.
+     * @param priority The queue to send from.
+     * @param listener Told after each chunk; may be null.
+     * @return Completes with the number of rows written once every chunk is done,
+     *         or exceptionally on the first failure. Cancelling it drops the chunks
+     *         that have not been sent yet.
+     */
+    CompletableFuture<Integer> submit(String symbol, List<HistoricalService.Range> gaps,
+                                      BackfillScheduler.Priority priority, ChunkListener listener) {
+        Job job = new Job(symbol, priority, listener);
+        List<Chunk> chunks = new ArrayList<>();
+        List<Database.BackfillChunk> planned = new ArrayList<>();
+        for (HistoricalService.Range gap : gaps) {
+            final int maxChunkDays = switch (gap.timespan) {
+                case DAY -> 30;
+                case HOUR -> 14;
+                case MINUTE -> 7;
+            };
+            LocalDate cursor = gap.from;
+            while (!cursor.isAfter(gap.to)) {
+                LocalDate chunkEnd = cursor.plusDays(maxChunkDays - 1);
+                if (chunkEnd.isAfter(gap.to)) chunkEnd = gap.to;
+
+                LocalDate reqStart = TradingCalendar.nyse().nextTradingDay(cursor);
+                LocalDate reqEnd = TradingCalendar.nyse().prevTradingDay(chunkEnd);
+                if (!reqEnd.isBefore(reqStart)) {
+                    chunks.add(new Chunk(job, new HistoricalService.Range(gap.timespan, gap.multiplier,
+                            reqStart, reqEnd), 1));
+                    planned.add(new Database.BackfillChunk(reqStart.toEpochDay(), reqEnd.toEpochDay(), 0, 0));
+                    cursor = reqEnd.plusDays(1);
+                } else {
+                    cursor = chunkEnd.plusDays(1);
+                }
+            }
+        }
+        if (chunks.isEmpty()) {
+            job.done.complete(0);
+            return job.done;
+        }
+        HistoricalService.Range series = gaps.get(0);
+        try {
+            job.id = db.createBackfillJob(symbol, series.multiplier, series.timespan.token, planned);
+        } catch (SQLException e) {
+            // still fetch; it just won't survive a restart
+            System.err.println("[Backfill] Could not record job for " + symbol + ": " + e.getMessage());
+        }
+        job.total = chunks.size();
+        job.pending.set(chunks.size());
+        dispatch(job, chunks);
+        return job.done;
+    }
+
+    /**
+     * Picks up a job recorded by an earlier run. Chunks whose retry time has not
+     * come yet wait for it; the rest are queued now.
+     *
+     * @param saved    The job, as loaded by {@link Database#loadBackfillJobs()}.
+     * @param priority The queue to send from.
+     * @param listener Told after each chunk; may be null.
+     * @return As for {@link #submit(String, List, BackfillScheduler.Priority, ChunkListener)}.
+     */
+    CompletableFuture<Integer> resume(Database.BackfillJob saved, BackfillScheduler.Priority priority,
+                                      ChunkListener listener) {
+        Job job = new Job(saved.symbol(), priority, listener);
+        job.id = saved.id();
+        if (saved.chunks().isEmpty()) {
+            forget(job);
+            job.done.complete(0);
+            return job.done;
+        }
+        HistoricalService.Timespan ts = HistoricalService.Timespan.valueOf(saved.timespan().toUpperCase());
+        List<Chunk> ready = new ArrayList<>();
+        job.total = saved.chunks().size();
+        job.pending.set(job.total);
+        start();
+        long now = System.currentTimeMillis();
+        for (Database.BackfillChunk bc : saved.chunks()) {
+            Chunk c = new Chunk(job, new HistoricalService.Range(ts, saved.multiplier(),
+                    LocalDate.ofEpochDay(bc.fromDay()), LocalDate.ofEpochDay(bc.toDay())), bc.attempts() + 1);
+            long waitMs = bc.nextAttemptMs() - now;
+            if (waitMs <= 0) ready.add(c);
+            else later(() -> enqueue(c), waitMs);
+        }
+        dispatch(job, ready);
+        return job.done;
+    }
+
+    // queues chunks that can go now; the job's total is already set
+    private void dispatch(Job job, List<Chunk> ready) {
+        start();
+        fetchLock.lock();
+        try {
+            fetchQueues.get(job.priority).addAll(ready);
+            fetchReady.signal();
+        } finally {
+            fetchLock.unlock();
+        }
+    }
+
+    /**
+     * Moves a symbol's unsent chunks to another priority, e.g. when its chart is
+     * shown or closed. Chunks already sent are unaffected.
+     *
+     * @param symbol   The stock symbol.
+     * @param priority The new priority.
+     */
+    public void reprioritize(String symbol, BackfillScheduler.Priority priority) {
+        fetchLock.lock();
+        try {
+            List<Chunk> moved = new ArrayList<>();
+            for (var e : fetchQueues.entrySet()) {
+                if (e.getKey() == priority) continue;
+                e.getValue().removeIf(c -> {
+                    if (!c.job().symbol.equals(symbol)) return false;
+                    c.job().priority = priority;
+                    moved.add(c);
+                    return true;
+                });
+            }
+            fetchQueues.get(priority).addAll(moved);
+        } finally {
+            fetchLock.unlock();
+        }
+    }
+
+    private void enqueue(Chunk c) {
+        fetchLock.lock();
+        try {
+            fetchQueues.get(c.job().priority).addFirst(c);
+            fetchReady.signal();
+        } finally {
+            fetchLock.unlock();
+        }
+    }
+
+    // highest-priority chunk, or null after the timeout
+    private Chunk nextChunk(long timeoutMs) throws InterruptedException {
+        long nanos = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        fetchLock.lock();
+        try {
+            while (true) {
+                for (ArrayDeque<Chunk> q : fetchQueues.values()) {
+                    Chunk c = q.pollFirst();
+                    if (c != null) return c;
+                }
+                if (nanos <= 0) return null;
+                nanos = fetchReady.awaitNanos(nanos);
+            }
+        } finally {
+            fetchLock.unlock();
+        }
+    }
+
+    private int fetchQueued() {
+        fetchLock.lock();
+        try {
+            int n = 0;
+            for (ArrayDeque<Chunk> q : fetchQueues.values()) n += q.size();
+            return n;
+        } finally {
+            fetchLock.unlock();
+        }
+    }
+
+    /**
+     * @return A snapshot of the counters and queue depths.
+     */
+    public Stats stats() {
+        long elapsed = startedMs == 0 ? 0 : System.currentTimeMillis() - startedMs;
+        return new Stats(elapsed, chunksFetched.get(), chunksParsed.get(), rowsParsed.get(),
+                rowsWritten.get(), commits.get(), fetchQueued(), parseQueue.size(), writeQueue.size());
+    }
+
+    private synchronized void start() {
+        if (running) return;
+        running = true;
+        startedMs = System.currentTimeMillis();
+        retries = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "Backfill-Retry");
+            t.setDaemon(true);
+            return t;
+        });
+        threads.add(daemon(this::fetchLoop, "Backfill-Fetch"));
+        for (int i = 1; i <= PARSERS; i++) threads.add(daemon(this::parseLoop, "Backfill-Parse-" + i));
+        writer = daemon(this::writeLoop, "Backfill-Write");
+        threads.add(writer);
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        t.start();
+        return t;
+    }
+
+    // fetch stage
+    private void fetchLoop() {
+        try {
+            while (running) {
+                Chunk c = nextChunk(100);
+                if (c == null || c.job().done.isDone()) continue; // failed or cancelled
+
+                gate.acquire();
+                HistoricalService.Range r = c.range();
+                String url = urls.url(c.job().symbol, r.multiplier, r.timespan, r.from, r.to);
+                var req = HttpRequest.newBuilder(URI.create(url)).GET().build();
+                var resp = http.sendAsync(req, HttpResponse.BodyHandlers.ofInputStream());
+                chunksFetched.incrementAndGet();
+                parseQueue.put(new InFlight(c, resp));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // parse stage
+    private void parseLoop() {
+        try {
+            while (running) {
+                InFlight f = parseQueue.poll(100, TimeUnit.MILLISECONDS);
+                if (f == null) continue;
+                try {
+                    parse(f);
+                } catch (InterruptedException e) {
+                    throw e;
+                } catch (Exception e) {
+                    // a reset connection, truncated or malformed body: fetch the chunk again
+                    retryLater(f.chunk(), null, "read failed (" + e + ")");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void parse(InFlight f) throws Exception {
+        Chunk c = f.chunk();
+        HttpResponse<InputStream> resp;
+        try {
+            resp = f.response().get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                retryLater(c, null, "network error (" + io.getMessage() + ")");
+                return;
+            }
+            if (e.getCause() instanceof Exception cause) throw cause;
+            throw e;
+        }
+        try (InputStream body = resp.body()) {
+            if (c.job().done.isDone()) return; // closing the body discards the rest
+
+            int sc = resp.statusCode();
+            if (sc == 429 || sc >= 500) {
+                retryLater(c, resp, sc == 429 ? "429 rate limit" : "server error " + sc);
+                return;
+            }
+            if (sc != 200) {
+                // permanent: retrying the same request would fail the same way
+                // tests expect a message containing "[HistoricalService] <status>"
+                String text;
+                try {
+                    text = new String(body.readAllBytes(), StandardCharsets.UTF_8);
+                } catch (IOException e) {
+                    text = "(" + e.getMessage() + ")";
+                }
+                Job job = c.job();
+                if (!job.done.isDone()) forget(job);
+                job.done.completeExceptionally(new RuntimeException("[HistoricalService] " + sc + " " + text));
+                return;
+            }
+            streamResults(body, c);
+        }
+        chunksParsed.incrementAndGet();
+    }
+
+    /*
+     * Exponential backoff from Retry-After (or 5s), capped at MAX_BACKOFF_MS.
+     * The attempt count and next attempt time are recorded, so a restart keeps
+     * the backoff. Out of attempts, the chunk is recorded as failed and counted
+     * done for this run; the next run retries it.
+     */
+    private void retryLater(Chunk c, HttpResponse<?> resp, String reason) {
+        long base = retryBaseMs;
+        if (resp != null) {
+            try {
+                base = (long) (Double.parseDouble(resp.headers().firstValue("Retry-After").orElse("5").trim()) * 1000);
+            } catch (NumberFormatException ignore) { }
+        }
+        long sleepMs = Math.min(MAX_BACKOFF_MS,
+                (long) (base * Math.pow(2, c.attempt() - 1) + (Math.random() * 250)));
+        HistoricalService.Range r = c.range();
+        boolean giveUp = c.attempt() >= MAX_ATTEMPTS;
+        Job job = c.job();
+        if (job.id != 0) {
+            try {
+                db.deferBackfillChunk(job.id, r.from.toEpochDay(), c.attempt(),
+                        System.currentTimeMillis() + sleepMs, giveUp);
+            } catch (SQLException e) {
+                System.err.println("[Backfill] Could not record retry: " + e.getMessage());
+            }
+        }
+        if (giveUp) {
+            System.out.printf("[Backfill] %s for %s %s - %s after %d attempts; will retry on next start%n",
+                    reason, job.symbol, r.from, r.to, c.attempt());
+            job.chunkDone();
+            return;
+        }
+        System.out.printf("[Backfill] %s for %s %s - %s; retrying in %dms (attempt %d)%n",
+                reason, job.symbol, r.from, r.to, sleepMs, c.attempt());
+        if (!later(() -> enqueue(new Chunk(job, r, c.attempt() + 1)), sleepMs)) {
+            System.out.printf("[Backfill] Closed; %s %s - %s left pending for next start%n",
+                    job.symbol, r.from, r.to);
+        }
+    }
+
+    // false once close() has begun; the chunk's saved row is left for resume
+    private boolean later(Runnable task, long delayMs) {
+        ScheduledExecutorService ex = retries;
+        if (!running || ex == null) return false;
+        try {
+            ex.schedule(task, delayMs, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    // drops a job's record after a permanent failure
+    private void forget(Job job) {
+        if (job.id == 0) return;
+        try {
+            db.deleteBackfillJob(job.id);
+        } catch (SQLException e) {
+            System.err.println("[Backfill] Could not delete job " + job.id + ": " + e.getMessage());
+        }
+    }
+
+    /*
+     * Pulls polygon's aggregates response apart as it arrives and hands the
+     * results array to the writer batchRows at a time. Field order is not
+     * assumed; "status" usually follows "results".
+     */
+    private void streamResults(InputStream body, Chunk c) throws IOException, InterruptedException {
+        String symbol = c.job().symbol;
+        String status = "(missing)";
+        String err = "(none)";
+        List<Database.CandleData> batch = new ArrayList<>();
+
+        try (JsonReader in = new JsonReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "status" -> status = in.nextString();
+                    case "error" -> err = in.nextString();
+                    case "results" -> {
+                        in.beginArray();
+                        while (in.hasNext()) {
+                            batch.add(readCandle(in, symbol));
+                            if (batch.size() == batchRows) {
+                                rowsParsed.addAndGet(batch.size());
+                                writeQueue.put(new Batch(c, batch, false));
+                                batch = new ArrayList<>();
+                            }
+                        }
+                        in.endArray();
+                    }
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+        }
+        if (!"OK".equals(status)) {
+            System.out.printf("[Backfill] status=%s error=%s for %s %s - %s%n",
+                    status, err, symbol, c.range().from, c.range().to);
+        }
+        rowsParsed.addAndGet(batch.size());
+        writeQueue.put(new Batch(c, batch, true));
+    }
+
+    private static Database.CandleData readCandle(JsonReader in, String symbol) throws IOException {
+        long t = 0;
+        double o = 0, h = 0, l = 0, c = 0, v = 0;
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "t" -> t = in.nextLong();
+                case "o" -> o = in.nextDouble();
+                case "h" -> h = in.nextDouble();
+                case "l" -> l = in.nextDouble();
+                case "c" -> c = in.nextDouble();
+                case "v" -> v = in.nextDouble();
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        return new Database.CandleData(symbol, t, o, h, l, c, v);
+    }
+
+    // write stage
+    private void writeLoop() {
+        List<Batch> group = new ArrayList<>();
+        try {
+            while (running || !writeQueue.isEmpty()) {
+                Batch first = writeQueue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                group.add(first);
+                writeQueue.drainTo(group);
+                commit(group);
+                group.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // group commit: every waiting batch of one series goes into a single transaction
+    private void commit(List<Batch> group) {
+        Map<SeriesKey, Map<String, List<Database.CandleData>>> bySeries = new LinkedHashMap<>();
+        Map<SeriesKey, List<Batch>> members = new LinkedHashMap<>();
+        for (Batch b : group) {
+            if (b.chunk().job().done.isDone()) continue;
+            HistoricalService.Range r = b.chunk().range();
+            SeriesKey key = new SeriesKey(r.multiplier, r.timespan.token);
+            bySeries.computeIfAbsent(key, k -> new LinkedHashMap<>())
+                    .computeIfAbsent(b.chunk().job().symbol, k -> new ArrayList<>())
+                    .addAll(b.rows());
+            members.computeIfAbsent(key, k -> new ArrayList<>()).add(b);
+        }
+        for (var e : bySeries.entrySet()) {
+            List<Batch> batches = members.get(e.getKey());
+            try {
+                if (e.getValue().values().stream().anyMatch(rows -> !rows.isEmpty())) {
+                    db.insertCandlesBatch(e.getKey().multiplier(), e.getKey().timespan(), e.getValue());
+                    commits.incrementAndGet();
+                }
+            } catch (SQLException ex) {
+                System.err.println("[Backfill] Write failed: " + ex.getMessage());
+                for (Batch b : batches) b.chunk().job().done.completeExceptionally(ex);
+                continue;
+            }
+            for (Batch b : batches) {
+                Job job = b.chunk().job();
+                int written = b.chunk().written().addAndGet(b.rows().size());
+                if (!b.last()) continue;
+                // counted once per finished chunk, so rows of a cut-off attempt aren't counted twice
+                job.inserted.addAndGet(written);
+                rowsWritten.addAndGet(written);
+                if (job.id != 0) {
+                    try {
+                        db.completeBackfillChunk(job.id, b.chunk().range().from.toEpochDay());
+                    } catch (SQLException ex) {
+                        // rows are in; at worst the chunk is fetched again next run
+                        System.err.println("[Backfill] Could not mark chunk done: " + ex.getMessage());
+                    }
+                }
+                job.chunkDone();
+            }
+        }
+    }
+
+    /**
+     * Stops the pipeline. Batches already parsed are committed before this
+     * returns, so the database can be closed right after.
+     */
+    @Override
+    public synchronized void close() {
+        running = false;
+        for (Thread t : threads) {
+            try {
+                t.join(t == writer ? 0 : 1_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        threads.clear();
+        writer = null;
+        if (retries != null) {
+            retries.shutdownNow();
+            retries = null;
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package com.etl;
+
+import com.models.Database;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+/**
+ * Coordinates historical backfill across symbols. Requests for a series that
+ * overlap a backfill already under way only fetch the part not yet covered,
+ * and wait for the rest. Chunks are dispatched through the
+ * {@link BackfillPipeline} in priority order: the visible chart first, then
+ * watchlist symbols, then background work. The request rate is set by the
+ * token bucket the pipeline was built with, see {@link RateTier}.
+ *
+ * Progress listeners are told after every chunk and when a request finishes.
+ */
+public class BackfillScheduler {
+
+    /**
+     * Dispatch priority, highest first.
+     */
+    public enum Priority { VISIBLE, WATCHLIST, BACKGROUND }
+
+    /**
+     * Polygon request allowance for an API plan.
+     *
+     * @param name      The plan name, as accepted by {@link #of}.
+     * @param burst     Requests that may be sent back to back.
+     * @param perMinute Sustained requests per minute.
+     */
+    public record RateTier(String name, int burst, double perMinute) {
+        // polygon's free plan allows 5 calls in any minute; a full bucket of 5 plus
+        // refills would allow about 9 in the first, so it starts with one
+        public static final RateTier FREE = new RateTier("free", 1, 5);
+        public static final RateTier PAID = new RateTier("paid", 20, 600);
+
+        /**
+         * @param name A plan name; null or unknown names mean the free plan.
+         * @return The matching tier.
+         */
+        public static RateTier of(String name) {
+            return name != null && name.trim().equalsIgnoreCase(PAID.name) ? PAID : FREE;
+        }
+    }
+
+    /**
+     * Progress of one backfill request.
+     *
+     * @param symbol      The stock symbol.
+     * @param priority    The priority it was requested at.
+     * @param chunksDone  Chunks written or given up so far.
+     * @param chunksTotal Chunks planned; 0 if nothing was missing.
+     * @param rows        Rows written so far.
+     * @param finished    True once the request has completed or failed.
+     */
+    public record Progress(String symbol, Priority priority, int chunksDone, int chunksTotal,
+                           int rows, boolean finished) { }
+
+    /**
+     * Receives backfill progress. Called on pipeline threads; Swing listeners
+     * should hop to the event thread.
+     */
+    @FunctionalInterface
+    public interface ProgressListener {
+        void onProgress(Progress p);
+    }
+
+    /**
+     * Finds the missing parts of a range.
+     */
+    @FunctionalInterface
+    interface GapFinder {
+        List<HistoricalService.Range> find(String symbol, HistoricalService.Range range) throws SQLException;
+    }
+
+    private record SeriesKey(String symbol, int multiplier, HistoricalService.Timespan timespan) { }
+
+    // a request being fetched; covers [from, to] of its series
+    private static final class Active {
+        final LocalDate from;
+        final LocalDate to;
+        volatile Priority priority;
+        final CompletableFuture<Integer> done = new CompletableFuture<>();
+        volatile int chunksDone, chunksTotal;
+
+        Active(LocalDate from, LocalDate to, Priority priority) {
+            this.from = from;
+            this.to = to;
+            this.priority = priority;
+        }
+    }
+
+    private final BackfillPipeline pipeline;
+    private final GapFinder gaps;
+    private final Map<SeriesKey, List<Active>> active = new HashMap<>();
+    private final List<ProgressListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Constructs a new BackfillScheduler.
+     *
+     * @param pipeline The pipeline to dispatch through.
+     * @param gaps     Finds the missing parts of a requested range.
+     */
+    BackfillScheduler(BackfillPipeline pipeline, GapFinder gaps) {
+        this.pipeline = pipeline;
+        this.gaps = gaps;
+    }
+
+    public void addProgressListener(ProgressListener l) { listeners.add(l); }
+    public void removeProgressListener(ProgressListener l) { listeners.remove(l); }
+
+    /**
+     * Requests a range of history for a symbol.
+     *
+     * @param symbol   The stock symbol.
+     * @param range    The range wanted.
+     * @param priority The dispatch priority. An overlapping request already under
+     *                 way is raised to it if it is higher.
+     * @return Completes with the rows this request fetched itself once its range
+     *         is covered, including by overlapping requests it joined.
+     * @throws SQLException If the gaps cannot be read.
+     */
+    public CompletableFuture<Integer> request(String symbol, HistoricalService.Range range, Priority priority)
+            throws SQLException {
+        SeriesKey key = new SeriesKey(symbol, range.multiplier, range.timespan);
+        List<CompletableFuture<Integer>> joined = new ArrayList<>();
+        List<Active> seen = new ArrayList<>();
+        List<HistoricalService.Range> uncovered = new ArrayList<>();
+        uncovered.add(copy(range, range.from, range.to));
+        synchronized (this) {
+            uncovered = join(key, symbol, range, priority, uncovered, joined, seen);
+        }
+
+        // the gap scan reads the database, so it runs without the lock
+        List<HistoricalService.Range> missing = new ArrayList<>();
+        for (HistoricalService.Range r : uncovered) missing.addAll(gaps.find(symbol, r));
+
+        CompletableFuture<Integer> own;
+        Active mine = null;
+        synchronized (this) {
+            // work started by other requests during the scan covers part of what is missing
+            missing = join(key, symbol, range, priority, missing, joined, seen);
+            if (missing.isEmpty()) {
+                own = CompletableFuture.completedFuture(0);
+                if (joined.isEmpty()) fire(new Progress(symbol, priority, 0, 0, 0, true));
+            } else {
+                mine = track(key, symbol, range.from, range.to, priority);
+                own = mine.done;
+            }
+        }
+        if (mine != null) {
+            List<HistoricalService.Range> todo = missing;
+            Active a = mine;
+            // a.priority, in case a reprioritize came in before the submit
+            launch(mine, symbol, l -> pipeline.submit(symbol, todo, a.priority, l));
+        }
+
+        if (joined.isEmpty()) return own;
+        joined.add(own);
+        return CompletableFuture.allOf(joined.toArray(CompletableFuture[]::new)).thenCompose(v -> own);
+    }
+
+    /*
+     * Joins running work on the series that overlaps the range and has not been
+     * joined yet, raising it if this request is more urgent. Returns the ranges
+     * minus what that work covers. Caller holds the lock.
+     */
+    private List<HistoricalService.Range> join(SeriesKey key, String symbol, HistoricalService.Range range,
+                                               Priority priority, List<HistoricalService.Range> ranges,
+                                               List<CompletableFuture<Integer>> joined, List<Active> seen) {
+        List<Active> running = active.get(key);
+        if (running == null) return ranges;
+        running.removeIf(a -> a.done.isDone());
+        if (running.isEmpty()) {
+            active.remove(key);
+            return ranges;
+        }
+        for (Active a : running) {
+            if (seen.contains(a) || a.to.isBefore(range.from) || a.from.isAfter(range.to)) continue;
+            seen.add(a);
+            joined.add(a.done);
+            if (priority.compareTo(a.priority) < 0) {
+                a.priority = priority;
+                pipeline.reprioritize(symbol, priority);
+            }
+            ranges = subtract(ranges, a.from, a.to);
+        }
+        return ranges;
+    }
+
+    /**
+     * Resumes a job left unfinished by an earlier run, at background priority.
+     * Requests that overlap it join it as they would a request made this run.
+     *
+     * @param saved The job, as loaded by {@link Database#loadBackfillJobs()}.
+     * @return Completes with the rows it fetched.
+     */
+    public CompletableFuture<Integer> resume(Database.BackfillJob saved) {
+        HistoricalService.Timespan ts = HistoricalService.Timespan.valueOf(saved.timespan().toUpperCase());
+        SeriesKey key = new SeriesKey(saved.symbol(), saved.multiplier(), ts);
+        LocalDate from = LocalDate.MAX, to = LocalDate.MIN;
+        for (Database.BackfillChunk c : saved.chunks()) {
+            LocalDate f = LocalDate.ofEpochDay(c.fromDay()), t = LocalDate.ofEpochDay(c.toDay());
+            if (f.isBefore(from)) from = f;
+            if (t.isAfter(to)) to = t;
+        }
+        if (saved.chunks().isEmpty()) from = to = LocalDate.now();
+        Active a;
+        synchronized (this) {
+            a = track(key, saved.symbol(), from, to, Priority.BACKGROUND);
+        }
+        launch(a, saved.symbol(), l -> pipeline.resume(saved, a.priority, l));
+        return a.done;
+    }
+
+    // registers [from, to] as under way until its work completes; caller holds the lock and then calls launch
+    private Active track(SeriesKey key, String symbol, LocalDate from, LocalDate to, Priority priority) {
+        Active a = new Active(from, to, priority);
+        active.computeIfAbsent(key, k -> new ArrayList<>()).add(a);
+        a.done.whenComplete((rows, err) -> {
+            synchronized (this) {
+                List<Active> list = active.get(key);
+                if (list != null) {
+                    list.remove(a);
+                    if (list.isEmpty()) active.remove(key);
+                }
+                notifyAll();
+            }
+            fire(new Progress(symbol, a.priority, a.chunksDone, a.chunksTotal,
+                    rows == null ? 0 : rows, true));
+        });
+        return a;
+    }
+
+    /*
+     * Starts the work for a tracked range. Called without the lock: submitting
+     * writes the job to the database, and completions take the lock on the
+     * pipeline's writer thread.
+     */
+    private void launch(Active a, String symbol,
+                        Function<BackfillPipeline.ChunkListener, CompletableFuture<Integer>> start) {
+        CompletableFuture<Integer> job;
+        try {
+            job = start.apply((done, total, rows) -> {
+                a.chunksDone = done;
+                a.chunksTotal = total;
+                fire(new Progress(symbol, a.priority, done, total, rows, false));
+            });
+        } catch (RuntimeException e) {
+            a.done.completeExceptionally(e);
+            return;
+        }
+        job.whenComplete((rows, err) -> {
+            if (err == null) a.done.complete(rows);
+            else a.done.completeExceptionally(err);
+        });
+        // cancelling drops the chunks not sent yet, as it does on the pipeline's future
+        a.done.whenComplete((rows, err) -> {
+            if (a.done.isCancelled()) job.cancel(false);
+        });
+    }
+
+    /**
+     * Changes the priority of a symbol's queued work, e.g. to background when
+     * its chart is closed.
+     *
+     * @param symbol   The stock symbol.
+     * @param priority The new priority.
+     */
+    public synchronized void reprioritize(String symbol, Priority priority) {
+        for (var e : active.entrySet()) {
+            if (!e.getKey().symbol().equals(symbol)) continue;
+            for (Active a : e.getValue()) a.priority = priority;
+        }
+        pipeline.reprioritize(symbol, priority);
+        notifyAll();
+    }
+
+    /**
+     * Blocks while any request more urgent than the given priority is under
+     * way, so background work can hold off while a chart is loading.
+     *
+     * @param floor The caller's own priority.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public synchronized void awaitQuiet(Priority floor) throws InterruptedException {
+        while (busyAbove(floor)) wait();
+    }
+
+    private boolean busyAbove(Priority floor) {
+        for (List<Active> list : active.values()) {
+            for (Active a : list) {
+                if (a.priority.compareTo(floor) < 0 && !a.done.isDone()) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return The pipeline's counters and queue depths.
+     */
+    public BackfillPipeline.Stats stats() {
+        return pipeline.stats();
+    }
+
+    private void fire(Progress p) {
+        for (ProgressListener l : listeners) {
+            try {
+                l.onProgress(p);
+            } catch (RuntimeException e) {
+                System.err.println("[Backfill] Progress listener failed: " + e.getMessage());
+            }
+        }
+    }
+
+    // ranges minus [from, to]
+    private static List<HistoricalService.Range> subtract(List<HistoricalService.Range> ranges,
+                                                          LocalDate from, LocalDate to) {
+        List<HistoricalService.Range> out = new ArrayList<>();
+        for (HistoricalService.Range r : ranges) {
+            if (to.isBefore(r.from) || from.isAfter(r.to)) {
+                out.add(r);
+                continue;
+            }
+            if (r.from.isBefore(from)) out.add(copy(r, r.from, from.minusDays(1)));
+            if (r.to.isAfter(to)) out.add(copy(r, to.plusDays(1), r.to));
+        }
+        return out;
+    }
+
+    private static HistoricalService.Range copy(HistoricalService.Range r, LocalDate from, LocalDate to) {
+        return new HistoricalService.Range(r.timespan, r.multiplier, from, to);
+    }
+}
@@ -0,0 +1,241 @@
+package com.etl;
+
+import com.models.Database;
+import com.models.market.TradeListener;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rolls live trades into OHLCV bars and persists them to the prices table.
+ * Each symbol has one open bar for the current bucket. A trade in a later
+ * bucket completes the open bar, and a periodic flush completes bars whose
+ * bucket has ended. Completed bars for all symbols are written together with
+ * Database.mergeCandlesBatch in one transaction per flush.
+ *
+ * Buckets are aligned to the epoch in UTC. Trades older than a symbol's open
+ * bar, or in a bucket already completed, are counted as late and dropped.
+ * Completed bars are final once stored, so writing a session again does not
+ * change them. Open bars written on close are stored as partial, and after a
+ * restart trades up to the last one they hold are dropped as late; the rest
+ * are merged into the partial bar, so no trade is counted twice.
+ */
+public class BarAggregator implements TradeListener, AutoCloseable {
+    public static final long DEFAULT_FLUSH_MS = 5_000;
+    // how long after a bucket ends before it is closed without a new trade
+    private static final long GRACE_MS = 2_000;
+
+    private final Database db;
+    private final int multiplier;
+    private final String timespan;
+    private final long bucketMs;
+    private final ConcurrentHashMap<String, Bar> open = new ConcurrentHashMap<>();
+    // start of the newest completed bucket per symbol
+    private final ConcurrentHashMap<String, Long> completedThrough = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Database.CandleData> completed = new ConcurrentLinkedQueue<>();
+    // last trade already stored in a partial bar, per symbol, from before a restart
+    private final Map<String, Long> storedThrough;
+    private ScheduledExecutorService scheduler;
+
+    // metrics
+    private final AtomicLong trades = new AtomicLong();
+    private final AtomicLong late = new AtomicLong();
+    private final AtomicLong barsWritten = new AtomicLong();
+
+    // mutable while open; guarded by the map's per-key compute
+    private static final class Bar {
+        final long start;
+        double open, high, low, close, volume;
+        long last; // newest trade time
+
+        Bar(long start, double price, double volume, long timestamp) {
+            this.start = start;
+            this.open = this.high = this.low = this.close = price;
+            this.volume = volume;
+            this.last = timestamp;
+        }
+
+        Database.CandleData toCandle(String symbol) {
+            return new Database.CandleData(symbol, start, open, high, low, close, volume);
+        }
+    }
+
+    /**
+     * Constructs a new BarAggregator for 1-minute bars.
+     *
+     * @param db The database to write bars to.
+     */
+    public BarAggregator(Database db) {
+        this(db, 1, HistoricalService.Timespan.MINUTE);
+    }
+
+    /**
+     * Constructs a new BarAggregator. Reads which bars were left partial by an
+     * earlier run, so their trades are not counted again.
+     *
+     * @param db         The database to write bars to.
+     * @param multiplier The number of timespan units per bar.
+     * @param timespan   The bar timespan.
+     */
+    public BarAggregator(Database db, int multiplier, HistoricalService.Timespan timespan) {
+        if (multiplier <= 0) throw new IllegalArgumentException("multiplier must be > 0");
+        this.db = db;
+        this.multiplier = multiplier;
+        this.timespan = timespan.token;
+        long unit = switch (timespan) {
+            case MINUTE -> 60_000L;
+            case HOUR -> 3_600_000L;
+            case DAY -> 86_400_000L;
+        };
+        this.bucketMs = unit * multiplier;
+        Map<String, Long> through;
+        try {
+            through = db.loadPartialCandleTimes(multiplier, this.timespan);
+        } catch (SQLException e) {
+            System.err.println("[BarAggregator] Could not read partial bars: " + e.getMessage());
+            through = Map.of();
+        }
+        this.storedThrough = through;
+    }
+
+    /**
+     * Starts flushing completed bars on a daemon thread. Does nothing if already started.
+     *
+     * @param flushMs The flush interval in milliseconds.
+     */
+    public synchronized void start(long flushMs) {
+        if (scheduler != null) return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "BarAggregator");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(() -> flush(System.currentTimeMillis()),
+                flushMs, flushMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void onTrade(String symbol, double price) {
+        // no exchange time or size; nothing to aggregate
+    }
+
+    @Override
+    public void onTrade(String symbol, double price, long timestamp, double volume) {
+        if (symbol == null || !(price > 0) || timestamp <= 0) return;
+        trades.incrementAndGet();
+        Long stored = storedThrough.get(symbol);
+        if (stored != null && timestamp <= stored) {
+            late.incrementAndGet(); // already in a bar stored before the restart
+            return;
+        }
+        long start = timestamp - Math.floorMod(timestamp, bucketMs);
+        open.compute(symbol, (s, bar) -> {
+            if (bar == null) {
+                Long done = completedThrough.get(s);
+                if (done != null && start <= done) {
+                    late.incrementAndGet();
+                    return null;
+                }
+                return new Bar(start, price, volume, timestamp);
+            }
+            if (start < bar.start) {
+                late.incrementAndGet();
+                return bar;
+            }
+            if (start > bar.start) {
+                complete(s, bar);
+                return new Bar(start, price, volume, timestamp);
+            }
+            bar.high = Math.max(bar.high, price);
+            bar.low = Math.min(bar.low, price);
+            bar.close = price;
+            bar.volume += volume;
+            bar.last = Math.max(bar.last, timestamp);
+            return bar;
+        });
+    }
+
+    /**
+     * Completes bars whose bucket ended before {@code nowMs} and writes all
+     * completed bars in one transaction. Bars that fail to write are kept for
+     * the next flush.
+     *
+     * @param nowMs The current time in milliseconds.
+     * @return The number of bars written.
+     */
+    public int flush(long nowMs) {
+        for (String symbol : open.keySet()) {
+            open.computeIfPresent(symbol, (s, bar) -> {
+                if (bar.start + bucketMs + GRACE_MS > nowMs) return bar;
+                complete(s, bar);
+                return null;
+            });
+        }
+        return writeCompleted(Map.of());
+    }
+
+    // called inside open.compute for the symbol
+    private void complete(String symbol, Bar bar) {
+        completed.add(bar.toCandle(symbol));
+        completedThrough.merge(symbol, bar.start, Math::max);
+    }
+
+    // writes completed bars, and the given open ones as partial
+    private int writeCompleted(Map<String, Database.PartialCandle> partial) {
+        List<Database.CandleData> drained = new ArrayList<>();
+        for (Database.CandleData c; (c = completed.poll()) != null;) drained.add(c);
+        if (drained.isEmpty() && partial.isEmpty()) return 0;
+
+        Map<String, List<Database.CandleData>> bySymbol = new LinkedHashMap<>();
+        for (Database.CandleData c : drained) {
+            bySymbol.computeIfAbsent(c.symbol(), k -> new ArrayList<>()).add(c);
+        }
+        try {
+            db.mergeCandlesBatch(multiplier, timespan, bySymbol, partial);
+            int n = drained.size() + partial.size();
+            barsWritten.addAndGet(n);
+            return n;
+        } catch (SQLException e) {
+            System.err.println("[BarAggregator] Flush failed, keeping " + drained.size() + " bars: " + e.getMessage());
+            completed.addAll(drained);
+            return 0;
+        }
+    }
+
+    /** @return Trades aggregated so far. */
+    public long trades() { return trades.get(); }
+    /** @return Trades dropped because their bar was already completed. */
+    public long lateTrades() { return late.get(); }
+    /** @return Bars written to the database. */
+    public long barsWritten() { return barsWritten.get(); }
+
+    /**
+     * Stops the flush thread and writes every bar. Open bars are written as
+     * partial, to be completed by the next run.
+     */
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        Map<String, Database.PartialCandle> partial = new LinkedHashMap<>();
+        for (String symbol : open.keySet()) {
+            open.computeIfPresent(symbol, (s, bar) -> {
+                partial.put(s, new Database.PartialCandle(bar.toCandle(s), bar.last));
+                completedThrough.merge(s, bar.start, Math::max);
+                return null;
+            });
+        }
+        writeCompleted(partial);
+    }
+}
@@ -0,0 +1,124 @@
+package com.etl;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Fills in history for a list of symbols in the background, so their charts
+ * open from the database instead of waiting on a backfill.
+ *
+ * Symbols are taken one at a time at {@link BackfillScheduler.Priority#BACKGROUND}.
+ * Before each one the prefetcher waits until no more urgent request is under
+ * way, so a chart being opened is never queued behind it.
+ */
+public class HistoryPrefetcher {
+    private final HistoricalService hist;
+    private Thread thread;
+
+    /**
+     * Constructs a new HistoryPrefetcher.
+     *
+     * @param hist The service to backfill through.
+     */
+    public HistoryPrefetcher(HistoricalService hist) {
+        this.hist = hist;
+    }
+
+    /**
+     * Starts prefetching on a daemon thread, replacing any prefetch already
+     * running.
+     *
+     * @param symbols The symbols to fill, most important first.
+     * @param windows The chart windows to cover. Windows of the same series are
+     *                merged, so only the widest span is requested.
+     */
+    public void start(List<String> symbols, List<HistoricalService.Range> windows) {
+        List<String> todo = List.copyOf(symbols);
+        start(() -> todo, windows);
+    }
+
+    /**
+     * Starts prefetching on a daemon thread, replacing any prefetch already
+     * running. The symbols are read on that thread, so lookups that touch the
+     * database do not hold up the caller.
+     *
+     * @param symbols Reads the symbols to fill, most important first.
+     * @param windows The chart windows to cover.
+     */
+    public synchronized void start(Callable<List<String>> symbols, List<HistoricalService.Range> windows) {
+        stop();
+        List<HistoricalService.Range> spans = merge(windows);
+        thread = new Thread(() -> run(symbols, spans), "History-Prefetch");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops prefetching. Chunks already queued still finish.
+     */
+    public synchronized void stop() {
+        if (thread == null) return;
+        thread.interrupt();
+        thread = null;
+    }
+
+    private void run(Callable<List<String>> source, List<HistoricalService.Range> spans) {
+        long t0 = System.currentTimeMillis();
+        int rows = 0, backfills = 0;
+        List<String> symbols;
+        try {
+            symbols = source.call();
+        } catch (Exception e) {
+            System.err.println("[Prefetch] Could not list symbols: " + e.getMessage());
+            return;
+        }
+        System.out.printf("[Prefetch] Checking %d symbol(s)%n", symbols.size());
+        try {
+            for (String symbol : symbols) {
+                for (HistoricalService.Range span : spans) {
+                    hist.getScheduler().awaitQuiet(BackfillScheduler.Priority.BACKGROUND);
+                    try {
+                        // ensureRange clamps the range in place, so hand it a copy
+                        HistoricalService.Range missing = hist.ensureRange(symbol, copy(span));
+                        if (missing == null) continue;
+                        rows += hist.enqueueBackfill(symbol, missing, BackfillScheduler.Priority.BACKGROUND).get();
+                        backfills++;
+                    } catch (InterruptedException e) {
+                        throw e;
+                    } catch (ExecutionException e) {
+                        System.err.println("[Prefetch] " + symbol + " failed: " + e.getCause().getMessage());
+                    } catch (Exception e) {
+                        System.err.println("[Prefetch] " + symbol + " failed: " + e.getMessage());
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            System.out.println("[Prefetch] Stopped");
+            return;
+        }
+        System.out.printf("[Prefetch] Done. %d rows from %d backfill(s) across %d symbol(s) in %d ms%n",
+                rows, backfills, symbols.size(), System.currentTimeMillis() - t0);
+    }
+
+    // widest span per series
+    private static List<HistoricalService.Range> merge(List<HistoricalService.Range> windows) {
+        Map<String, HistoricalService.Range> bySeries = new LinkedHashMap<>();
+        for (HistoricalService.Range w : windows) {
+            bySeries.merge(w.multiplier + "/" + w.timespan, copy(w), (a, b) -> {
+                LocalDate from = a.from.isBefore(b.from) ? a.from : b.from;
+                LocalDate to = a.to.isAfter(b.to) ? a.to : b.to;
+                return new HistoricalService.Range(a.timespan, a.multiplier, from, to);
+            });
+        }
+        return new ArrayList<>(bySeries.values());
+    }
+
+    private static HistoricalService.Range copy(HistoricalService.Range r) {
+        return new HistoricalService.Range(r.timespan, r.multiplier, r.from, r.to);
+    }
+}
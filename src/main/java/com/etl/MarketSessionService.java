@@ -0,0 +1,185 @@
+package com.etl;
+
+import java.time.Clock;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Tracks the US equity trading session locally, from the exchange calendar and
+ * New York clock times:
+ * pre-market 04:00-09:30, regular 09:30-16:00, post-market 16:00-20:00,
+ * and closed otherwise or on non-trading days.
+ *
+ * A remote status check (Finnhub's market-status endpoint) runs only in the
+ * background, every few minutes. If it disagrees with the local calendar about
+ * whether the regular session is open (an unscheduled closure, say), its answer
+ * wins until the two agree again or the next scheduled transition. Listeners
+ * are told about every session change.
+ */
+public class MarketSessionService implements AutoCloseable {
+    public static final ZoneId EXCHANGE_ZONE = ZoneId.of("America/New_York");
+    private static final LocalTime PRE_OPEN = LocalTime.of(4, 0);
+    private static final LocalTime OPEN = LocalTime.of(9, 30);
+    private static final LocalTime CLOSE = LocalTime.of(16, 0);
+    private static final LocalTime POST_CLOSE = LocalTime.of(20, 0);
+    private static final long TICK_SECONDS = 15;
+    private static final long REMOTE_CHECK_MINUTES = 15;
+
+    /**
+     * Trading sessions, in the order they occur during a day.
+     */
+    public enum Session { CLOSED, PRE_MARKET, REGULAR, POST_MARKET }
+
+    /**
+     * Receives session transitions.
+     */
+    @FunctionalInterface
+    public interface SessionListener {
+        /**
+         * @param from The previous session.
+         * @param to   The new session.
+         */
+        void onSessionChanged(Session from, Session to);
+    }
+
+    private final Clock clock;
+    private final BooleanSupplier remoteCheck;
+    private final List<SessionListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile Boolean remoteOpen; // set only while the remote check disagrees with the calendar
+    private volatile Session current;
+    private volatile Session lastLocal;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Constructs a new MarketSessionService on the system clock.
+     *
+     * @param remoteCheck Returns whether the exchange reports itself open; may block.
+     */
+    public MarketSessionService(BooleanSupplier remoteCheck) {
+        this(Clock.systemUTC(), remoteCheck);
+    }
+
+    /**
+     * Constructs a new MarketSessionService.
+     *
+     * @param clock       The clock to read the current time from.
+     * @param remoteCheck Returns whether the exchange reports itself open; may block.
+     */
+    public MarketSessionService(Clock clock, BooleanSupplier remoteCheck) {
+        this.clock = clock;
+        this.remoteCheck = remoteCheck;
+        this.current = localSession(ZonedDateTime.now(clock));
+        this.lastLocal = current;
+    }
+
+    /**
+     * Starts the background session clock and the periodic remote check.
+     * Does nothing if already started.
+     */
+    public synchronized void start() {
+        if (scheduler != null) return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "MarketSession");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleAtFixedRate(this::evaluate, TICK_SECONDS, TICK_SECONDS, TimeUnit.SECONDS);
+        if (remoteCheck != null) {
+            scheduler.scheduleWithFixedDelay(this::checkRemote, 0, REMOTE_CHECK_MINUTES, TimeUnit.MINUTES);
+        }
+    }
+
+    public void addListener(SessionListener l) { listeners.add(l); }
+    public void removeListener(SessionListener l) { listeners.remove(l); }
+
+    /**
+     * @return The current session; no network I/O.
+     */
+    public Session session() {
+        Session local = localSession(ZonedDateTime.now(clock));
+        Boolean remote = remoteOpen;
+        if (remote == null) return local;
+        if (remote) return Session.REGULAR;
+        return local == Session.REGULAR ? Session.CLOSED : local;
+    }
+
+    /**
+     * @return True during the regular session; no network I/O.
+     */
+    public boolean isOpen() {
+        return session() == Session.REGULAR;
+    }
+
+    /**
+     * Computes the calendar session at a point in time.
+     *
+     * @param t The time.
+     * @return The session at that time, ignoring remote status.
+     */
+    public static Session localSession(ZonedDateTime t) {
+        ZonedDateTime ny = t.withZoneSameInstant(EXCHANGE_ZONE);
+        if (!TradingCalendar.nyse().isTradingDay(ny.toLocalDate())) return Session.CLOSED;
+        LocalTime tod = ny.toLocalTime();
+        if (tod.isBefore(PRE_OPEN)) return Session.CLOSED;
+        if (tod.isBefore(OPEN)) return Session.PRE_MARKET;
+        if (tod.isBefore(CLOSE)) return Session.REGULAR;
+        if (tod.isBefore(POST_CLOSE)) return Session.POST_MARKET;
+        return Session.CLOSED;
+    }
+
+    /**
+     * Recomputes the session and notifies listeners if it changed.
+     */
+    void evaluate() {
+        Session local = localSession(ZonedDateTime.now(clock));
+        if (local != lastLocal) {
+            lastLocal = local;
+            remoteOpen = null; // an override lasts until the next scheduled transition
+        }
+        Session next = session();
+        Session prev;
+        synchronized (this) {
+            prev = current;
+            if (prev == next) return;
+            current = next;
+        }
+        System.out.println("[MarketSession] " + prev + " -> " + next);
+        for (SessionListener l : listeners) {
+            try {
+                l.onSessionChanged(prev, next);
+            } catch (RuntimeException e) {
+                System.err.println("[MarketSession] Listener failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private void checkRemote() {
+        try {
+            boolean open = remoteCheck.getAsBoolean();
+            boolean localOpen = localSession(ZonedDateTime.now(clock)) == Session.REGULAR;
+            if (open != localOpen) {
+                System.out.println("[MarketSession] Exchange reports " + (open ? "open" : "closed")
+                        + ", calendar disagrees; using the exchange status");
+            }
+            remoteOpen = (open == localOpen) ? null : open;
+            evaluate();
+        } catch (RuntimeException e) {
+            System.err.println("[MarketSession] Status check failed: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+}
@@ -0,0 +1,374 @@
+package com.etl;
+
+import com.models.market.TradeListener;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Append-only journal of raw trades, for capturing a session and replaying it offline.
+ *
+ * Trades are queued by {@link #onTrade(String, double, long, double)} without
+ * blocking; if the queue is full the trade is dropped and counted. A single
+ * writer thread appends fixed-width records to rolling memory-mapped segment
+ * files:
+ * <pre>
+ *   segment-NNNNN.seg   32-byte header, then records of
+ *                       [ts:long][price:double][volume:double][symbolId:int][reserved:int]
+ *   segment-NNNNN.idx   every 1024th record: [max ts before it:long][record number:long]
+ *   symbols.txt         one symbol per line; the line number is the symbol id
+ * </pre>
+ * Segments are preallocated, and a zero timestamp marks the end of the written
+ * records. Each open starts a new segment, so earlier sessions are never rewritten.
+ */
+public class TickJournal implements TradeListener, AutoCloseable {
+    public static final int DEFAULT_SEGMENT_BYTES = 64 << 20;
+    public static final int DEFAULT_QUEUE_CAPACITY = 65_536;
+
+    static final int RECORD_BYTES = 32;
+    static final int HEADER_BYTES = RECORD_BYTES;
+    static final int INDEX_STRIDE = 1024;
+    private static final int MAGIC = 0x54494b4a; // "TIKJ"
+    private static final int VERSION = 1;
+    private static final String SYMBOLS_FILE = "symbols.txt";
+
+    /**
+     * One journaled trade.
+     */
+    public record Tick(String symbol, long timestamp, double price, double volume) { }
+
+    private final Path dir;
+    private final int segmentBytes;
+    private final ArrayBlockingQueue<Tick> queue;
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    // writer thread state
+    private final Map<String, Integer> symbolIds = new HashMap<>();
+    private BufferedWriter symbolsOut;
+    private int segmentNo;
+    private FileChannel segmentChannel;
+    private MappedByteBuffer segment;
+    private DataOutputStream indexOut;
+    private long recordNo;
+    private long maxTs = Long.MIN_VALUE;
+
+    // metrics
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * Opens a journal in a directory with default sizes.
+     *
+     * @param dir The journal directory; created if missing.
+     * @return The open journal.
+     * @throws IOException If the directory or first segment cannot be created.
+     */
+    public static TickJournal open(Path dir) throws IOException {
+        return new TickJournal(dir, DEFAULT_SEGMENT_BYTES, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Constructs a new TickJournal and starts its writer thread.
+     *
+     * @param dir           The journal directory; created if missing.
+     * @param segmentBytes  The size of each segment file.
+     * @param queueCapacity Trades that can wait for the writer before new ones are dropped.
+     * @throws IOException If the directory or first segment cannot be created.
+     */
+    public TickJournal(Path dir, int segmentBytes, int queueCapacity) throws IOException {
+        if (segmentBytes < HEADER_BYTES + RECORD_BYTES) throw new IllegalArgumentException("segment too small");
+        this.dir = dir;
+        this.segmentBytes = segmentBytes - segmentBytes % RECORD_BYTES;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        Files.createDirectories(dir);
+        List<String> known = readSymbols(dir);
+        for (int i = 0; i < known.size(); i++) symbolIds.put(known.get(i), i);
+        this.symbolsOut = Files.newBufferedWriter(dir.resolve(SYMBOLS_FILE), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        List<Path> segs = segments(dir);
+        this.segmentNo = segs.isEmpty() ? 0 : segmentNumber(segs.get(segs.size() - 1)) + 1;
+        openSegment();
+
+        this.writer = new Thread(this::writeLoop, "TickJournal");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    @Override
+    public void onTrade(String symbol, double price) {
+        // no exchange time or size; nothing to journal
+    }
+
+    @Override
+    public void onTrade(String symbol, double price, long timestamp, double volume) {
+        if (!running || symbol == null || timestamp <= 0) return;
+        if (!queue.offer(new Tick(symbol, timestamp, price, volume))) dropped.incrementAndGet();
+    }
+
+    /** @return Trades written to segments. */
+    public long written() { return written.get(); }
+    /** @return Trades dropped because the writer fell behind. */
+    public long dropped() { return dropped.get(); }
+
+    /**
+     * Stops accepting trades, writes everything queued, and closes the files.
+     */
+    @Override
+    public void close() {
+        if (!running) return;
+        running = false; // the writer sees this within one poll interval
+        try {
+            writer.join(5_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // writer
+    private void writeLoop() {
+        List<Tick> batch = new ArrayList<>(1024);
+        try {
+            while (running || !queue.isEmpty()) {
+                // not interrupted on close: an interrupt would close the mapped channel
+                Tick first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                queue.drainTo(batch);
+                for (Tick t : batch) append(t);
+                batch.clear();
+                indexOut.flush();
+            }
+        } catch (IOException | InterruptedException e) {
+            System.err.println("[TickJournal] Write failed, journal stopped: " + e);
+            running = false;
+        } finally {
+            closeFiles();
+        }
+    }
+
+    private void append(Tick t) throws IOException {
+        if (segment.remaining() < RECORD_BYTES) {
+            closeSegment();
+            segmentNo++;
+            openSegment();
+        }
+        if (recordNo % INDEX_STRIDE == 0) {
+            indexOut.writeLong(maxTs);
+            indexOut.writeLong(recordNo);
+        }
+        int pos = segment.position();
+        segment.putDouble(pos + 8, t.price());
+        segment.putDouble(pos + 16, t.volume());
+        segment.putInt(pos + 24, symbolId(t.symbol()));
+        segment.putLong(pos, t.timestamp()); // last: a non-zero ts marks the record complete
+        segment.position(pos + RECORD_BYTES);
+        recordNo++;
+        maxTs = Math.max(maxTs, t.timestamp());
+        written.incrementAndGet();
+    }
+
+    private int symbolId(String symbol) throws IOException {
+        Integer id = symbolIds.get(symbol);
+        if (id != null) return id;
+        id = symbolIds.size();
+        symbolsOut.write(symbol);
+        symbolsOut.newLine();
+        symbolsOut.flush(); // readers must see the id before the record
+        symbolIds.put(symbol, id);
+        return id;
+    }
+
+    private void openSegment() throws IOException {
+        Path seg = dir.resolve(String.format("segment-%05d.seg", segmentNo));
+        segmentChannel = FileChannel.open(seg, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = segmentChannel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        segment.putInt(MAGIC).putInt(VERSION).putInt(RECORD_BYTES);
+        segment.position(HEADER_BYTES);
+        indexOut = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexPath(seg))));
+        recordNo = 0;
+        maxTs = Long.MIN_VALUE;
+    }
+
+    private void closeSegment() throws IOException {
+        segment.force();
+        indexOut.close();
+        segmentChannel.close();
+    }
+
+    private void closeFiles() {
+        try {
+            closeSegment();
+        } catch (IOException e) {
+            System.err.println("[TickJournal] Close failed: " + e.getMessage());
+        }
+        try {
+            symbolsOut.close();
+        } catch (IOException ignore) {
+        }
+    }
+
+    // files
+    private static List<Path> segments(Path dir) throws IOException {
+        try (Stream<Path> s = Files.list(dir)) {
+            return s.filter(p -> p.getFileName().toString().matches("segment-\\d+\\.seg"))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static int segmentNumber(Path seg) {
+        String name = seg.getFileName().toString();
+        return Integer.parseInt(name.substring("segment-".length(), name.length() - ".seg".length()));
+    }
+
+    private static Path indexPath(Path seg) {
+        String name = seg.getFileName().toString();
+        return seg.resolveSibling(name.substring(0, name.length() - ".seg".length()) + ".idx");
+    }
+
+    private static List<String> readSymbols(Path dir) throws IOException {
+        Path p = dir.resolve(SYMBOLS_FILE);
+        return Files.exists(p) ? Files.readAllLines(p, StandardCharsets.UTF_8) : new ArrayList<>();
+    }
+
+    /**
+     * Sequential reader over every segment of a journal, in write order.
+     * Not thread-safe.
+     */
+    public static class Reader implements AutoCloseable {
+        private final Path dir;
+        private final List<Path> segments;
+        private List<String> symbols;
+        private int segIdx = -1;
+        private FileChannel channel;
+        private ByteBuffer buf;
+        private long minTs = Long.MIN_VALUE;
+
+        /**
+         * Opens a reader positioned at the first record.
+         *
+         * @param dir The journal directory.
+         * @throws IOException If the journal cannot be listed.
+         */
+        public Reader(Path dir) throws IOException {
+            this.dir = dir;
+            this.segments = segments(dir);
+            this.symbols = readSymbols(dir);
+        }
+
+        /**
+         * Positions the reader so that {@link #next()} returns records with a
+         * timestamp at or after {@code ts}, skipping earlier ones. Uses the segment
+         * indexes to avoid scanning records that are all older.
+         *
+         * @param ts The timestamp in milliseconds.
+         * @throws IOException If a segment cannot be read.
+         */
+        public void seek(long ts) throws IOException {
+            minTs = ts;
+            // the last segment whose first record is at or before ts
+            int target = 0;
+            for (int i = 0; i < segments.size(); i++) {
+                long first = firstTimestamp(segments.get(i));
+                if (first != 0 && first <= ts) target = i;
+            }
+            if (segments.isEmpty()) return;
+            openSegment(target);
+            long startRecord = 0;
+            Path idx = indexPath(segments.get(target));
+            if (Files.exists(idx)) {
+                try (DataInputStream in = new DataInputStream(
+                        new BufferedInputStream(Files.newInputStream(idx)))) {
+                    while (in.available() >= 16) {
+                        long maxBefore = in.readLong();
+                        long record = in.readLong();
+                        if (maxBefore >= ts) break;
+                        startRecord = record;
+                    }
+                }
+            }
+            buf.position((int) Math.min(buf.limit(), HEADER_BYTES + startRecord * RECORD_BYTES));
+        }
+
+        /**
+         * @return The next record, or null at the end of the journal.
+         * @throws IOException If a segment cannot be read.
+         */
+        public Tick next() throws IOException {
+            while (true) {
+                if (buf == null || buf.remaining() < RECORD_BYTES) {
+                    if (segIdx + 1 >= segments.size()) return null;
+                    openSegment(segIdx + 1);
+                    continue;
+                }
+                int pos = buf.position();
+                long ts = buf.getLong(pos);
+                if (ts == 0) { // end of written records in this segment
+                    buf.position(buf.limit());
+                    continue;
+                }
+                buf.position(pos + RECORD_BYTES);
+                if (ts < minTs) continue;
+                int id = buf.getInt(pos + 24);
+                if (id >= symbols.size()) symbols = readSymbols(dir);
+                String sym = id < symbols.size() ? symbols.get(id) : "#" + id;
+                return new Tick(sym, ts, buf.getDouble(pos + 8), buf.getDouble(pos + 16));
+            }
+        }
+
+        private void openSegment(int i) throws IOException {
+            if (channel != null) channel.close();
+            segIdx = i;
+            channel = FileChannel.open(segments.get(i), StandardOpenOption.READ);
+            if (channel.size() < HEADER_BYTES) { // left behind by a failed roll
+                buf = ByteBuffer.allocate(0);
+                return;
+            }
+            buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION) {
+                throw new IOException("Not a tick journal segment: " + segments.get(i));
+            }
+            buf.limit(buf.limit() - buf.limit() % RECORD_BYTES);
+            buf.position(HEADER_BYTES);
+        }
+
+        private static long firstTimestamp(Path seg) throws IOException {
+            if (Files.size(seg) < HEADER_BYTES + 8) return 0;
+            try (InputStream in = Files.newInputStream(seg)) {
+                in.skipNBytes(HEADER_BYTES);
+                byte[] b = in.readNBytes(8);
+                return b.length < 8 ? 0 : ByteBuffer.wrap(b).getLong();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (channel != null) channel.close();
+            channel = null;
+            buf = null;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.etl;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.MonthDay;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Exchange trading-day calendar.
+ *
+ * Each year is computed once, on first use, into a bitset of trading days
+ * (indexed by day of year) plus a running count, so {@link #isTradingDay} is a
+ * bit test and counting or stepping across trading days costs a lookup per
+ * year rather than a holiday computation per date.
+ *
+ * Holidays come from pluggable {@link Rule}s; one-off closures (national days
+ * of mourning, weather) are listed separately as ad-hoc dates.
+ */
+public final class TradingCalendar {
+
+    /**
+     * Produces the exchange holidays that fall in a given year.
+     */
+    @FunctionalInterface
+    public interface Rule {
+        /**
+         * @param year The year.
+         * @return Closed dates; dates outside the year are ignored.
+         */
+        Collection<LocalDate> closures(int year);
+    }
+
+    /**
+     * NYSE full-day holidays, with Saturday holidays observed on Friday and
+     * Sunday holidays on Monday. A Saturday New Year's Day is not observed,
+     * as the exchange does not close on the last trading day of the year.
+     */
+    public static final Rule NYSE_HOLIDAYS = year -> {
+        List<LocalDate> out = new ArrayList<>();
+        for (MonthDay md : List.of(
+                MonthDay.of(1, 1),   // New Year's Day
+                MonthDay.of(6, 19),  // Juneteenth
+                MonthDay.of(7, 4),   // Independence Day
+                MonthDay.of(12, 25)  // Christmas
+        )) {
+            LocalDate actual = md.atYear(year);
+            switch (actual.getDayOfWeek()) {
+                case SATURDAY -> { if (!md.equals(MonthDay.of(1, 1))) out.add(actual.minusDays(1)); }
+                case SUNDAY -> out.add(actual.plusDays(1));
+                default -> out.add(actual);
+            }
+        }
+        out.add(nthWeekdayOfMonth(year, Month.JANUARY, DayOfWeek.MONDAY, 3));   // MLK Day
+        out.add(nthWeekdayOfMonth(year, Month.FEBRUARY, DayOfWeek.MONDAY, 3));  // Presidents' Day
+        out.add(lastWeekdayOfMonth(year, Month.MAY, DayOfWeek.MONDAY));         // Memorial Day
+        out.add(nthWeekdayOfMonth(year, Month.SEPTEMBER, DayOfWeek.MONDAY, 1)); // Labor Day
+        out.add(nthWeekdayOfMonth(year, Month.NOVEMBER, DayOfWeek.THURSDAY, 4));// Thanksgiving
+        out.add(easterSunday(year).minusDays(2));                               // Good Friday
+        return out;
+    };
+
+    private static final TradingCalendar NYSE = new TradingCalendar(
+            List.of(NYSE_HOLIDAYS),
+            List.of(LocalDate.of(2025, 1, 9)) // Day of Mourning for Jimmy Carter
+    );
+
+    /**
+     * @return The shared NYSE calendar.
+     */
+    public static TradingCalendar nyse() { return NYSE; }
+
+    // trading days of one year; counts[i] = trading days before day-of-year index i
+    private record YearTable(BitSet days, int[] counts) {
+        int total() { return counts[counts.length - 1]; }
+    }
+
+    private final List<Rule> rules;
+    private final Set<LocalDate> adHoc;
+    private final ConcurrentHashMap<Integer, YearTable> years = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a new TradingCalendar. Weekends are always closed.
+     *
+     * @param rules  Holiday rules.
+     * @param adHoc  One-off closures.
+     */
+    public TradingCalendar(List<Rule> rules, Collection<LocalDate> adHoc) {
+        this.rules = List.copyOf(rules);
+        this.adHoc = Set.copyOf(adHoc);
+    }
+
+    /**
+     * @param d The date.
+     * @return True if the exchange trades on that date.
+     */
+    public boolean isTradingDay(LocalDate d) {
+        return year(d.getYear()).days().get(d.getDayOfYear() - 1);
+    }
+
+    /**
+     * @param d The date.
+     * @return d if it is a trading day, otherwise the next trading day after it.
+     */
+    public LocalDate nextTradingDay(LocalDate d) {
+        int y = d.getYear();
+        int i = year(y).days().nextSetBit(d.getDayOfYear() - 1);
+        while (i < 0) {
+            y++;
+            i = year(y).days().nextSetBit(0);
+        }
+        return LocalDate.ofYearDay(y, i + 1);
+    }
+
+    /**
+     * @param d The date.
+     * @return d if it is a trading day, otherwise the last trading day before it.
+     */
+    public LocalDate prevTradingDay(LocalDate d) {
+        int y = d.getYear();
+        int i = year(y).days().previousSetBit(d.getDayOfYear() - 1);
+        while (i < 0) {
+            y--;
+            i = year(y).days().previousSetBit(Year.of(y).length() - 1);
+        }
+        return LocalDate.ofYearDay(y, i + 1);
+    }
+
+    /**
+     * Counts trading days in a date range.
+     *
+     * @param from First date, inclusive.
+     * @param to   Last date, inclusive.
+     * @return The number of trading days, or 0 if to is before from.
+     */
+    public int countTradingDays(LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) return 0;
+        int n = 0;
+        for (int y = from.getYear(); y < to.getYear(); y++) n += year(y).total();
+        return n + throughDay(to) - year(from.getYear()).counts()[from.getDayOfYear() - 1];
+    }
+
+    /**
+     * Steps across trading days.
+     *
+     * @param d The starting date; need not be a trading day.
+     * @param n How many trading days to move; negative moves backwards.
+     * @return The n-th trading day after (or before) d, or d itself if n is 0.
+     */
+    public LocalDate plusTradingDays(LocalDate d, int n) {
+        if (n == 0) return d;
+        int y = d.getYear();
+        // 1-based rank of the target trading day within year y
+        int k = n > 0
+                ? throughDay(d) + n
+                : year(y).counts()[d.getDayOfYear() - 1] + n + 1;
+        while (k > year(y).total()) k -= year(y++).total();
+        while (k < 1) k += year(--y).total();
+        int[] counts = year(y).counts();
+        // smallest index whose inclusive count reaches k
+        int lo = 0, hi = counts.length - 2;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (counts[mid + 1] >= k) hi = mid; else lo = mid + 1;
+        }
+        return LocalDate.ofYearDay(y, lo + 1);
+    }
+
+    private int throughDay(LocalDate d) {
+        return year(d.getYear()).counts()[d.getDayOfYear()];
+    }
+
+    private YearTable year(int y) {
+        return years.computeIfAbsent(y, this::build);
+    }
+
+    private YearTable build(int y) {
+        Set<LocalDate> closed = new HashSet<>();
+        for (Rule r : rules) closed.addAll(r.closures(y));
+        for (LocalDate d : adHoc) if (d.getYear() == y) closed.add(d);
+
+        int len = Year.of(y).length();
+        BitSet days = new BitSet(len);
+        int[] counts = new int[len + 1];
+        LocalDate d = LocalDate.of(y, 1, 1);
+        for (int i = 0; i < len; i++, d = d.plusDays(1)) {
+            DayOfWeek w = d.getDayOfWeek();
+            boolean open = w != DayOfWeek.SATURDAY && w != DayOfWeek.SUNDAY && !closed.contains(d);
+            if (open) days.set(i);
+            counts[i + 1] = counts[i] + (open ? 1 : 0);
+        }
+        return new YearTable(days, counts);
+    }
+
+    private static LocalDate nthWeekdayOfMonth(int y, Month m, DayOfWeek dow, int n) {
+        LocalDate d = LocalDate.of(y, m, 1);
+        int shift = (dow.getValue() - d.getDayOfWeek().getValue() + 7) % 7;
+        return d.plusDays(shift + (n - 1) * 7L);
+    }
+    private static LocalDate lastWeekdayOfMonth(int y, Month m, DayOfWeek dow) {
+        LocalDate d = LocalDate.of(y, m, m.length(Year.isLeap(y)));
+        int shiftBack = (d.getDayOfWeek().getValue() - dow.getValue() + 7) % 7;
+        return d.minusDays(shiftBack);
+    }
+    private static LocalDate easterSunday(int y) {
+        int a = y % 19;
+        int b = y / 100, c = y % 100;
+        int d = b / 4, e = b % 4;
+        int f = (b + 8) / 25;
+        int g = (b - f + 1) / 3;
+        int h = (19 * a + b - d - g + 15) % 30;
+        int i = c / 4, k = c % 4;
+        int l = (32 + 2 * e + 2 * i - h - k) % 7;
+        int m = (a + 11 * h + 22 * l) / 451;
+        int month = (h + l - 7 * m + 114) / 31;
+        int day = ((h + l - 7 * m + 114) % 31) + 1;
+        return LocalDate.of(y, month, day);
+    }
+}
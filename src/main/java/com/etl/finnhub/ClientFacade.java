@@ -1,11 +1,16 @@
 package com.etl.finnhub;
 
 import com.models.market.CompanyProfile;
+import com.etl.MarketSessionService;
 import com.etl.TradeSource;
 import com.models.market.TradeListener;
 import com.tools.MockFinnhubClient;
 import io.github.cdimascio.dotenv.Dotenv;
 
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 /**
  * A facade that unifies various Finnhub clients (WebSocket, Quote, Info,
  * Search) into a single interface.
@@ -20,11 +25,19 @@ public class ClientFacade implements TradeListener, TradeSource {
     SearchClient searchClient;
 
     TradeListener tradeListener;
+    private MarketSessionService sessions; // null when offline
+    private final List<TradeListener> taps = new CopyOnWriteArrayList<>();
+
+    // concurrent identical requests share one call; results are reused briefly
+    private static final long QUOTE_TTL_MS = 2_000;
+    private static final long PROFILE_TTL_MS = 60_000;
+    private final SingleFlight<String, double[]> quotes = new SingleFlight<>(QUOTE_TTL_MS);
+    private final SingleFlight<String, CompanyProfile> profiles = new SingleFlight<>(PROFILE_TTL_MS);
 
     /**
      * Constructs a new ClientFacade.
      * Initializes sub-clients and determines whether to use the real WebSocket or a
-     * mock based on market status.
+     * mock based on the locally computed market session.
      *
      * @throws Exception If an error occurs during initialization.
      */
@@ -33,6 +46,8 @@ public class ClientFacade implements TradeListener, TradeSource {
         quoteClient = new QuoteClient(apiKey);
         infoClient = new InfoClient(apiKey);
         searchClient = new SearchClient(apiKey);
+        sessions = new MarketSessionService(MarketStatusClient::checkStatus);
+        sessions.start();
 
         if (getMarketStatus()) {
             webSocketClient = WebSocketClient.start(apiKey);
@@ -49,20 +64,69 @@ public class ClientFacade implements TradeListener, TradeSource {
 
     }
 
+    private ClientFacade(TradeSource source) {
+        webSocketClient = source;
+        webSocketClient.setTradeListener(this);
+    }
+
+    /**
+     * Creates a facade that takes trades from the given source and makes no
+     * network calls. Quotes are NaN, profiles null and searches empty until the
+     * source provides trades. Used for replay and load runs.
+     *
+     * @param source The trade source, e.g. a replay.
+     * @return The offline facade.
+     */
+    public static ClientFacade offline(TradeSource source) {
+        return new ClientFacade(source);
+    }
+
+    private boolean isOffline() {
+        return quoteClient == null;
+    }
+
     /**
-     * Checks if the US market is currently open.
+     * Checks whether trades come from the market rather than an offline source
+     * such as a replay. Only live trades should be recorded.
+     *
+     * @return True unless the facade was made by {@link #offline}.
+     */
+    public boolean isLive() {
+        return !isOffline();
+    }
+
+    /**
+     * Checks if the US market is currently open, from the local session model.
+     * Makes no network call.
      *
      * @return True if the market is open, false otherwise.
      */
     public boolean getMarketStatus() {
-        return MarketStatusClient.checkStatus();
+        return sessions != null && sessions.isOpen();
+    }
+
+    /**
+     * @return The trading-session service, or null for an offline facade.
+     */
+    public MarketSessionService getSessionService() {
+        return sessions;
     }
 
+    /**
+     * Fetches open, current and previous close for a symbol. Concurrent calls for
+     * the same symbol share one request.
+     *
+     * @param symbol The stock symbol.
+     * @return {open, current, previousClose}.
+     */
     public double[] fetchInitializingQuote(String symbol) {
-        return quoteClient.fetchInitializingQuote(symbol);
+        if (isOffline()) return new double[] {Double.NaN, Double.NaN, Double.NaN};
+        return quotes.get(key(symbol), () -> quoteClient.fetchInitializingQuote(symbol)).clone();
     }
     public double fetchCurrentQuote(String symbol) {
-        return quoteClient.fetchCurrentQuote(symbol);
+        if (isOffline()) return Double.NaN;
+        // same /quote endpoint, so it shares the in-flight request and cache
+        return fetchInitializingQuote(symbol)[1];
     }
 
     /**
@@ -72,7 +136,26 @@ public class ClientFacade implements TradeListener, TradeSource {
      * @return The CompanyProfile.
      */
     public CompanyProfile fetchInfo(String symbol) {
-        return infoClient.fetchInfo(symbol);
+        if (isOffline()) return null;
+        return profiles.get(key(symbol), () -> infoClient.fetchInfo(symbol));
+    }
+
+    /**
+     * @return Hit, miss and coalesced counts for quote requests.
+     */
+    public SingleFlight.Stats getQuoteRequestStats() {
+        return quotes.stats();
+    }
+
+    /**
+     * @return Hit, miss and coalesced counts for company profile requests.
+     */
+    public SingleFlight.Stats getProfileRequestStats() {
+        return profiles.stats();
+    }
+
+    private static String key(String symbol) {
+        return symbol == null ? "" : symbol.trim().toUpperCase(Locale.ROOT);
     }
 
     /**
@@ -86,6 +169,38 @@ public class ClientFacade implements TradeListener, TradeSource {
         tradeListener.onTrade(symbol, price);
     }
 
+    /**
+     * Callback for timestamped trade events from the live feed. Forwards the event
+     * to the registered listener and to every tap.
+     *
+     * @param symbol    The stock symbol.
+     * @param price     The trade price.
+     * @param timestamp The trade time in milliseconds since the epoch.
+     * @param volume    The trade size.
+     */
+    @Override
+    public void onTrade(String symbol, double price, long timestamp, double volume) {
+        tradeListener.onTrade(symbol, price, timestamp, volume);
+        for (TradeListener tap : taps) {
+            try {
+                tap.onTrade(symbol, price, timestamp, volume);
+            } catch (RuntimeException e) {
+                System.err.println("[ClientFacade] Trade tap failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Adds a secondary listener for timestamped trades, such as a bar aggregator.
+     * Taps only see trades that carry exchange time and size, so simulated ticks
+     * from the mock feed are not passed to them.
+     *
+     * @param tap The listener to add.
+     */
+    public void addTradeTap(TradeListener tap) {
+        taps.add(tap);
+    }
+
     /**
      * Sets the listener to receive trade updates.
      *
@@ -118,6 +233,7 @@ public class ClientFacade implements TradeListener, TradeSource {
      * @return A 2D array of [symbol, description] pairs.
      */
     public String[][] searchSymbol(String symbol) {
+        if (isOffline()) return new String[0][];
         return searchClient.searchSymbol(symbol);
     }
 
@@ -7,7 +7,6 @@ import com.models.market.TradeListener;
 
 import java.io.IOException;
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
@@ -24,7 +23,7 @@ public class InfoClient {
     private static final String LOG_PREFIX = "[InfoClient]";
     private String apiKey;
     private final String baseUrl = "https://finnhub.io/api/v1/stock/profile2?symbol=";
-    private final HttpClient httpClient;
+    private final RequestScheduler requests;
     private final Set<String> subscribed = new ConcurrentSkipListSet<>();
 
     private volatile Database dbManager;
@@ -39,8 +38,18 @@ public class InfoClient {
      * @param apiKey The Finnhub API key.
      */
     public InfoClient(String apiKey) {
+        this(apiKey, RequestScheduler.shared());
+    }
+
+    /**
+     * Constructs a new InfoClient that sends through the given scheduler.
+     *
+     * @param apiKey   The Finnhub API key.
+     * @param requests The request scheduler.
+     */
+    public InfoClient(String apiKey, RequestScheduler requests) {
         this.apiKey = apiKey;
-        this.httpClient = HttpClient.newHttpClient();
+        this.requests = requests;
     }
 
     /**
@@ -60,7 +69,7 @@ public class InfoClient {
                 .build();
 
         try {
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> response = requests.send(request, RequestScheduler.Priority.PROFILE);
 
             int sc = response.statusCode();
 
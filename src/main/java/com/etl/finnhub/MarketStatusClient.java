@@ -9,12 +9,22 @@ import java.net.URI;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 
-import static java.net.http.HttpClient.newHttpClient;
-
 /**
  * Client for checking the status of the market (open/closed).
  */
 public class MarketStatusClient {
+    private static volatile String apiKey; // resolved once
+
+    private static String apiKey() {
+        String k = apiKey;
+        if (k == null) {
+            k = System.getenv("FINNHUB_API_KEY");
+            if (k == null || k.isBlank())
+                k = Dotenv.configure().ignoreIfMissing().load().get("FINNHUB_API_KEY");
+            apiKey = k;
+        }
+        return k;
+    }
 
     /**
      * Checks if the US market is currently open.
@@ -22,10 +32,7 @@ public class MarketStatusClient {
      * @return True if the market is open, false otherwise.
      */
     public static boolean checkStatus() {
-        Dotenv dotenv = Dotenv.configure().ignoreIfMissing().load();
-        String k = System.getenv("FINNHUB_API_KEY");
-        if (k == null || k.isBlank())
-            k = dotenv.get("FINNHUB_API_KEY");
+        String k = apiKey();
 
         URI uri = URI.create("https://finnhub.io/api/v1/stock/market-status?exchange=US&token=" + k);
 
@@ -33,10 +40,9 @@ public class MarketStatusClient {
 
         HttpResponse<String> response = null;
         try {
-            response = newHttpClient().send(request, HttpResponse.BodyHandlers.ofString());
-            JsonObject responseJson = new JsonParser().parse(response.body()).getAsJsonObject();
+            response = RequestScheduler.shared().send(request, RequestScheduler.Priority.QUOTE);
+            JsonObject responseJson = JsonParser.parseString(response.body()).getAsJsonObject();
             String r = responseJson.get("isOpen").getAsString();
-            System.out.println(r);
             boolean status = Boolean.parseBoolean(r);
             return status;
         } catch (IOException e) {
@@ -7,7 +7,6 @@ import org.json.JSONObject;
 
 import java.io.IOException;
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
@@ -20,7 +19,7 @@ public class QuoteClient {
     private static final String LOG_PREFIX = "[FinnhubQuoteClient]";
     private String apiKey;
     private final String baseUrl = "https://finnhub.io/api/v1/quote?symbol=";
-    private final HttpClient httpClient;
+    private final RequestScheduler requests;
 
     /**
      * Constructs a new QuoteClient.
@@ -28,8 +27,18 @@ public class QuoteClient {
      * @param apiKey The Finnhub API key.
      */
     public QuoteClient(String apiKey) {
+        this(apiKey, RequestScheduler.shared());
+    }
+
+    /**
+     * Constructs a new QuoteClient that sends through the given scheduler.
+     *
+     * @param apiKey   The Finnhub API key.
+     * @param requests The request scheduler.
+     */
+    public QuoteClient(String apiKey, RequestScheduler requests) {
         this.apiKey = apiKey;
-        this.httpClient = HttpClient.newHttpClient();
+        this.requests = requests;
     }
 
     /**
@@ -49,7 +58,7 @@ public class QuoteClient {
 
         try {
             HttpResponse<String> response =
-                    httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+                    requests.send(request, RequestScheduler.Priority.QUOTE);
 
             int sc = response.statusCode();
 
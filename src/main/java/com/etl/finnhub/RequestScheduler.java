@@ -0,0 +1,239 @@
+package com.etl.finnhub;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Central scheduler for Finnhub REST calls. All clients share one HttpClient and
+ * one token bucket sized to the API quota. Waiting requests are queued by
+ * priority (interactive search first, then quotes, then profile refreshes) and
+ * in submission order within a priority. Queued requests can be cancelled
+ * through their future. A 429 response pauses dispatch for the server's
+ * Retry-After and puts the request back in the queue, up to two times.
+ */
+public class RequestScheduler implements AutoCloseable {
+    public static final int DEFAULT_PER_MINUTE = 60;
+    // finnhub allows 60 calls in any minute; a burst of 30 plus a minute of refills
+    // would allow about 90 in the first, so warm-up starts with a single token
+    public static final int DEFAULT_BURST = 1;
+    private static final int MAX_RETRIES = 2;
+    private static final long DEFAULT_BACKOFF_MS = 1_000;
+    private static final long MAX_BACKOFF_MS = 60_000;
+    private static final long MAX_IDLE_WAIT_NS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final String LOG_PREFIX = "[RequestScheduler]";
+
+    /**
+     * Request classes, highest priority first.
+     */
+    public enum Priority { SEARCH, QUOTE, PROFILE }
+
+    private static RequestScheduler shared;
+
+    private final HttpClient http;
+    private final TokenBucket bucket;
+    private final PriorityBlockingQueue<Job> queue = new PriorityBlockingQueue<>();
+    private final AtomicLong seq = new AtomicLong();
+    private final Thread dispatcher;
+    private volatile boolean running = true;
+    private volatile long pausedUntil; // System.nanoTime
+
+    // metrics
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+
+    private static final class Job implements Comparable<Job> {
+        final HttpRequest request;
+        final Priority priority;
+        final long seq;
+        final CompletableFuture<HttpResponse<String>> future = new CompletableFuture<>();
+        int attempts;
+
+        Job(HttpRequest request, Priority priority, long seq) {
+            this.request = request;
+            this.priority = priority;
+            this.seq = seq;
+        }
+
+        @Override
+        public int compareTo(Job o) {
+            int c = priority.compareTo(o.priority);
+            return c != 0 ? c : Long.compare(seq, o.seq);
+        }
+    }
+
+    /**
+     * Returns the process-wide scheduler, created on first use with the default quota.
+     *
+     * @return The shared scheduler.
+     */
+    public static synchronized RequestScheduler shared() {
+        if (shared == null) {
+            shared = new RequestScheduler(HttpClient.newHttpClient(), DEFAULT_BURST, DEFAULT_PER_MINUTE);
+        }
+        return shared;
+    }
+
+    /**
+     * Constructs a new RequestScheduler and starts its dispatcher thread.
+     *
+     * @param http      The HttpClient to send with.
+     * @param burst     The number of calls that may be sent back to back.
+     * @param perMinute The sustained call rate.
+     */
+    public RequestScheduler(HttpClient http, int burst, int perMinute) {
+        this.http = http;
+        this.bucket = new TokenBucket(burst, perMinute / 60.0);
+        this.dispatcher = new Thread(this::dispatch, "RequestScheduler");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    /**
+     * Queues a request. Cancelling the returned future removes the request from
+     * the queue if it has not been sent yet.
+     *
+     * @param request  The request.
+     * @param priority The request class.
+     * @return The future response body.
+     */
+    public CompletableFuture<HttpResponse<String>> submit(HttpRequest request, Priority priority) {
+        Job job = new Job(request, priority, seq.getAndIncrement());
+        job.future.whenComplete((r, e) -> {
+            if (e instanceof CancellationException && queue.remove(job)) cancelled.incrementAndGet();
+        });
+        queue.add(job);
+        return job.future;
+    }
+
+    /**
+     * Queues a request and waits for the response, like {@link HttpClient#send}.
+     *
+     * @param request  The request.
+     * @param priority The request class.
+     * @return The response.
+     * @throws IOException          If the request fails.
+     * @throws InterruptedException If interrupted while waiting; the request is cancelled.
+     */
+    public HttpResponse<String> send(HttpRequest request, Priority priority) throws IOException, InterruptedException {
+        CompletableFuture<HttpResponse<String>> f = submit(request, priority);
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            f.cancel(false);
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) throw io;
+            throw new IOException(cause);
+        }
+    }
+
+    /** @return Requests sent, including retries. */
+    public long sent() { return sent.get(); }
+    /** @return 429 responses received. */
+    public long throttled() { return throttled.get(); }
+    /** @return Queued requests cancelled before they were sent. */
+    public long cancelled() { return cancelled.get(); }
+    /** @return Requests waiting to be sent. */
+    public int queued() { return queue.size(); }
+
+    private void dispatch() {
+        while (running) {
+            Job job;
+            try {
+                job = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (job.future.isDone()) continue;
+
+            long wait = Math.max(pausedUntil - System.nanoTime(), bucket.nanosUntilAvailable());
+            if (wait > 0 || !bucket.tryAcquire()) {
+                // put it back so a higher-priority request arriving meanwhile goes first
+                queue.add(job);
+                LockSupport.parkNanos(Math.min(Math.max(wait, 1), MAX_IDLE_WAIT_NS));
+                continue;
+            }
+            job.attempts++;
+            sent.incrementAndGet();
+            http.sendAsync(job.request, HttpResponse.BodyHandlers.ofString())
+                    .whenComplete((resp, err) -> {
+                        try {
+                            complete(job, resp, err);
+                        } catch (RuntimeException e) {
+                            // never leave a caller of send() waiting on a future nobody completes
+                            job.future.completeExceptionally(e);
+                        }
+                    });
+        }
+    }
+
+    private void complete(Job job, HttpResponse<String> resp, Throwable err) {
+        if (err != null) {
+            job.future.completeExceptionally(err);
+            return;
+        }
+        if (resp.statusCode() == 429) {
+            throttled.incrementAndGet();
+            long backoffMs = retryAfterMs(resp.headers(), System.currentTimeMillis());
+            pausedUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoffMs);
+            bucket.drain();
+            if (job.attempts <= MAX_RETRIES && !job.future.isDone()) {
+                System.err.println(LOG_PREFIX + " Rate limited; retrying " + job.priority + " in " + backoffMs + " ms");
+                queue.add(job);
+                return;
+            }
+        }
+        job.future.complete(resp);
+    }
+
+    /**
+     * Reads Retry-After, which is either delay-seconds or an HTTP-date. Anything
+     * missing, unparseable or shorter than the default backoff gives the default;
+     * anything longer than a minute is capped.
+     *
+     * @param headers The response headers.
+     * @param nowMs   The current time, for HTTP-dates.
+     * @return The backoff in milliseconds.
+     */
+    static long retryAfterMs(HttpHeaders headers, long nowMs) {
+        String v = headers.firstValue("Retry-After").map(String::trim).orElse("");
+        long ms = DEFAULT_BACKOFF_MS;
+        if (!v.isEmpty()) {
+            try {
+                ms = (long) (Double.parseDouble(v) * 1_000);
+            } catch (NumberFormatException notSeconds) {
+                try {
+                    ms = ZonedDateTime.parse(v, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli() - nowMs;
+                } catch (DateTimeParseException notADate) {
+                    System.err.println(LOG_PREFIX + " Ignoring Retry-After: " + v);
+                }
+            }
+        }
+        return Math.min(Math.max(ms, DEFAULT_BACKOFF_MS), MAX_BACKOFF_MS);
+    }
+
+    /**
+     * Stops dispatching and cancels every queued request.
+     */
+    @Override
+    public void close() {
+        running = false;
+        dispatcher.interrupt();
+        for (Job job; (job = queue.poll()) != null;) job.future.cancel(false);
+    }
+}
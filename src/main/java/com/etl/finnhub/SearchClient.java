@@ -5,7 +5,6 @@ import org.json.JSONObject;
 
 import java.io.IOException;
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
@@ -18,7 +17,7 @@ public class SearchClient {
     private static final String LOG_PREFIX = "[FinnhubSearchClient]";
     private String apiKey;
     private final String baseUrl = "https://finnhub.io/api/v1/search?q=";
-    private final HttpClient httpClient;
+    private final RequestScheduler requests;
 
     /**
      * Constructs a new SearchClient.
@@ -26,8 +25,18 @@ public class SearchClient {
      * @param apiKey The Finnhub API key.
      */
     public SearchClient(String apiKey) {
+        this(apiKey, RequestScheduler.shared());
+    }
+
+    /**
+     * Constructs a new SearchClient that sends through the given scheduler.
+     *
+     * @param apiKey   The Finnhub API key.
+     * @param requests The request scheduler.
+     */
+    public SearchClient(String apiKey, RequestScheduler requests) {
         this.apiKey = apiKey;
-        this.httpClient = HttpClient.newHttpClient();
+        this.requests = requests;
     }
 
     /**
@@ -47,7 +56,7 @@ public class SearchClient {
                 .build();
 
         try {
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> response = requests.send(request, RequestScheduler.Priority.SEARCH);
 
             int sc = response.statusCode();
             if (sc < 200 || sc >= 300) {
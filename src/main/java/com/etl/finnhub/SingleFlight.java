@@ -0,0 +1,124 @@
+package com.etl.finnhub;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent loads of the same key and caches results briefly.
+ * The first caller for a key runs the loader; callers that arrive while it is
+ * running wait on the same future instead of issuing their own request. A
+ * non-null result is then served from cache until the TTL expires. Failures and
+ * null results are not cached.
+ *
+ * @param <K> The key type.
+ * @param <V> The result type.
+ */
+public class SingleFlight<K, V> {
+    private final long ttlNanos;
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<K, Cached<V>> cache = new ConcurrentHashMap<>();
+
+    // metrics
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    private record Cached<V>(V value, long expiresAt) { }
+
+    /**
+     * Counters since the SingleFlight was created.
+     *
+     * @param hits      Calls answered from the cache.
+     * @param misses    Calls that ran the loader.
+     * @param coalesced Calls that joined a load already in flight.
+     */
+    public record Stats(long hits, long misses, long coalesced) { }
+
+    /**
+     * Constructs a new SingleFlight.
+     *
+     * @param ttlMs How long a result is served from cache, in milliseconds; 0 disables caching.
+     */
+    public SingleFlight(long ttlMs) {
+        this.ttlNanos = ttlMs * 1_000_000L;
+    }
+
+    /**
+     * Returns the result for a key, loading it at most once across concurrent callers.
+     *
+     * @param key    The key.
+     * @param loader Loads the value; runs on the calling thread of the first caller.
+     * @return The future result, already complete for the caller that loaded it.
+     */
+    public CompletableFuture<V> submit(K key, Supplier<V> loader) {
+        Cached<V> c = cache.get(key);
+        if (c != null && System.nanoTime() - c.expiresAt() < 0) {
+            hits.incrementAndGet();
+            return CompletableFuture.completedFuture(c.value());
+        }
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            coalesced.incrementAndGet();
+            return running;
+        }
+        try {
+            // a load may have finished between the cache check and putIfAbsent
+            c = cache.get(key);
+            if (c != null && System.nanoTime() - c.expiresAt() < 0) {
+                hits.incrementAndGet();
+                mine.complete(c.value());
+                return mine;
+            }
+            misses.incrementAndGet();
+            V v = loader.get();
+            if (v != null && ttlNanos > 0) cache.put(key, new Cached<>(v, System.nanoTime() + ttlNanos));
+            mine.complete(v);
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+        } catch (Error e) {
+            mine.completeExceptionally(e); // callers that joined must not wait forever
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+        return mine;
+    }
+
+    /**
+     * Like {@link #submit} but waits for the result. A loader exception is
+     * rethrown as is.
+     *
+     * @param key    The key.
+     * @param loader Loads the value.
+     * @return The result.
+     */
+    public V get(K key, Supplier<V> loader) {
+        try {
+            return submit(key, loader).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            if (e.getCause() instanceof Error err) throw err;
+            throw e;
+        }
+    }
+
+    /**
+     * Drops a cached result so the next call loads it again.
+     *
+     * @param key The key.
+     */
+    public void invalidate(K key) {
+        cache.remove(key);
+    }
+
+    /**
+     * @return A snapshot of the counters.
+     */
+    public Stats stats() {
+        return new Stats(hits.get(), misses.get(), coalesced.get());
+    }
+}
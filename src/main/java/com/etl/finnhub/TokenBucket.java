@@ -0,0 +1,84 @@
+package com.etl.finnhub;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket rate limiter. Holds up to {@code capacity} tokens and refills
+ * continuously at {@code perSecond}, so short bursts are allowed while the
+ * long-run rate stays at the refill rate.
+ */
+public class TokenBucket {
+    private final double capacity;
+    private final double perNano;
+    private double tokens;
+    private long last;
+
+    /**
+     * Constructs a new TokenBucket, initially full.
+     *
+     * @param capacity  The maximum burst size.
+     * @param perSecond The refill rate in tokens per second.
+     */
+    public TokenBucket(double capacity, double perSecond) {
+        if (capacity < 1 || perSecond <= 0) throw new IllegalArgumentException("capacity >= 1 and rate > 0 required");
+        this.capacity = capacity;
+        this.perNano = perSecond / 1e9;
+        this.tokens = capacity;
+        this.last = System.nanoTime();
+    }
+
+    /**
+     * Takes a token if one is available.
+     *
+     * @return True if a token was taken.
+     */
+    public synchronized boolean tryAcquire() {
+        refill();
+        if (tokens < 1.0) return false;
+        tokens -= 1.0;
+        return true;
+    }
+
+    /**
+     * Takes a token, sleeping until one is available. Sleeps only as long as the
+     * refill needs rather than polling.
+     *
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public void acquire() throws InterruptedException {
+        while (true) {
+            long wait;
+            synchronized (this) {
+                refill();
+                if (tokens >= 1.0) {
+                    tokens -= 1.0;
+                    return;
+                }
+                wait = (long) Math.ceil((1.0 - tokens) / perNano);
+            }
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    /**
+     * @return Nanoseconds until a token is available, or 0 if one is available now.
+     */
+    public synchronized long nanosUntilAvailable() {
+        refill();
+        return tokens >= 1.0 ? 0 : (long) Math.ceil((1.0 - tokens) / perNano);
+    }
+
+    /**
+     * Empties the bucket, e.g. after the server reports the limit was hit.
+     */
+    public synchronized void drain() {
+        refill();
+        tokens = 0;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - last) * perNano);
+        last = now;
+    }
+}
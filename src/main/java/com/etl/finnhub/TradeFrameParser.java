@@ -0,0 +1,336 @@
+package com.etl.finnhub;
+
+/**
+ * Streaming parser for Finnhub WebSocket trade frames, e.g.
+ * <pre>{"data":[{"c":null,"p":185.12,"s":"AAPL","t":1714060800123,"v":100}],"type":"trade"}</pre>
+ *
+ * Scans the frame text once and writes each trade's symbol, price, timestamp and
+ * volume into a reused {@link Trade} holder. Symbols come from a small intern
+ * table, and numbers are parsed in place. In the steady state, parsing a frame
+ * allocates nothing. Symbols containing escapes are decoded and not interned.
+ *
+ * Not thread-safe: use one parser per connection.
+ */
+public class TradeFrameParser {
+    private static final int SYMBOL_TABLE_SIZE = 1024; // power of two
+    private static final double[] POW10 = new double[23];
+    static {
+        POW10[0] = 1.0;
+        for (int i = 1; i < POW10.length; i++) POW10[i] = POW10[i - 1] * 10.0;
+    }
+
+    private final Trade trade = new Trade();
+    private final String[] symbols = new String[SYMBOL_TABLE_SIZE];
+
+    private CharSequence in;
+    private int pos;
+    private int end;
+
+    /**
+     * One trade from a frame. The same instance is refilled for every trade.
+     */
+    public static final class Trade {
+        public String symbol;
+        public double price;
+        public long timestamp;
+        public double volume;
+
+        private void clear() {
+            symbol = null;
+            price = Double.NaN;
+            timestamp = 0L;
+            volume = 0.0;
+        }
+    }
+
+    /**
+     * Receives each parsed trade.
+     */
+    @FunctionalInterface
+    public interface Sink {
+        /**
+         * @param trade The trade; only valid for the duration of the call.
+         */
+        void onTrade(Trade trade);
+    }
+
+    /**
+     * Parses one frame and passes each complete trade to the sink.
+     * Frames without a data array (pings, errors) produce no trades.
+     *
+     * @param frame The frame text.
+     * @param sink  The trade consumer.
+     * @return The number of trades delivered.
+     * @throws IllegalArgumentException If the frame is not well-formed JSON.
+     */
+    public int parse(CharSequence frame, Sink sink) {
+        this.in = frame;
+        this.pos = 0;
+        this.end = frame.length();
+        try {
+            int delivered = 0;
+            expect('{');
+            if (peek() == '}') return 0;
+            while (true) {
+                int keyStart = stringStart();
+                int keyEnd = stringEnd();
+                expect(':');
+                if (keyEquals(keyStart, keyEnd, "data") && peek() == '[') {
+                    delivered += parseTrades(sink);
+                } else {
+                    skipValue();
+                }
+                if (!nextMember('}')) return delivered;
+            }
+        } finally {
+            this.in = null;
+        }
+    }
+
+    private int parseTrades(Sink sink) {
+        int delivered = 0;
+        expect('[');
+        if (peek() == ']') { pos++; return 0; }
+        while (true) {
+            if (parseTrade()) {
+                sink.onTrade(trade);
+                delivered++;
+            }
+            if (!nextMember(']')) return delivered;
+        }
+    }
+
+    // fills the holder from one {...}; false if it lacks a symbol or price
+    private boolean parseTrade() {
+        trade.clear();
+        expect('{');
+        if (peek() == '}') { pos++; return false; }
+        while (true) {
+            int keyStart = stringStart();
+            int keyEnd = stringEnd();
+            expect(':');
+            char key = (keyEnd - keyStart == 1) ? in.charAt(keyStart) : 0;
+            skipWhitespace();
+            if (key == 's' && peek() == '"') {
+                int s = stringStart();
+                int e = stringEnd();
+                trade.symbol = symbol(s, e);
+            } else if (key == 'p' && isNumberStart()) {
+                trade.price = parseDouble();
+            } else if (key == 't' && isNumberStart()) {
+                trade.timestamp = (long) parseDouble();
+            } else if (key == 'v' && isNumberStart()) {
+                trade.volume = parseDouble();
+            } else {
+                skipValue();
+            }
+            if (!nextMember('}')) break;
+        }
+        return trade.symbol != null && !Double.isNaN(trade.price);
+    }
+
+    // after a value: true on ',' and false on the closing bracket
+    private boolean nextMember(char close) {
+        skipWhitespace();
+        char c = next();
+        if (c == ',') return true;
+        if (c == close) return false;
+        throw error("expected ',' or '" + close + "'");
+    }
+
+    // symbols
+    private String symbol(int s, int e) {
+        int h = 0;
+        for (int i = s; i < e; i++) {
+            char c = in.charAt(i);
+            if (c == '\\') return unescape(s, e);
+            h = 31 * h + c;
+        }
+        int mask = SYMBOL_TABLE_SIZE - 1;
+        for (int probe = 0; probe < 8; probe++) {
+            int idx = (h + probe) & mask;
+            String cur = symbols[idx];
+            if (cur == null) {
+                String sym = in.subSequence(s, e).toString();
+                symbols[idx] = sym;
+                return sym;
+            }
+            if (regionEquals(cur, s, e)) return cur;
+        }
+        return in.subSequence(s, e).toString(); // crowded bucket; don't cache
+    }
+
+    // the rare escaped symbol; decoded into a fresh string
+    private String unescape(int s, int e) {
+        StringBuilder sb = new StringBuilder(e - s);
+        for (int i = s; i < e; i++) {
+            char c = in.charAt(i);
+            if (c != '\\') { sb.append(c); continue; }
+            if (++i >= e) throw error("bad escape");
+            char x = in.charAt(i);
+            switch (x) {
+                case '"', '\\', '/' -> sb.append(x);
+                case 'b' -> sb.append('\b');
+                case 'f' -> sb.append('\f');
+                case 'n' -> sb.append('\n');
+                case 'r' -> sb.append('\r');
+                case 't' -> sb.append('\t');
+                case 'u' -> {
+                    if (i + 4 >= e) throw error("bad escape");
+                    int cp = 0;
+                    for (int k = 1; k <= 4; k++) {
+                        int d = Character.digit(in.charAt(i + k), 16);
+                        if (d < 0) throw error("bad escape");
+                        cp = cp * 16 + d;
+                    }
+                    sb.append((char) cp);
+                    i += 4;
+                }
+                default -> throw error("bad escape");
+            }
+        }
+        return sb.toString();
+    }
+
+    private boolean regionEquals(String str, int s, int e) {
+        if (str.length() != e - s) return false;
+        for (int i = 0; i < str.length(); i++) {
+            if (str.charAt(i) != in.charAt(s + i)) return false;
+        }
+        return true;
+    }
+
+    private boolean keyEquals(int s, int e, String key) {
+        return regionEquals(key, s, e);
+    }
+
+    // numbers
+    private boolean isNumberStart() {
+        char c = peek();
+        return c == '-' || (c >= '0' && c <= '9');
+    }
+
+    private double parseDouble() {
+        int start = pos;
+        boolean neg = false;
+        if (peek() == '-') { neg = true; pos++; }
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean exact = true;
+        while (pos < end && isDigit(in.charAt(pos))) {
+            if (digits < 18) { mantissa = mantissa * 10 + (in.charAt(pos) - '0'); digits++; }
+            else exact = false;
+            pos++;
+        }
+        if (pos < end && in.charAt(pos) == '.') {
+            pos++;
+            while (pos < end && isDigit(in.charAt(pos))) {
+                if (digits < 18) { mantissa = mantissa * 10 + (in.charAt(pos) - '0'); digits++; scale++; }
+                else exact = false;
+                pos++;
+            }
+        }
+        if (pos < end && (in.charAt(pos) == 'e' || in.charAt(pos) == 'E')) {
+            exact = false;
+            pos++;
+            if (pos < end && (in.charAt(pos) == '+' || in.charAt(pos) == '-')) pos++;
+            while (pos < end && isDigit(in.charAt(pos))) pos++;
+        }
+        if (pos == start || (neg && pos == start + 1)) throw error("expected a number");
+
+        // m / 10^k is correctly rounded when both are exact doubles
+        if (exact && mantissa < (1L << 53) && scale < POW10.length) {
+            double v = mantissa / POW10[scale];
+            return neg ? -v : v;
+        }
+        return Double.parseDouble(in.subSequence(start, pos).toString());
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    // structure
+    private void skipValue() {
+        skipWhitespace();
+        char c = peek();
+        switch (c) {
+            case '"' -> { stringStart(); stringEnd(); }
+            case '{', '[' -> skipContainer();
+            case 't' -> literal("true");
+            case 'f' -> literal("false");
+            case 'n' -> literal("null");
+            default -> {
+                if (!isNumberStart()) throw error("unexpected '" + c + "'");
+                parseDouble();
+            }
+        }
+    }
+
+    private void skipContainer() {
+        int depth = 0;
+        while (pos < end) {
+            char c = in.charAt(pos);
+            if (c == '"') {
+                stringStart();
+                stringEnd();
+                continue;
+            }
+            pos++;
+            if (c == '{' || c == '[') depth++;
+            else if ((c == '}' || c == ']') && --depth == 0) return;
+        }
+        throw error("unterminated container");
+    }
+
+    private void literal(String word) {
+        if (!regionEquals(word, pos, Math.min(end, pos + word.length()))) throw error("expected " + word);
+        pos += word.length();
+    }
+
+    // returns the index just after the opening quote
+    private int stringStart() {
+        expect('"');
+        return pos;
+    }
+
+    // advances past the closing quote and returns its index
+    private int stringEnd() {
+        while (pos < end) {
+            char c = in.charAt(pos);
+            if (c == '\\') { pos += 2; continue; }
+            if (c == '"') return pos++;
+            pos++;
+        }
+        throw error("unterminated string");
+    }
+
+    private void expect(char c) {
+        skipWhitespace();
+        if (next() != c) throw error("expected '" + c + "'");
+    }
+
+    private char peek() {
+        skipWhitespace();
+        if (pos >= end) throw error("unexpected end of frame");
+        return in.charAt(pos);
+    }
+
+    private char next() {
+        if (pos >= end) throw error("unexpected end of frame");
+        return in.charAt(pos++);
+    }
+
+    private void skipWhitespace() {
+        while (pos < end) {
+            char c = in.charAt(pos);
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') return;
+            pos++;
+        }
+    }
+
+    private IllegalArgumentException error(String what) {
+        return new IllegalArgumentException("Malformed trade frame at " + pos + ": " + what);
+    }
+}
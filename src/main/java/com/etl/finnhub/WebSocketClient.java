@@ -21,6 +21,11 @@ public class WebSocketClient implements TradeSource {
     private TradeListener tradeListener;
     private String apiKey;
 
+    // frames arrive on one thread; the parser and sink are reused for each
+    private final TradeFrameParser frameParser = new TradeFrameParser();
+    private final TradeFrameParser.Sink notifySink = trade ->
+            tradeListener.onTrade(trade.symbol, trade.price, trade.timestamp, trade.volume);
+
     /**
      * Constructs a new WebSocketClient.
      *
@@ -115,11 +120,14 @@ public class WebSocketClient implements TradeSource {
     }
 
     /**
-     * Parses a Finnhub message and stores it in the database (currently disabled).
+     * Parses a Finnhub message and stores each trade as its own daily candle.
      *
      * @param msg The message string.
      * @param db  The database instance.
+     * @deprecated Writes one row per trade; live trades are rolled into bars by
+     *             {@link com.etl.BarAggregator} instead.
      */
+    @Deprecated
     public static void parseAndStore(String msg, Database db) {
         JsonObject obj = JsonParser.parseString(msg).getAsJsonObject();
         if (!obj.has("data"))
@@ -174,16 +182,11 @@ public class WebSocketClient implements TradeSource {
      * @param msg The message string.
      */
     public void parseAndNotify(String msg) {
-        JsonObject obj = JsonParser.parseString(msg).getAsJsonObject();
-        if (!obj.has("data"))
-            return;
-
-        for (JsonElement el : obj.getAsJsonArray("data")) {
-            // System.out.println("JSON: ");
-            JsonObject trade = el.getAsJsonObject();
-            double price = trade.get("p").getAsDouble();
-            String symbol = trade.get("s").getAsString();
-            tradeListener.onTrade(symbol, price);
+        if (tradeListener == null) return;
+        try {
+            frameParser.parse(msg, notifySink);
+        } catch (IllegalArgumentException e) {
+            System.err.println("[Finnhub] Skipping frame: " + e.getMessage());
         }
     }
 }
\ No newline at end of file
@@ -1241,6 +1241,17 @@ public class AccountPanel extends ContentPanel implements ModelListener {
             refreshDisplay(model.getAccountDTO());
         } catch (SQLException ignored) { }
     }
+    @Override public void onQuotesUpdated(Set<String> symbols) {
+        // only held symbols move the account value
+        Account active = model.getActiveAccount();
+        if (active == null) return;
+        for (String sym : symbols) {
+            if (active.getPortfolio().hasShare(sym)) {
+                onQuotesUpdated();
+                return;
+            }
+        }
+    }
     @Override public void onError(String message, Throwable t) { }
 
     @Override public void addNotify() {
@@ -2,7 +2,9 @@
 
 package com.gui;
 
+import com.etl.BackfillScheduler;
 import com.etl.HistoricalService;
+import com.etl.TradingCalendar;
 import com.gui.tabs.OrderPanel;
 import com.models.ModelFacade;
 
@@ -19,8 +21,6 @@ import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Locale;
 import java.util.TimeZone;
-import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A panel that displays a stock chart and an order panel.
@@ -41,10 +41,8 @@ public class ChartPanel extends ContentPanel {
 
     private SwingWorker<?, ?> currentWorker; // for backfilling
 
-    // Rate limiting for API calls: 60 calls per minute
-    private final AtomicLong lastMinuteStart = new AtomicLong(System.currentTimeMillis());
-    private final AtomicInteger callsThisMinute = new AtomicInteger(0);
-    private static final int MAX_CALLS_PER_MINUTE = 60;
+    // registered while the panel is displayed
+    private final BackfillScheduler.ProgressListener backfillProgress = this::showBackfillProgress;
 
     /**
      * Constructs a new ChartPanel.
@@ -110,27 +108,23 @@ public class ChartPanel extends ContentPanel {
         startAutoRefresh();
     }
 
-    /**
-     * Rate-limited API call checker
-     * @return true if call is allowed, false if rate limit exceeded
-     */
-    private boolean canMakeApiCall() {
-        long now = System.currentTimeMillis();
-        long minuteStart = lastMinuteStart.get();
-
-        // reset counter
-        if (now - minuteStart >= 60000) {
-            lastMinuteStart.set(now);
-            callsThisMinute.set(0);
-        }
-
-        // check if we're under the limit
-        if (callsThisMinute.get() < MAX_CALLS_PER_MINUTE) {
-            callsThisMinute.incrementAndGet();
-            return true;
-        }
+    @Override public void addNotify() {
+        super.addNotify();
+        if (model != null) model.addBackfillListener(backfillProgress);
+    }
+    @Override public void removeNotify() {
+        if (model != null) model.removeBackfillListener(backfillProgress);
+        super.removeNotify();
+    }
 
-        return false;
+    // called on pipeline threads; symbol is only read on the EDT
+    private void showBackfillProgress(BackfillScheduler.Progress p) {
+        if (p.chunksTotal() == 0) return;
+        SwingUtilities.invokeLater(() -> {
+            if (!p.symbol().equals(symbol)) return;
+            if (p.finished()) canvas.clearProgress();
+            else canvas.setProgress(p.chunksDone(), p.chunksTotal());
+        });
     }
 
     /**
@@ -149,7 +143,7 @@ public class ChartPanel extends ContentPanel {
      * Refresh chart data by checking for new database entries
      */
     private void refreshChartData() {
-        if (symbol == null || !canMakeApiCall()) {
+        if (symbol == null) {
             return;
         }
 
@@ -337,6 +331,7 @@ public class ChartPanel extends ContentPanel {
         private double[] prices;
         private String symbol;
         private boolean loading = false;
+        private String progress = "";
 
         // Hover tooltip state
         private Point mousePos = null;
@@ -488,6 +483,19 @@ public class ChartPanel extends ContentPanel {
 
         void setLoading(boolean v) {
             loading = v;
+            progress = "";
+            repaint();
+        }
+
+        void setProgress(int done, int total) {
+            if (!loading) return;
+            progress = " " + done + "/" + total;
+            repaint();
+        }
+
+        void clearProgress() {
+            if (progress.isEmpty()) return;
+            progress = "";
             repaint();
         }
 
@@ -697,7 +705,7 @@ public class ChartPanel extends ContentPanel {
                 g2.fillRect(0, 0, getWidth(), getHeight());
                 g2.setFont(new Font("Segoe UI", Font.BOLD, 16));
                 g2.setColor(Color.WHITE);
-                String msg = "Loading…";
+                String msg = "Loading…" + progress;
                 fm = g2.getFontMetrics();
                 g2.drawString(msg, (getWidth() - fm.stringWidth(msg)) / 2, (getHeight() + fm.getAscent()) / 2);
                 g2.dispose();
@@ -730,6 +738,10 @@ public class ChartPanel extends ContentPanel {
                  !d.isAfter(maxDate);
                  d = d.plus(scale.step, scale.unit)) {
 
+                // day ticks on closed days would just snap onto a neighbouring bar
+                if (scale.unit == ChronoUnit.DAYS && scale.step == 1
+                        && !TradingCalendar.nyse().isTradingDay(d)) continue;
+
                 int idx = findNearestIndexForDate(d, zone);
                 if (idx < 0 || idx >= n) continue;
 
@@ -856,6 +868,9 @@ public class ChartPanel extends ContentPanel {
                                        TimeScale scale) {
             LocalDate first = alignToScaleStart(minDate, scale);
             if (first.isAfter(maxDate)) return 0;
+            if (scale.unit == ChronoUnit.DAYS && scale.step == 1) {
+                return TradingCalendar.nyse().countTradingDays(first, maxDate);
+            }
 
             long count = 0;
             for (LocalDate d = first; !d.isAfter(maxDate); d = d.plus(scale.step, scale.unit)) {
@@ -252,6 +252,16 @@ public class MainWindow extends JFrame
         symbolPanel.buildList(items, portfolio);
     }
 
+    /**
+     * Callback for market open/close transitions. Updates the status label.
+     *
+     * @param open True if the market is now open.
+     */
+    @Override
+    public void onMarketStatusChanged(boolean open) {
+        setMarketOpen(open);
+    }
+
     /**
      * Callback for errors. Displays an error message dialog.
      *
@@ -324,32 +334,23 @@ public class MainWindow extends JFrame
 
     /**
      * Calculates milliseconds until the next market opening.
-     * Market opens at 9:30 AM ET on weekdays.
+     * Market opens at 9:30 AM ET on trading days.
      *
      * @return Milliseconds until next market open.
      */
     private long getMillisUntilNextOpen() {
         java.time.ZoneId etZone = java.time.ZoneId.of("America/New_York");
         java.time.ZonedDateTime now = java.time.ZonedDateTime.now(etZone);
+        com.etl.TradingCalendar calendar = com.etl.TradingCalendar.nyse();
 
         // Market opens at 9:30 AM ET
-        java.time.ZonedDateTime nextOpen = now
-                .withHour(9)
-                .withMinute(30)
-                .withSecond(0)
-                .withNano(0);
-
-        // If we're past 9:30 AM today, or it's a weekend, move to next weekday
-        if (now.isAfter(nextOpen) || now.getDayOfWeek() == java.time.DayOfWeek.SATURDAY
-                || now.getDayOfWeek() == java.time.DayOfWeek.SUNDAY) {
-            nextOpen = nextOpen.plusDays(1);
-        }
-
-        // Skip weekends
-        while (nextOpen.getDayOfWeek() == java.time.DayOfWeek.SATURDAY
-                || nextOpen.getDayOfWeek() == java.time.DayOfWeek.SUNDAY) {
-            nextOpen = nextOpen.plusDays(1);
+        java.time.LocalDate day = now.toLocalDate();
+        if (!now.toLocalTime().isBefore(java.time.LocalTime.of(9, 30))) {
+            day = day.plusDays(1);
         }
+        // Skip weekends and exchange holidays
+        day = calendar.nextTradingDay(day);
+        java.time.ZonedDateTime nextOpen = day.atTime(9, 30).atZone(etZone);
 
         return java.time.Duration.between(now, nextOpen).toMillis();
     }
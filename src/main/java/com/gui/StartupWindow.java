@@ -643,12 +643,16 @@ public class StartupWindow extends ContentPanel {
                 @Override
                 protected Void doInBackground() throws SQLException {
                     try {
+                        long t0 = System.nanoTime();
                         Database.StartupState state = db.determineStartupState();
                         this.firstRun = (state == Database.StartupState.FIRST_RUN);
+                        logPhase("Startup state", t0);
 
                         if (!firstRun) {
                             long profileId = db.getSingletonProfileId();
+                            t0 = System.nanoTime();
                             profile = db.buildProfile(profileId);
+                            logPhase("Profile loaded (" + profile.getAccounts().size() + " accounts)", t0);
                             Long defaultAccountId = db.getDefaultAccountId(profileId);
                             if (defaultAccountId != null) {
                                 defaultAccount = profile.getAccounts().stream()
@@ -769,9 +773,18 @@ public class StartupWindow extends ContentPanel {
      */
     public static void runApp(Database db, Profile profile, Account account) {
         try {
+            long t0 = System.nanoTime();
             ModelFacade model = new ModelFacade(db, profile);
+            logPhase("Model created", t0);
+            t0 = System.nanoTime();
             model.setActiveAccount(account);
-            SwingUtilities.invokeLater(() -> new MainWindow(model));
+            logPhase("Active account set", t0);
+            SwingUtilities.invokeLater(() -> {
+                long t1 = System.nanoTime();
+                new MainWindow(model);
+                logPhase("Main window built", t1);
+                model.startHistoryPrefetch(TimeframeBar.defaultWindows());
+            });
         } catch (Exception e) {
             e.printStackTrace();
             JOptionPane.showMessageDialog(
@@ -779,4 +792,8 @@ public class StartupWindow extends ContentPanel {
                     "Error", JOptionPane.ERROR_MESSAGE);
         }
     }
-}
\ No newline at end of file
+
+    private static void logPhase(String phase, long startNanos) {
+        System.out.printf("[Startup] %s in %.1f ms%n", phase, (System.nanoTime() - startNanos) / 1e6);
+    }
+}
@@ -1,9 +1,14 @@
 package com.gui;
 
+import com.etl.HistoricalService;
+import com.models.ModelFacade;
+
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionListener;
 import java.time.*;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * A toolbar for selecting chart timeframes (e.g., 1D, 1W, 1M).
@@ -88,70 +93,45 @@ public class TimeframeBar extends ContentPanel {
         return true;
     }
 
-    private void applySelection() {
+    /**
+     * Returns the windows the bar offers, as of now. Charts open on one of
+     * these, so they are what's worth fetching ahead of time.
+     *
+     * @return One range per enabled button.
+     */
+    public static List<ModelFacade.Range> defaultWindows() {
         Instant now = Instant.now();
-        ZoneId utc = ZoneOffset.UTC;
-        long endMs = now.toEpochMilli();
-
-        LocalDate todayUtc = now.atZone(utc).toLocalDate();
-        LocalDate startDate;
-        int multiplier;
-        String timespan;
-        boolean log = true;
+        List<ModelFacade.Range> out = new ArrayList<>();
+        for (String label : List.of("1W", "1M", "3M", "6M", "1Y", "YTD")) out.add(window(label, now));
+        return out;
+    }
 
-        if (btn1D.isSelected()) {
-            if (log)
-                System.out.println("[TimeframeBar] huh??????");
-            startDate = todayUtc.minusDays(7);
-            // free plan doesn't allow candles for less than a day
-            // multiplier = 1; timespan = "minute";
-            multiplier = 1;
-            timespan = "day";
-        } else if (btn1W.isSelected()) {
-            if (log)
-                System.out.println("[TimeframeBar] 1W Selected");
-            startDate = todayUtc.minusWeeks(1);
-            // free plan doesn't allow candles for less than a day
-            // multiplier = 1; timespan = "hour";
-            multiplier = 1;
-            timespan = "day";
-        } else if (btn1M.isSelected()) {
-            if (log)
-                System.out.println("[TimeframeBar] 1M Selected");
-            startDate = todayUtc.minusMonths(1);
-            multiplier = 1;
-            timespan = "day";
-        } else if (btn3M.isSelected()) {
-            if (log)
-                System.out.println("[TimeframeBar] 3M Selected");
-            startDate = todayUtc.minusMonths(3);
-            multiplier = 1;
-            timespan = "day";
-        } else if (btn6M.isSelected()) {
-            if (log)
-                System.out.println("[TimeframeBar] 6M Selected");
-            startDate = todayUtc.minusMonths(6);
-            multiplier = 1;
-            timespan = "day";
-        } else if (btn1Y.isSelected()) {
-            if (log)
-                System.out.println("[TimeframeBar] 1Y Selected");
-            startDate = todayUtc.minusYears(1);
-            multiplier = 1;
-            timespan = "day";
-        } else { // YTD
-            if (log)
-                System.out.println("[TimeframeBar] YTD Selected");
-            startDate = LocalDate.of(todayUtc.getYear(), 1, 1);
-            multiplier = 1;
-            timespan = "day";
+    private void applySelection() {
+        String label = "YTD";
+        for (JToggleButton b : List.of(btn1D, btn1W, btn1M, btn3M, btn6M, btn1Y, btnYTD)) {
+            if (b.isSelected()) label = b.getText();
         }
+        System.out.println("[TimeframeBar] " + label + " Selected");
+        ModelFacade.Range w = window(label, Instant.now());
+        listener.onTimeframeChanged(w.startMs(), w.endMs(), w.mult(), w.timespan().token);
+    }
 
+    private static ModelFacade.Range window(String label, Instant now) {
+        ZoneId utc = ZoneOffset.UTC;
+        LocalDate todayUtc = now.atZone(utc).toLocalDate();
+        LocalDate startDate = switch (label) {
+            case "1D" -> todayUtc.minusDays(7);
+            case "1W" -> todayUtc.minusWeeks(1);
+            case "1M" -> todayUtc.minusMonths(1);
+            case "3M" -> todayUtc.minusMonths(3);
+            case "6M" -> todayUtc.minusMonths(6);
+            case "1Y" -> todayUtc.minusYears(1);
+            default -> LocalDate.of(todayUtc.getYear(), 1, 1); // YTD
+        };
+        // free plan doesn't allow candles for less than a day, so 1D and 1W are daily too
         long startMs = startDate.atStartOfDay(utc).toInstant().toEpochMilli();
-        if (endMs < startMs)
-            endMs = startMs;
-
-        listener.onTimeframeChanged(startMs, endMs, multiplier, timespan);
+        long endMs = Math.max(now.toEpochMilli(), startMs);
+        return new ModelFacade.Range(HistoricalService.Timespan.DAY, 1, startMs, endMs);
     }
 
     private JToggleButton makeToggle(String text) {
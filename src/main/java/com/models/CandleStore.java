@@ -0,0 +1,524 @@
+package com.models;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Columnar, memory-mapped storage for candle series.
+ * Each (symbol, multiplier, timespan) series lives in one segment file that holds
+ * the timestamp, open, high, low, close and volume columns back to back, sorted by
+ * timestamp. Range reads binary search the timestamp column and return slices of
+ * the mapped file, so charting never iterates JDBC rows.
+ *
+ * Each segment file reserves room for more rows than it holds. Rows newer than
+ * the last one are appended in place, and the last row may be overwritten in
+ * place; the row count in the header is updated after the rows. Only when the
+ * reserved room runs out is a new generation written, with twice the room, so
+ * appending costs amortized constant work per row. Writes that land before the
+ * last row drop the segment instead, and the next read rebuilds it once.
+ *
+ * A segment found on disk is checked against the database before use (row count
+ * and last row), so one left behind by a crash between the database commit and
+ * the segment write is rebuilt rather than served.
+ */
+public class CandleStore {
+    private static final int MAGIC = 0x43414E44; // "CAND"
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 16;  // magic, version, count, capacity
+    private static final int MIN_CAPACITY = 256;
+    private static final String EXT = ".seg";
+
+    private final Path dir;
+    private final ConcurrentHashMap<String, Segment> segments = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Object> locks = new ConcurrentHashMap<>();
+
+    /**
+     * Supplies the full contents of a series when it has no segment yet.
+     */
+    @FunctionalInterface
+    public interface Loader {
+        List<Database.CandleData> loadAll() throws Exception;
+    }
+
+    /**
+     * What the database holds for a series: its row count and last row.
+     */
+    public record Summary(int count, long lastTime, double lastClose, double lastVolume) { }
+
+    /**
+     * Summarizes a series as stored in the database, to check a segment found on disk.
+     */
+    @FunctionalInterface
+    public interface Summarizer {
+        Summary summarize() throws Exception;
+    }
+
+    /**
+     * Constructs a new CandleStore rooted at the given directory.
+     *
+     * @param dir The directory holding segment files (created if missing).
+     * @throws IOException If the directory cannot be created.
+     */
+    public CandleStore(Path dir) throws IOException {
+        this.dir = dir;
+        Files.createDirectories(dir);
+    }
+
+    /**
+     * Returns the rows of a series whose timestamps fall in [startMs, endMs].
+     * If the series has no segment yet, it is built from the loader first.
+     *
+     * @param symbol     The stock symbol.
+     * @param multiplier The time multiplier.
+     * @param timespan   The timespan unit.
+     * @param startMs    The start timestamp (inclusive).
+     * @param endMs      The end timestamp (inclusive).
+     * @param loader     Source of the full series if no segment exists.
+     * @param summarizer The database's view of the series, to check a segment on disk.
+     * @return A zero-copy slice of the series.
+     * @throws Exception If the segment cannot be read or built.
+     */
+    public Slice range(String symbol, int multiplier, String timespan,
+                       long startMs, long endMs, Loader loader, Summarizer summarizer) throws Exception {
+        String key = key(symbol, multiplier, timespan);
+        Segment seg = segments.get(key);
+        if (seg == null) {
+            synchronized (lockFor(key)) {
+                seg = segments.get(key);
+                if (seg == null) {
+                    seg = openLatest(key);
+                    if (seg != null && !seg.matches(summarizer.summarize())) {
+                        System.out.println("[CandleStore] " + key + " is out of step with the database; rebuilding");
+                        drop(key);
+                        seg = null;
+                    }
+                }
+                if (seg == null) {
+                    List<Database.CandleData> all = loader.loadAll();
+                    if (all.isEmpty()) return Slice.of(all); // nothing to persist yet
+                    Columns cols = Columns.of(all);
+                    seg = write(key, cols, capacityFor(cols.size()));
+                }
+                segments.put(key, seg);
+            }
+        }
+        return seg.range(startMs, endMs);
+    }
+
+    /**
+     * Called before rows are written to the database. If they would land before
+     * the segment's last row, the segment is dropped now, so a crash before
+     * {@link #merge} cannot leave it serving the old values.
+     *
+     * @param symbol     The stock symbol.
+     * @param multiplier The time multiplier.
+     * @param timespan   The timespan unit.
+     * @param rows       The rows about to be written.
+     * @throws IOException If the segment on disk cannot be read.
+     */
+    public void beforeWrite(String symbol, int multiplier, String timespan,
+                            List<Database.CandleData> rows) throws IOException {
+        if (rows == null || rows.isEmpty()) return;
+        String key = key(symbol, multiplier, timespan);
+        long first = Long.MAX_VALUE;
+        for (Database.CandleData r : rows) first = Math.min(first, r.timestamp());
+        synchronized (lockFor(key)) {
+            Segment seg = segments.get(key);
+            if (seg == null) seg = openLatest(key); // not kept; it is checked when first read
+            if (seg != null && first < seg.lastTime()) drop(key);
+        }
+    }
+
+    /**
+     * Adds rows written to the database to the series' segment, if it is loaded.
+     * Rows at or after the last row are written in place; anything else drops
+     * the segment. Series not loaded are left alone; the check on first read
+     * catches up with what was written meanwhile.
+     *
+     * @param symbol     The stock symbol.
+     * @param multiplier The time multiplier.
+     * @param timespan   The timespan unit.
+     * @param rows       The rows written.
+     * @throws IOException If the segment cannot be written.
+     */
+    public void merge(String symbol, int multiplier, String timespan,
+                      List<Database.CandleData> rows) throws IOException {
+        if (rows == null || rows.isEmpty()) return;
+        String key = key(symbol, multiplier, timespan);
+        synchronized (lockFor(key)) {
+            Segment seg = segments.get(key);
+            if (seg == null) return;
+            Columns add = Columns.of(rows);
+            if (add.t[0] < seg.lastTime()) {
+                drop(key);
+                return;
+            }
+            int grown = seg.count + add.size() - (add.t[0] == seg.lastTime() ? 1 : 0);
+            if (grown <= seg.capacity) {
+                seg.append(add);
+            } else {
+                segments.put(key, write(key, seg.columns().mergedWith(add), capacityFor(grown)));
+            }
+        }
+    }
+
+    /**
+     * Drops the segment for a series so the next read rebuilds it from the loader.
+     *
+     * @param symbol     The stock symbol.
+     * @param multiplier The time multiplier.
+     * @param timespan   The timespan unit.
+     */
+    public void invalidate(String symbol, int multiplier, String timespan) {
+        String key = key(symbol, multiplier, timespan);
+        synchronized (lockFor(key)) {
+            drop(key);
+        }
+    }
+
+    /**
+     * Drops every segment, loaded or on disk, e.g. after rows reached the
+     * database without going through {@link #beforeWrite} and {@link #merge}.
+     */
+    public void invalidateAll() {
+        Set<String> keys = new HashSet<>(segments.keySet());
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, "*" + EXT)) {
+            for (Path p : ds) {
+                String name = p.getFileName().toString();
+                String stem = name.substring(0, name.length() - EXT.length());
+                int dot = stem.lastIndexOf('.');
+                if (dot > 0) keys.add(stem.substring(0, dot)); // key.generation
+            }
+        } catch (IOException e) {
+            System.err.println("[CandleStore] Failed to list segments: " + e.getMessage());
+        }
+        for (String key : keys) {
+            synchronized (lockFor(key)) {
+                drop(key);
+            }
+        }
+    }
+
+    // helpers
+    // caller holds the key's lock
+    private void drop(String key) {
+        segments.remove(key);
+        for (Path p : listGenerations(key)) deleteQuietly(p);
+    }
+
+    private static int capacityFor(int rows) {
+        return Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(rows, 1)) << 1);
+    }
+
+    private Object lockFor(String key) {
+        return locks.computeIfAbsent(key, k -> new Object());
+    }
+
+    private static String key(String symbol, int multiplier, String timespan) {
+        String sym = symbol.trim().toUpperCase().replaceAll("[^A-Z0-9._-]", "_");
+        return sym + "_" + multiplier + timespan;
+    }
+
+    private Segment openLatest(String key) throws IOException {
+        List<Path> gens = listGenerations(key);
+        Path newest = null;
+        long newestGen = -1;
+        for (Path p : gens) {
+            long g = generationOf(key, p);
+            if (g > newestGen) { newestGen = g; newest = p; }
+        }
+        if (newest == null) return null;
+        for (Path p : gens) if (!p.equals(newest)) deleteQuietly(p);
+        try {
+            return map(newest, newestGen);
+        } catch (IOException e) {
+            // an older layout or a torn file; it is rebuilt from the database
+            System.out.println("[CandleStore] Discarding " + newest.getFileName() + ": " + e.getMessage());
+            deleteQuietly(newest);
+            return null;
+        }
+    }
+
+    private Segment write(String key, Columns cols, int capacity) throws IOException {
+        Segment prev = segments.get(key);
+        long gen = (prev == null) ? nextGeneration(key) : prev.generation + 1;
+        Path target = dir.resolve(key + "." + gen + EXT);
+        Path tmp = dir.resolve(key + "." + gen + ".tmp");
+
+        int n = cols.size();
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_BYTES + capacity * 6 * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(capacity);
+        for (int i = 0; i < n; i++) buf.putLong(HEADER_BYTES + i * Long.BYTES, cols.t[i]);
+        double[][] data = { cols.o, cols.h, cols.l, cols.c, cols.v };
+        for (int k = 0; k < data.length; k++) {
+            int base = HEADER_BYTES + (k + 1) * capacity * Long.BYTES;
+            for (int i = 0; i < n; i++) buf.putDouble(base + i * Long.BYTES, data[k][i]);
+        }
+        buf.position(0);
+
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buf.hasRemaining()) ch.write(buf);
+            ch.force(false);
+        }
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+
+        Segment seg = map(target, gen);
+        // old generations may still be mapped by readers; on platforms that refuse
+        // to delete them they are cleaned up the next time the series is opened
+        if (prev != null) deleteQuietly(prev.path);
+        return seg;
+    }
+
+    private static Segment map(Path path, long gen) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (ch.size() < HEADER_BYTES) throw new IOException("Not a candle segment: " + path);
+            MappedByteBuffer mb = ch.map(FileChannel.MapMode.READ_WRITE, 0, ch.size());
+            mb.order(ByteOrder.LITTLE_ENDIAN);
+            if (mb.getInt(0) != MAGIC || mb.getInt(4) != VERSION)
+                throw new IOException("Not a candle segment: " + path);
+            int count = mb.getInt(8), capacity = mb.getInt(12);
+            if (count < 0 || count > capacity || ch.size() < HEADER_BYTES + (long) capacity * 6 * Long.BYTES)
+                throw new IOException("Truncated candle segment: " + path);
+            return new Segment(path, gen, mb, count, capacity);
+        }
+    }
+
+    private long nextGeneration(String key) {
+        long max = -1;
+        for (Path p : listGenerations(key)) max = Math.max(max, generationOf(key, p));
+        return max + 1;
+    }
+
+    private List<Path> listGenerations(String key) {
+        List<Path> out = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, key + ".*" + EXT)) {
+            for (Path p : ds) if (generationOf(key, p) >= 0) out.add(p);
+        } catch (IOException e) {
+            System.err.println("[CandleStore] Failed to list " + key + ": " + e.getMessage());
+        }
+        return out;
+    }
+
+    private static long generationOf(String key, Path p) {
+        String name = p.getFileName().toString();
+        String mid = name.substring(key.length() + 1, name.length() - EXT.length());
+        try {
+            return Long.parseLong(mid);
+        } catch (NumberFormatException e) {
+            return -1; // another series whose key shares this prefix
+        }
+    }
+
+    private static void deleteQuietly(Path p) {
+        try { Files.deleteIfExists(p); } catch (IOException ignore) { }
+    }
+
+    /**
+     * One mapped generation of a series. Rows below count never change except the
+     * last, which appends may overwrite; count only grows.
+     */
+    private static final class Segment {
+        final Path path;
+        final long generation;
+        final int capacity;
+        volatile int count;
+        final MappedByteBuffer mb;
+        final LongBuffer t;
+        final DoubleBuffer o, h, l, c, v;
+
+        Segment(Path path, long generation, MappedByteBuffer mb, int count, int capacity) {
+            this.path = path;
+            this.generation = generation;
+            this.mb = mb;
+            this.count = count;
+            this.capacity = capacity;
+            this.t = column(mb, 0, capacity).asLongBuffer();
+            this.o = column(mb, 1, capacity).asDoubleBuffer();
+            this.h = column(mb, 2, capacity).asDoubleBuffer();
+            this.l = column(mb, 3, capacity).asDoubleBuffer();
+            this.c = column(mb, 4, capacity).asDoubleBuffer();
+            this.v = column(mb, 5, capacity).asDoubleBuffer();
+        }
+
+        private static ByteBuffer column(MappedByteBuffer mb, int index, int capacity) {
+            int offset = HEADER_BYTES + index * capacity * Long.BYTES;
+            return mb.slice(offset, capacity * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        long lastTime() {
+            int n = count;
+            return n == 0 ? Long.MIN_VALUE : t.get(n - 1);
+        }
+
+        boolean matches(Summary s) {
+            int n = count;
+            return n == s.count() && n > 0 && t.get(n - 1) == s.lastTime()
+                    && c.get(n - 1) == s.lastClose() && v.get(n - 1) == s.lastVolume();
+        }
+
+        // rows sorted, none before the last row, and room for them; caller holds the key's lock
+        void append(Columns add) {
+            int n = count;
+            int at = (n > 0 && add.t[0] == t.get(n - 1)) ? n - 1 : n;
+            for (int i = 0; i < add.size(); i++, at++) {
+                t.put(at, add.t[i]);
+                o.put(at, add.o[i]); h.put(at, add.h[i]); l.put(at, add.l[i]);
+                c.put(at, add.c[i]); v.put(at, add.v[i]);
+            }
+            mb.putInt(8, at); // rows first, then the count that exposes them
+            count = at;
+        }
+
+        Slice range(long startMs, long endMs) {
+            int n = count;
+            int from = lowerBound(startMs, n);
+            int to = (endMs == Long.MAX_VALUE) ? n : lowerBound(endMs + 1, n);
+            if (to < from) to = from;
+            return new Slice(t.slice(from, to - from), o.slice(from, to - from), h.slice(from, to - from),
+                    l.slice(from, to - from), c.slice(from, to - from), v.slice(from, to - from));
+        }
+
+        // first index below n whose timestamp is >= ts
+        private int lowerBound(long ts, int n) {
+            int lo = 0, hi = n;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (t.get(mid) < ts) lo = mid + 1; else hi = mid;
+            }
+            return lo;
+        }
+
+        Columns columns() {
+            int count = this.count;
+            Columns cols = new Columns(count);
+            t.get(0, cols.t);
+            o.get(0, cols.o);
+            h.get(0, cols.h);
+            l.get(0, cols.l);
+            c.get(0, cols.c);
+            v.get(0, cols.v);
+            return cols;
+        }
+    }
+
+    /**
+     * A read-only window onto a candle series, ordered by timestamp.
+     * The buffers are views of the underlying segment, not copies.
+     */
+    public static final class Slice {
+        private final LongBuffer t;
+        private final DoubleBuffer o, h, l, c, v;
+
+        Slice(LongBuffer t, DoubleBuffer o, DoubleBuffer h, DoubleBuffer l, DoubleBuffer c, DoubleBuffer v) {
+            this.t = t; this.o = o; this.h = h; this.l = l; this.c = c; this.v = v;
+        }
+
+        /**
+         * Builds a heap-backed slice, used when no segment store is configured.
+         */
+        static Slice of(List<Database.CandleData> rows) {
+            Columns cols = Columns.of(rows);
+            return new Slice(LongBuffer.wrap(cols.t), DoubleBuffer.wrap(cols.o), DoubleBuffer.wrap(cols.h),
+                    DoubleBuffer.wrap(cols.l), DoubleBuffer.wrap(cols.c), DoubleBuffer.wrap(cols.v));
+        }
+
+        public int size() { return t.limit(); }
+        public boolean isEmpty() { return size() == 0; }
+        public long time(int i) { return t.get(i); }
+        public double open(int i) { return o.get(i); }
+        public double high(int i) { return h.get(i); }
+        public double low(int i) { return l.get(i); }
+        public double close(int i) { return c.get(i); }
+        public double volume(int i) { return v.get(i); }
+
+        public LongBuffer times() { return t.duplicate(); }
+        public DoubleBuffer closes() { return c.duplicate(); }
+    }
+
+    /**
+     * Heap copy of a series, used while writing a new generation.
+     */
+    private static final class Columns {
+        final long[] t;
+        final double[] o, h, l, c, v;
+
+        Columns(int n) {
+            t = new long[n];
+            o = new double[n]; h = new double[n]; l = new double[n]; c = new double[n]; v = new double[n];
+        }
+
+        int size() { return t.length; }
+
+        static Columns of(List<Database.CandleData> rows) {
+            List<Database.CandleData> sorted = new ArrayList<>(rows);
+            sorted.sort((a, b) -> Long.compare(a.timestamp(), b.timestamp()));
+            // last write wins for duplicate timestamps, matching INSERT OR REPLACE
+            List<Database.CandleData> dedup = new ArrayList<>(sorted.size());
+            for (Database.CandleData r : sorted) {
+                if (!dedup.isEmpty() && dedup.get(dedup.size() - 1).timestamp() == r.timestamp())
+                    dedup.set(dedup.size() - 1, r);
+                else
+                    dedup.add(r);
+            }
+            Columns cols = new Columns(dedup.size());
+            for (int i = 0; i < dedup.size(); i++) {
+                Database.CandleData r = dedup.get(i);
+                cols.t[i] = r.timestamp();
+                cols.o[i] = r.open(); cols.h[i] = r.high(); cols.l[i] = r.low();
+                cols.c[i] = r.close(); cols.v[i] = r.volume();
+            }
+            return cols;
+        }
+
+        // two-way merge of sorted series; rows from 'newer' replace equal timestamps
+        Columns mergedWith(Columns newer) {
+            Columns out = new Columns(size() + newer.size());
+            int i = 0, j = 0, k = 0;
+            while (i < size() || j < newer.size()) {
+                boolean takeNew;
+                if (i >= size()) takeNew = true;
+                else if (j >= newer.size()) takeNew = false;
+                else if (newer.t[j] <= t[i]) {
+                    takeNew = true;
+                    if (newer.t[j] == t[i]) i++; // replaced
+                } else takeNew = false;
+
+                Columns src = takeNew ? newer : this;
+                int idx = takeNew ? j++ : i++;
+                out.t[k] = src.t[idx];
+                out.o[k] = src.o[idx]; out.h[k] = src.h[idx]; out.l[k] = src.l[idx];
+                out.c[k] = src.c[idx]; out.v[k] = src.v[idx];
+                k++;
+            }
+            return out.truncate(k);
+        }
+
+        private Columns truncate(int n) {
+            if (n == size()) return this;
+            Columns out = new Columns(n);
+            System.arraycopy(t, 0, out.t, 0, n);
+            System.arraycopy(o, 0, out.o, 0, n);
+            System.arraycopy(h, 0, out.h, 0, n);
+            System.arraycopy(l, 0, out.l, 0, n);
+            System.arraycopy(c, 0, out.c, 0, n);
+            System.arraycopy(v, 0, out.v, 0, n);
+            return out;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.models;
+
+import org.sqlite.SQLiteConfig;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded pool of read-only SQLite connections.
+ * With the database in WAL mode these readers see the last committed state and
+ * never wait on the writer connection, even while it holds a long transaction.
+ *
+ * A thread that already holds a lease gets the same connection back on nested
+ * acquires, so helpers that call other read methods cannot exhaust the pool.
+ */
+public class ConnectionPool implements AutoCloseable {
+    private static final long ACQUIRE_TIMEOUT_MS = 10_000;
+
+    private final List<Lease> all = new ArrayList<>();
+    private final BlockingQueue<Lease> idle;
+    private final ThreadLocal<Lease> held = new ThreadLocal<>();
+
+    // metrics
+    private final AtomicLong acquires = new AtomicLong();
+    private final AtomicLong waits = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final long createdNanos = System.nanoTime();
+
+    /**
+     * Pool usage since the pool was opened.
+     *
+     * @param size          Number of connections in the pool.
+     * @param acquires      Total leases handed out (nested acquires excluded).
+     * @param waits         Leases that had to wait for a free connection.
+     * @param avgWaitMs     Average wait per lease in milliseconds.
+     * @param maxWaitMs     Longest single wait in milliseconds.
+     * @param utilization   Fraction of time each connection has been leased.
+     */
+    public record Stats(int size, long acquires, long waits, double avgWaitMs, double maxWaitMs,
+                        double[] utilization) { }
+
+    /**
+     * Opens a pool of read-only connections to an existing database file.
+     *
+     * @param dbFile The path to the database file.
+     * @param size   The number of connections to open.
+     * @throws SQLException If a connection cannot be opened.
+     */
+    ConnectionPool(String dbFile, int size) throws SQLException {
+        this.idle = new ArrayBlockingQueue<>(size);
+        SQLiteConfig cfg = new SQLiteConfig();
+        cfg.setReadOnly(true);
+        cfg.setBusyTimeout(5000);
+        try {
+            for (int i = 0; i < size; i++) {
+                Connection c = cfg.createConnection("jdbc:sqlite:" + dbFile);
+                Lease l = new Lease(this, c, new StatementCache(c, StatementCache.DEFAULT_CAPACITY), null);
+                all.add(l);
+                idle.add(l);
+            }
+        } catch (SQLException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Leases a connection, waiting for one to become free if necessary.
+     *
+     * @return The lease; close it to return the connection.
+     * @throws SQLException If no connection frees up in time.
+     */
+    Lease acquire() throws SQLException {
+        Lease mine = held.get();
+        if (mine != null) {
+            mine.depth++;
+            return mine;
+        }
+
+        Lease l = idle.poll();
+        if (l == null) {
+            long t0 = System.nanoTime();
+            try {
+                l = idle.poll(ACQUIRE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted waiting for a read connection", e);
+            }
+            long waited = System.nanoTime() - t0;
+            waits.incrementAndGet();
+            waitNanos.addAndGet(waited);
+            maxWaitNanos.accumulateAndGet(waited, Math::max);
+            if (l == null) throw new SQLException("Timed out waiting for a read connection");
+        }
+        acquires.incrementAndGet();
+        l.depth = 1;
+        l.leasedAt = System.nanoTime();
+        held.set(l);
+        return l;
+    }
+
+    private void release(Lease l) {
+        if (--l.depth > 0) return;
+        l.busyNanos.addAndGet(System.nanoTime() - l.leasedAt);
+        held.remove();
+        idle.offer(l);
+    }
+
+    /**
+     * Returns a snapshot of pool usage.
+     *
+     * @return The current Stats.
+     */
+    Stats stats() {
+        long elapsed = Math.max(1, System.nanoTime() - createdNanos);
+        double[] util = new double[all.size()];
+        for (int i = 0; i < util.length; i++) util[i] = all.get(i).busyNanos.get() / (double) elapsed;
+        long n = Math.max(1, acquires.get());
+        return new Stats(all.size(), acquires.get(), waits.get(),
+                waitNanos.get() / 1e6 / n, maxWaitNanos.get() / 1e6, util);
+    }
+
+    @Override
+    public void close() {
+        for (Lease l : all) {
+            l.statements.close();
+            try { l.conn.close(); } catch (SQLException ignore) { }
+        }
+    }
+
+    /**
+     * A leased connection. Closing the lease returns the connection to its pool.
+     */
+    static final class Lease implements AutoCloseable {
+        private final ConnectionPool pool;
+        private final Connection conn;
+        private final StatementCache statements;
+        private final Runnable onClose;
+        private final AtomicLong busyNanos = new AtomicLong();
+        private int depth;
+        private long leasedAt;
+
+        /**
+         * Wraps a connection that is not pooled; closing runs the given callback.
+         */
+        Lease(Connection conn, StatementCache statements, Runnable onClose) {
+            this(null, conn, statements, onClose);
+        }
+
+        private Lease(ConnectionPool pool, Connection conn, StatementCache statements, Runnable onClose) {
+            this.pool = pool;
+            this.conn = conn;
+            this.statements = statements;
+            this.onClose = onClose;
+        }
+
+        Connection conn() { return conn; }
+
+        /**
+         * Returns a cached prepared statement for this connection.
+         */
+        PreparedStatement prepare(String sql) throws SQLException {
+            return statements.prepare(sql);
+        }
+
+        @Override
+        public void close() {
+            if (pool != null) pool.release(this);
+            else if (onClose != null) onClose.run();
+        }
+    }
+}
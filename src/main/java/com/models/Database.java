@@ -7,14 +7,46 @@ import com.models.profile.Profile;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * Manages the SQLite database connection and schema.
+ * Manages the SQLite database connections and schema.
  * Handles persistence for prices, profiles, accounts, trades, and portfolios.
+ *
+ * Writes go through a single writer connection guarded by a lock. Reads lease a
+ * connection from a pool of read-only connections, which WAL mode lets run while
+ * the writer is inside a transaction. In-memory databases only exist on one
+ * connection, so there every read shares the writer connection and its lock.
  */
 public class Database implements AutoCloseable {
+    public static final int DEFAULT_READ_CONNECTIONS = 4;
+
+    // prices layout version, kept in PRAGMA user_version
+    private static final int PRICES_SCHEMA_VERSION = 1;
+    private static final int MIGRATION_BATCH_ROWS = 100_000;
+    private static final long BALANCE_VERIFY_INTERVAL_MS = 15 * 60_000L;
+
     private final Connection conn;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final StatementCache statements; // writer connection
+    private final ConnectionPool readers; // null for in-memory databases
+    private final CandleStore candles; // null for in-memory databases
+    private final boolean inMemory;
+    private final Object maintenanceLock = new Object();
+    private ScheduledExecutorService maintenance; // guarded by maintenanceLock; set by startMaintenance()
+    private volatile boolean legacyPricesPending; // prices_legacy still to be copied
+
+    // dictionary ids for prices rows; ids never change once assigned
+    private final ConcurrentHashMap<String, Integer> symbolIds = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Integer> seriesIds = new ConcurrentHashMap<>();
 
     public enum StartupState {
         FIRST_RUN, // no profile exists
@@ -29,6 +61,27 @@ public class Database implements AutoCloseable {
             double open, double high, double low, double close, double volume) {
     }
 
+    /**
+     * A live bar written before its bucket ended, with the time of the last
+     * trade it holds.
+     */
+    public record PartialCandle(CandleData candle, long throughMs) {
+    }
+
+    /**
+     * A persisted backfill chunk: one request's worth of a backfill job.
+     * Days are epoch days (UTC), both inclusive.
+     */
+    public record BackfillChunk(long fromDay, long toDay, int attempts, long nextAttemptMs) {
+    }
+
+    /**
+     * A persisted backfill job with the chunks it has not finished.
+     */
+    public record BackfillJob(long id, String symbol, int multiplier, String timespan,
+            List<BackfillChunk> chunks) {
+    }
+
     /**
      * Represents a view of a position, including quantity and average cost.
      */
@@ -44,47 +97,314 @@ public class Database implements AutoCloseable {
      * @throws SQLException If a database access error occurs.
      */
     public Database(String dbFile) throws SQLException {
+        this(dbFile, DEFAULT_READ_CONNECTIONS);
+    }
+
+    /**
+     * Constructs a new Database instance with a read pool of the given size.
+     *
+     * @param dbFile          The path to the database file.
+     * @param readConnections The number of read-only connections to pool.
+     * @throws SQLException If a database access error occurs.
+     */
+    public Database(String dbFile, int readConnections) throws SQLException {
         String url = "jdbc:sqlite:" + dbFile + "?busy_timeout=5000"; // 5s
         this.conn = DriverManager.getConnection(url);
+        this.statements = new StatementCache(conn, StatementCache.DEFAULT_CAPACITY);
         try (Statement st = conn.createStatement()) {
             st.execute("PRAGMA foreign_keys = ON");
             st.execute("PRAGMA journal_mode = WAL");
         }
         createSchema();
+        this.inMemory = dbFile.contains(":memory:");
+        this.readers = (inMemory || readConnections <= 0) ? null : new ConnectionPool(dbFile, readConnections);
+        this.candles = inMemory ? null : openCandleStore(dbFile);
+    }
+
+    // segment files live next to the db file, like sqlite's own -wal/-shm files
+    private static CandleStore openCandleStore(String dbFile) {
+        try {
+            return new CandleStore(java.nio.file.Path.of(dbFile + "-candles"));
+        } catch (java.io.IOException e) {
+            System.err.println("[Database] Candle store disabled: " + e.getMessage());
+            return null;
+        }
     }
 
     @Override
     public void close() throws SQLException {
+        synchronized (maintenanceLock) {
+            if (maintenance != null)
+                maintenance.shutdownNow();
+        }
+        if (readers != null)
+            readers.close();
+        statements.close();
         if (conn != null && !conn.isClosed())
             conn.close();
     }
 
+    /**
+     * Returns read pool usage: wait times and per-connection utilization.
+     *
+     * @return The pool statistics, or null if reads share the writer connection.
+     */
+    public ConnectionPool.Stats getReadPoolStats() {
+        return readers == null ? null : readers.stats();
+    }
+
+    /**
+     * Starts background maintenance: finishing a pending prices migration and
+     * verifying cash balances every 15 minutes.
+     * Called once the database is constructed; later calls and in-memory
+     * databases do nothing.
+     */
+    public void startMaintenance() {
+        synchronized (maintenanceLock) {
+            if (inMemory || maintenance != null) return;
+            maintenance = newMaintenanceExecutor();
+        }
+    }
+
+    private ScheduledExecutorService newMaintenanceExecutor() {
+        ScheduledExecutorService ex = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-maintenance");
+            t.setDaemon(true);
+            return t;
+        });
+        if (legacyPricesPending) {
+            ex.execute(() -> {
+                try {
+                    migrateLegacyPrices();
+                } catch (Exception e) {
+                    // picks up from the last batch on the next start
+                    System.err.println("[Database] Prices migration failed: " + e.getMessage());
+                }
+            });
+        }
+        ex.scheduleWithFixedDelay(() -> {
+            try {
+                verifyAccountBalances();
+            } catch (Exception e) {
+                System.err.println("[Database] Balance verification failed: " + e.getMessage());
+            }
+        }, BALANCE_VERIFY_INTERVAL_MS, BALANCE_VERIFY_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        return ex;
+    }
+
+    // lease a connection for reads; falls back to the writer when there is no pool
+    private ConnectionPool.Lease read() throws SQLException {
+        if (readers != null) return readers.acquire();
+        writeLock.lock();
+        return new ConnectionPool.Lease(conn, statements, writeLock::unlock);
+    }
+
+    // cached statements on the writer connection; callers hold writeLock
+    private PreparedStatement prepare(String sql) throws SQLException {
+        return statements.prepare(sql);
+    }
+
+    private PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+        return statements.prepare(sql, autoGeneratedKeys);
+    }
+
     private void createSchema() throws SQLException {
         ensurePricesSchema();
         ensureUserSchema();
         ensurePortfolioSchema();
         ensureSymbolSchema();
+        ensureBackfillSchema();
     }
+    /**
+     * Creates the prices tables, parking the old text-keyed layout if present.
+     * Databases already at PRICES_SCHEMA_VERSION skip the layout checks. Parked
+     * rows are copied over by {@link #migrateLegacyPrices()} after startup.
+     *
+     * Symbols and (timespan, multiplier) series are stored once in dictionary tables,
+     * and prices rows are clustered on (symbol_id, series_id, timestamp) without a
+     * rowid, so the primary key is the only index. The prices_named view exposes the
+     * old column names and accepts inserts, for tools that work with raw JDBC.
+     */
     private void ensurePricesSchema() throws SQLException {
+        int version;
+        try (Statement st = conn.createStatement();
+                ResultSet rs = st.executeQuery("PRAGMA user_version")) {
+            version = rs.next() ? rs.getInt(1) : 0;
+        }
         try (Statement st = conn.createStatement()) {
+            if (version < PRICES_SCHEMA_VERSION && tableExists("prices") && hasColumn("prices", "symbol")) {
+                // version 0 layout; park it and copy it over below
+                st.execute("DROP INDEX IF EXISTS idx_prices_symbol_tf_ts");
+                st.execute("ALTER TABLE prices RENAME TO prices_legacy");
+            }
+
             st.execute("""
-                        CREATE TABLE IF NOT EXISTS prices (
-                        id INTEGER PRIMARY KEY AUTOINCREMENT,
-                        symbol TEXT NOT NULL,
+                        CREATE TABLE IF NOT EXISTS symbols (
+                        id INTEGER PRIMARY KEY,
+                        symbol TEXT NOT NULL UNIQUE
+                        )
+                    """);
+            st.execute("""
+                        CREATE TABLE IF NOT EXISTS series (
+                        id INTEGER PRIMARY KEY,
                         timespan TEXT NOT NULL,
                         multiplier INTEGER NOT NULL,
+                        UNIQUE(timespan, multiplier)
+                        )
+                    """);
+            st.execute("""
+                        CREATE TABLE IF NOT EXISTS prices (
+                        symbol_id INTEGER NOT NULL,
+                        series_id INTEGER NOT NULL,
                         timestamp INTEGER NOT NULL,
                         open REAL, high REAL, low REAL, close REAL,
                         volume REAL,
-                        UNIQUE(symbol, timespan, multiplier, timestamp)
+                        PRIMARY KEY(symbol_id, series_id, timestamp)
+                        ) WITHOUT ROWID
+                    """);
+            st.execute("""
+                        CREATE VIEW IF NOT EXISTS prices_named AS
+                        SELECT s.symbol, r.timespan, r.multiplier, p.timestamp,
+                               p.open, p.high, p.low, p.close, p.volume
+                        FROM prices p
+                        JOIN symbols s ON s.id = p.symbol_id
+                        JOIN series r ON r.id = p.series_id
+                    """);
+            // live bars written before their bucket ended; see mergeCandlesBatch
+            st.execute("""
+                        CREATE TABLE IF NOT EXISTS partial_candles (
+                        symbol_id INTEGER NOT NULL,
+                        series_id INTEGER NOT NULL,
+                        timestamp INTEGER NOT NULL,
+                        through_ms INTEGER NOT NULL,             -- last trade the stored bar holds
+                        PRIMARY KEY(symbol_id, series_id, timestamp)
+                        ) WITHOUT ROWID
+                    """);
+            // conflict-free dictionary inserts, so an outer OR REPLACE never renumbers ids
+            st.execute("""
+                        CREATE TRIGGER IF NOT EXISTS prices_named_insert
+                        INSTEAD OF INSERT ON prices_named
+                        BEGIN
+                            INSERT INTO symbols(symbol)
+                            SELECT NEW.symbol WHERE NOT EXISTS (SELECT 1 FROM symbols WHERE symbol = NEW.symbol);
+                            INSERT INTO series(timespan, multiplier)
+                            SELECT NEW.timespan, NEW.multiplier WHERE NOT EXISTS
+                                (SELECT 1 FROM series WHERE timespan = NEW.timespan AND multiplier = NEW.multiplier);
+                            INSERT OR REPLACE INTO prices(symbol_id, series_id, timestamp, open, high, low, close, volume)
+                            VALUES ((SELECT id FROM symbols WHERE symbol = NEW.symbol),
+                                    (SELECT id FROM series WHERE timespan = NEW.timespan AND multiplier = NEW.multiplier),
+                                    NEW.timestamp, NEW.open, NEW.high, NEW.low, NEW.close, NEW.volume);
+                        END
+                    """);
+        }
+
+        if (version >= PRICES_SCHEMA_VERSION) return;
+        if (tableExists("prices_legacy")) {
+            legacyPricesPending = true; // user_version is set once the copy finishes
+        } else {
+            try (Statement st = conn.createStatement()) {
+                st.execute("PRAGMA user_version = " + PRICES_SCHEMA_VERSION);
+            }
+        }
+    }
+
+    /**
+     * Copies the version 0 prices table into the dictionary layout. Runs on the
+     * maintenance thread after startup. Until it finishes, every prices read
+     * also reads prices_legacy, so rows not copied yet are neither refetched
+     * nor missing from charts, prices and symbol lists, and the candle store is
+     * bypassed; once it finishes every candle segment is dropped and rebuilt on
+     * next read. The dropped table's pages are left free for SQLite to reuse
+     * rather than vacuumed, which would block writers for the whole rewrite.
+     * Rows are copied in rowid ranges, one transaction
+     * per batch, and the write lock is only held for one batch at a time so the
+     * app keeps writing meanwhile. Rows it wrote win over legacy rows. The last
+     * copied rowid is recorded with each batch so an interrupted migration picks
+     * up where it stopped on the next start. Does nothing if there is nothing
+     * to copy.
+     *
+     * @throws SQLException If a database access error occurs.
+     */
+    synchronized void migrateLegacyPrices() throws SQLException {
+        if (!legacyPricesPending) return;
+        writeLock.lock();
+        try (Statement st = conn.createStatement()) {
+            st.execute("""
+                        CREATE TABLE IF NOT EXISTS schema_migrations (
+                        name TEXT PRIMARY KEY,
+                        last_id INTEGER NOT NULL
                         )
                     """);
+            st.execute("INSERT OR IGNORE INTO symbols(symbol) SELECT DISTINCT symbol FROM prices_legacy");
             st.execute("""
-                        CREATE INDEX IF NOT EXISTS idx_prices_symbol_tf_ts
-                        ON prices(symbol, timespan, multiplier, timestamp)
+                        INSERT OR IGNORE INTO series(timespan, multiplier)
+                        SELECT DISTINCT timespan, multiplier FROM prices_legacy
                     """);
+        } finally {
+            writeLock.unlock();
+        }
+
+        long lastId = 0, maxId = 0;
+        try (ConnectionPool.Lease r = read()) {
+            try (PreparedStatement ps = r.prepare("SELECT last_id FROM schema_migrations WHERE name = 'prices_v1'");
+                    ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) lastId = rs.getLong(1);
+            }
+            try (PreparedStatement ps = r.prepare("SELECT COALESCE(MAX(id), 0) FROM prices_legacy");
+                    ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) maxId = rs.getLong(1);
+            }
+        }
+        if (lastId < maxId) {
+            System.out.println("[Database] Migrating prices to dictionary layout (rows up to id " + maxId + ")");
+        }
+
+        String copy = """
+                    INSERT OR IGNORE INTO prices(symbol_id, series_id, timestamp, open, high, low, close, volume)
+                    SELECT s.id, r.id, p.timestamp, p.open, p.high, p.low, p.close, p.volume
+                    FROM prices_legacy p
+                    JOIN symbols s ON s.symbol = p.symbol
+                    JOIN series r ON r.timespan = p.timespan AND r.multiplier = p.multiplier
+                    WHERE p.id > ? AND p.id <= ?
+                """;
+        String mark = "INSERT OR REPLACE INTO schema_migrations(name, last_id) VALUES('prices_v1', ?)";
+        while (lastId < maxId) {
+            long upTo = Math.min(maxId, lastId + MIGRATION_BATCH_ROWS);
+            writeLock.lock();
+            boolean prev = conn.getAutoCommit();
+            try (PreparedStatement ps = prepare(copy); PreparedStatement mk = prepare(mark)) {
+                conn.setAutoCommit(false);
+                ps.setLong(1, lastId);
+                ps.setLong(2, upTo);
+                ps.executeUpdate();
+                mk.setLong(1, upTo);
+                mk.executeUpdate();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(prev);
+                writeLock.unlock();
+            }
+            lastId = upTo;
+            System.out.printf("[Database] Migrated prices %d/%d%n", lastId, maxId);
         }
+
+        writeLock.lock();
+        try (Statement st = conn.createStatement()) {
+            legacyPricesPending = false; // every row is in prices now; readers stop looking at prices_legacy
+            st.execute("DROP TABLE prices_legacy");
+            st.execute("DELETE FROM schema_migrations WHERE name = 'prices_v1'");
+            st.execute("PRAGMA user_version = " + PRICES_SCHEMA_VERSION);
+        } finally {
+            writeLock.unlock();
+        }
+        // the copy went around the candle store
+        if (candles != null) candles.invalidateAll();
+        System.out.println("[Database] Prices migration complete");
     }
+
     private void ensureUserSchema() throws SQLException {
         try (Statement st = conn.createStatement()) {
             st.execute("""
@@ -167,11 +487,14 @@ public class Database implements AutoCloseable {
                         side TEXT NOT NULL CHECK (side IN ('BUY','SELL')),
                         quantity INTEGER NOT NULL,          -- whole shares; use REAL if you support fractional shares
                         price REAL NOT NULL,                -- trade price per share
+                        pos_after INTEGER,                  -- position in symbol after this trade
+                        cash_after REAL,                    -- account cash after this trade
                         FOREIGN KEY(account_id) REFERENCES accounts(id) ON DELETE CASCADE
                         )
                     """);
             st.execute("CREATE INDEX IF NOT EXISTS idx_trades_acct_time ON trades(account_id, timestamp_ms)");
-            st.execute("CREATE INDEX IF NOT EXISTS idx_trades_acct_symbol ON trades(account_id, symbol)");
+            st.execute("DROP INDEX IF EXISTS idx_trades_acct_symbol"); // prefix of the index below
+            st.execute("CREATE INDEX IF NOT EXISTS idx_trades_acct_symbol_time ON trades(account_id, symbol, timestamp_ms)");
 
             // 2) cash_ledger
             st.execute("""
@@ -188,6 +511,7 @@ public class Database implements AutoCloseable {
                         )
                     """);
             st.execute("CREATE INDEX IF NOT EXISTS idx_cash_acct_time ON cash_ledger(account_id, timestamp_ms)");
+            st.execute("CREATE INDEX IF NOT EXISTS idx_cash_ref_trade ON cash_ledger(ref_trade_id)");
 
             // positions (quantity + average cost)
             st.execute("""
@@ -203,6 +527,41 @@ public class Database implements AutoCloseable {
                         )
                     """);
             st.execute("CREATE INDEX IF NOT EXISTS idx_positions_acct ON positions(account_id)");
+
+            // cash balance snapshot, kept in step with cash_ledger by recordCash/recordTrade
+            boolean seedBalances = !tableExists("account_balances");
+            st.execute("""
+                        CREATE TABLE IF NOT EXISTS account_balances (
+                        account_id INTEGER PRIMARY KEY,
+                        cash REAL NOT NULL,
+                        updated_ms INTEGER NOT NULL,
+                        FOREIGN KEY(account_id) REFERENCES accounts(id) ON DELETE CASCADE
+                        )
+                    """);
+            if (seedBalances) {
+                st.execute("""
+                            INSERT INTO account_balances(account_id, cash, updated_ms)
+                            SELECT account_id, SUM(delta), CAST(strftime('%s','now') AS INTEGER) * 1000
+                            FROM cash_ledger GROUP BY account_id
+                        """);
+            }
+        }
+
+        // trades written before pos_after/cash_after existed
+        if (!hasColumn("trades", "pos_after")) {
+            boolean prev = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (Statement st = conn.createStatement()) {
+                st.execute("ALTER TABLE trades ADD COLUMN pos_after INTEGER");
+                st.execute("ALTER TABLE trades ADD COLUMN cash_after REAL");
+                rebuildTradeRunningTotalsInTxn();
+                conn.commit();
+            } catch (SQLException ex) {
+                conn.rollback();
+                throw ex;
+            } finally {
+                conn.setAutoCommit(prev);
+            }
         }
     }
     private void ensureSymbolSchema() throws SQLException {
@@ -228,9 +587,89 @@ public class Database implements AutoCloseable {
         }
     }
 
+    /**
+     * Backfill jobs and their chunks, so an interrupted backfill resumes where it
+     * stopped. Chunks are deleted with their job once every chunk is done; failed
+     * chunks stay until a later run fetches them.
+     */
+    private void ensureBackfillSchema() throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.execute("""
+                        CREATE TABLE IF NOT EXISTS backfill_jobs (
+                        id INTEGER PRIMARY KEY AUTOINCREMENT,
+                        symbol TEXT NOT NULL,
+                        multiplier INTEGER NOT NULL,
+                        timespan TEXT NOT NULL,
+                        created_ms INTEGER NOT NULL
+                        )
+                    """);
+            st.execute("""
+                        CREATE TABLE IF NOT EXISTS backfill_chunks (
+                        job_id INTEGER NOT NULL REFERENCES backfill_jobs(id) ON DELETE CASCADE,
+                        from_day INTEGER NOT NULL,               -- epoch day, inclusive
+                        to_day INTEGER NOT NULL,                 -- epoch day, inclusive
+                        state TEXT NOT NULL DEFAULT 'pending',   -- pending | done | failed
+                        attempts INTEGER NOT NULL DEFAULT 0,
+                        next_attempt_ms INTEGER NOT NULL DEFAULT 0,
+                        PRIMARY KEY(job_id, from_day)
+                        ) WITHOUT ROWID
+                    """);
+        }
+    }
+
+    private boolean hasColumn(String table, String column) throws SQLException {
+        try (Statement st = conn.createStatement();
+                ResultSet rs = st.executeQuery("PRAGMA table_info(" + table + ")")) {
+            while (rs.next()) {
+                if (column.equalsIgnoreCase(rs.getString("name"))) return true;
+            }
+        }
+        return false;
+    }
+
+    // dictionary ids for writers; callers hold writeLock and are not inside a transaction
+    private int symbolIdForWrite(String symbol) throws SQLException {
+        Integer id = symbolIds.get(symbol);
+        if (id != null) return id;
+        try (PreparedStatement ins = prepare("INSERT OR IGNORE INTO symbols(symbol) VALUES(?)")) {
+            ins.setString(1, symbol);
+            ins.executeUpdate();
+        }
+        try (PreparedStatement sel = prepare("SELECT id FROM symbols WHERE symbol = ?")) {
+            sel.setString(1, symbol);
+            try (ResultSet rs = sel.executeQuery()) {
+                rs.next();
+                id = rs.getInt(1);
+            }
+        }
+        symbolIds.put(symbol, id);
+        return id;
+    }
+
+    private int seriesIdForWrite(int multiplier, String timespan) throws SQLException {
+        String key = multiplier + timespan;
+        Integer id = seriesIds.get(key);
+        if (id != null) return id;
+        try (PreparedStatement ins = prepare("INSERT OR IGNORE INTO series(timespan, multiplier) VALUES(?,?)")) {
+            ins.setString(1, timespan);
+            ins.setInt(2, multiplier);
+            ins.executeUpdate();
+        }
+        try (PreparedStatement sel = prepare("SELECT id FROM series WHERE timespan = ? AND multiplier = ?")) {
+            sel.setString(1, timespan);
+            sel.setInt(2, multiplier);
+            try (ResultSet rs = sel.executeQuery()) {
+                rs.next();
+                id = rs.getInt(1);
+            }
+        }
+        seriesIds.put(key, id);
+        return id;
+    }
+
     private boolean tableExists(String name) throws SQLException {
         String sql = "SELECT name FROM sqlite_master WHERE type='table' AND name=?";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (PreparedStatement ps = prepare(sql)) {
             ps.setString(1, name);
             try (ResultSet rs = ps.executeQuery()) {
                 return rs.next();
@@ -238,6 +677,55 @@ public class Database implements AutoCloseable {
         }
     }
 
+    /**
+     * One series from prices plus the prices_legacy rows not copied yet, for
+     * reads while the migration is pending. Rows in prices win, as in the copy.
+     * Binds symbol, timespan, multiplier, then the same three again.
+     */
+    private static final String LEGACY_SERIES = """
+                (SELECT timestamp, open, high, low, close, volume
+                 FROM prices
+                 WHERE symbol_id = (SELECT id FROM symbols WHERE symbol = ?)
+                   AND series_id = (SELECT id FROM series WHERE timespan = ? AND multiplier = ?)
+                 UNION ALL
+                 SELECT p.timestamp, p.open, p.high, p.low, p.close, p.volume
+                 FROM prices_legacy p
+                 WHERE p.symbol = ? AND p.timespan = ? AND p.multiplier = ?
+                   AND NOT EXISTS (SELECT 1 FROM prices n
+                                   WHERE n.symbol_id = (SELECT id FROM symbols WHERE symbol = p.symbol)
+                                     AND n.series_id = (SELECT id FROM series
+                                                        WHERE timespan = p.timespan AND multiplier = p.multiplier)
+                                     AND n.timestamp = p.timestamp))
+            """;
+
+    @FunctionalInterface
+    private interface PricesRead<T> {
+        T run(boolean legacy) throws SQLException;
+    }
+
+    // runs a prices read, through prices_legacy while the migration is pending
+    private <T> T readPrices(PricesRead<T> read) throws SQLException {
+        boolean legacy = legacyPricesPending;
+        try {
+            return read.run(legacy);
+        } catch (SQLException e) {
+            // the migration finished and dropped prices_legacy under us
+            if (legacy && !legacyPricesPending) return read.run(false);
+            throw e;
+        }
+    }
+
+    // symbol, timespan, multiplier from index i, twice when reading LEGACY_SERIES; returns the next index
+    private static int bindSeries(PreparedStatement ps, int i, String symbol, int multiplier, String timespan,
+            boolean legacy) throws SQLException {
+        for (int n = legacy ? 2 : 1; n > 0; n--) {
+            ps.setString(i++, symbol);
+            ps.setString(i++, timespan);
+            ps.setInt(i++, multiplier);
+        }
+        return i;
+    }
+
     // symbols
     /**
      * Lists all distinct symbols available in the prices table.
@@ -246,44 +734,62 @@ public class Database implements AutoCloseable {
      * @throws SQLException If a database access error occurs.
      */
     public List<String> listSymbols() throws SQLException {
-        String sql = "SELECT DISTINCT symbol FROM prices ORDER BY symbol ASC";
-        try (PreparedStatement ps = conn.prepareStatement(sql);
-                ResultSet rs = ps.executeQuery()) {
-            List<String> out = new ArrayList<>();
-            while (rs.next())
-                out.add(rs.getString(1));
-            return out;
-        }
+        return readPrices(legacy -> {
+            String sql = legacy ? """
+                        SELECT s.symbol FROM symbols s
+                        WHERE EXISTS (SELECT 1 FROM prices p WHERE p.symbol_id = s.id)
+                        UNION
+                        SELECT DISTINCT symbol FROM prices_legacy
+                        ORDER BY 1
+                    """ : """
+                        SELECT s.symbol FROM symbols s
+                        WHERE EXISTS (SELECT 1 FROM prices p WHERE p.symbol_id = s.id)
+                        ORDER BY s.symbol ASC
+                    """;
+            try (ConnectionPool.Lease r = read();
+                    PreparedStatement ps = r.prepare(sql);
+                    ResultSet rs = ps.executeQuery()) {
+                List<String> out = new ArrayList<>();
+                while (rs.next())
+                    out.add(rs.getString(1));
+                return out;
+            }
+        });
     }
     public void upsertCompanyProfile(String symbol, CompanyProfile cp, long fetchedMs) throws SQLException {
-        String s = symbol.trim().toUpperCase();
-        try (PreparedStatement ps = conn.prepareStatement("""
-                INSERT INTO company_profiles(symbol, country, currency, exchange, ipo, logo, market_cap, name, shares_outstanding, web_url, last_fetched_ms, last_failed_ms)
-                VALUES(?,?,?,?,?,?,?,?,?,?,?,0)
-                ON CONFLICT(symbol) DO UPDATE SET
-                country=excluded.country,
-                currency=excluded.currency,
-                exchange=excluded.exchange,
-                ipo=excluded.ipo,
-                logo=excluded.logo,
-                market_cap=excluded.market_cap,
-                name=excluded.name,
-                shares_outstanding=excluded.shares_outstanding,
-                web_url=excluded.web_url,
-                last_fetched_ms=excluded.last_fetched_ms
-            """)) {
-            ps.setString(1, s);
-            ps.setString(2, cp.getCountry());
-            ps.setString(3, cp.getCurrency());
-            ps.setString(4, cp.getExchange());
-            ps.setString(5, cp.getIpo());
-            ps.setString(6, cp.getLogo());
-            ps.setString(7, cp.getMarketCap());
-            ps.setString(8, cp.getName());
-            ps.setString(9, cp.getSharesOutstanding());
-            ps.setString(10, cp.getWeburl());
-            ps.setLong(11, fetchedMs);
-            ps.executeUpdate();
+        writeLock.lock();
+        try {
+            String s = symbol.trim().toUpperCase();
+            try (PreparedStatement ps = prepare("""
+                    INSERT INTO company_profiles(symbol, country, currency, exchange, ipo, logo, market_cap, name, shares_outstanding, web_url, last_fetched_ms, last_failed_ms)
+                    VALUES(?,?,?,?,?,?,?,?,?,?,?,0)
+                    ON CONFLICT(symbol) DO UPDATE SET
+                    country=excluded.country,
+                    currency=excluded.currency,
+                    exchange=excluded.exchange,
+                    ipo=excluded.ipo,
+                    logo=excluded.logo,
+                    market_cap=excluded.market_cap,
+                    name=excluded.name,
+                    shares_outstanding=excluded.shares_outstanding,
+                    web_url=excluded.web_url,
+                    last_fetched_ms=excluded.last_fetched_ms
+                """)) {
+                ps.setString(1, s);
+                ps.setString(2, cp.getCountry());
+                ps.setString(3, cp.getCurrency());
+                ps.setString(4, cp.getExchange());
+                ps.setString(5, cp.getIpo());
+                ps.setString(6, cp.getLogo());
+                ps.setString(7, cp.getMarketCap());
+                ps.setString(8, cp.getName());
+                ps.setString(9, cp.getSharesOutstanding());
+                ps.setString(10, cp.getWeburl());
+                ps.setLong(11, fetchedMs);
+                ps.executeUpdate();
+            }
+        } finally {
+            writeLock.unlock();
         }
     }
     public CompanyProfile getCompanyProfile(String symbol) throws SQLException {
@@ -293,7 +799,8 @@ public class Database implements AutoCloseable {
                 FROM company_profiles
                 WHERE symbol = ?
             """;
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (ConnectionPool.Lease r = read();
+                PreparedStatement ps = r.prepare(sql)) {
             ps.setString(1, symbol.trim().toUpperCase());
             try (ResultSet rs = ps.executeQuery()) {
                 if (!rs.next()) return null;
@@ -314,9 +821,12 @@ public class Database implements AutoCloseable {
     }
     public List<String> listSymbolsNeedingCompanyProfile(long staleAfterMs, long backoffMs, int limit) throws SQLException {
         // symbols present in prices but either missing a profile, or profile is stale and not recently failed
-        String sql = """
+        return readPrices(legacy -> {
+            String sql = """
                 WITH distinct_syms AS (
-                SELECT DISTINCT symbol FROM prices
+                SELECT sy.symbol FROM symbols sy
+                WHERE EXISTS (SELECT 1 FROM prices p WHERE p.symbol_id = sy.id)
+                """ + (legacy ? "UNION SELECT DISTINCT symbol FROM prices_legacy\n" : "") + """
                 )
                 SELECT s.symbol
                 FROM distinct_syms s
@@ -326,21 +836,24 @@ public class Database implements AutoCloseable {
                 AND (cp.last_failed_ms = 0 OR cp.last_failed_ms < ?)
                 LIMIT ?
             """;
-        long now = System.currentTimeMillis();
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setLong(1, now - staleAfterMs);
-            ps.setLong(2, now - backoffMs);
-            ps.setInt(3, Math.max(1, limit));
-            try (ResultSet rs = ps.executeQuery()) {
-                ArrayList<String> out = new ArrayList<>();
-                while (rs.next()) out.add(rs.getString(1));
-                return out;
+            long now = System.currentTimeMillis();
+            try (ConnectionPool.Lease r = read();
+                    PreparedStatement ps = r.prepare(sql)) {
+                ps.setLong(1, now - staleAfterMs);
+                ps.setLong(2, now - backoffMs);
+                ps.setInt(3, Math.max(1, limit));
+                try (ResultSet rs = ps.executeQuery()) {
+                    ArrayList<String> out = new ArrayList<>();
+                    while (rs.next()) out.add(rs.getString(1));
+                    return out;
+                }
             }
-        }
+        });
     }
     public long getCompanyProfileLastFetched(String symbol) throws SQLException {
         String sql = "SELECT last_fetched_ms FROM company_profiles WHERE symbol = ?";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (ConnectionPool.Lease r = read();
+                PreparedStatement ps = r.prepare(sql)) {
             ps.setString(1, symbol.trim().toUpperCase());
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
@@ -356,66 +869,368 @@ public class Database implements AutoCloseable {
         return getLatestTimestamp(symbol, 1, "day");
     }
     public long getLatestTimestamp(String symbol, int multiplier, String timespan) throws SQLException {
-        String sql = "SELECT MAX(timestamp) FROM prices WHERE symbol=? AND timespan=? AND multiplier=?";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, symbol);
-            ps.setString(2, timespan);
-            ps.setInt(3, multiplier);
-            try (ResultSet rs = ps.executeQuery()) {
-                return rs.next() ? rs.getLong(1) : 0L;
+        return readPrices(legacy -> {
+            String sql = legacy ? "SELECT MAX(timestamp) FROM " + LEGACY_SERIES : """
+                        SELECT MAX(timestamp) FROM prices
+                        WHERE symbol_id = (SELECT id FROM symbols WHERE symbol = ?)
+                          AND series_id = (SELECT id FROM series WHERE timespan = ? AND multiplier = ?)
+                    """;
+            try (ConnectionPool.Lease r = read();
+                    PreparedStatement ps = r.prepare(sql)) {
+                bindSeries(ps, 1, symbol, multiplier, timespan, legacy);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next() ? rs.getLong(1) : 0L;
+                }
             }
-        }
+        });
     }
     public long getEarliestTimestamp(String symbol, int multiplier, String timespan) throws SQLException {
-        String sql = "SELECT MIN(timestamp) FROM prices WHERE symbol=? AND timespan=? AND multiplier=?";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, symbol);
-            ps.setString(2, timespan);
-            ps.setInt(3, multiplier);
-            try (ResultSet rs = ps.executeQuery()) {
-                return rs.next() ? rs.getLong(1) : 0L;
+        return readPrices(legacy -> {
+            String sql = legacy ? "SELECT MIN(timestamp) FROM " + LEGACY_SERIES : """
+                        SELECT MIN(timestamp) FROM prices
+                        WHERE symbol_id = (SELECT id FROM symbols WHERE symbol = ?)
+                          AND series_id = (SELECT id FROM series WHERE timespan = ? AND multiplier = ?)
+                    """;
+            try (ConnectionPool.Lease r = read();
+                    PreparedStatement ps = r.prepare(sql)) {
+                bindSeries(ps, 1, symbol, multiplier, timespan, legacy);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next() ? rs.getLong(1) : 0L;
+                }
             }
-        }
+        });
     }
     public List<Long> listTimestamps(String symbol, int multiplier, String timespan,
             long startMs, long endMs) throws SQLException {
+        return readPrices(legacy -> {
+            String sql = legacy ? "SELECT timestamp FROM " + LEGACY_SERIES + """
+                        WHERE timestamp BETWEEN ? AND ?
+                        ORDER BY timestamp ASC
+                    """ : """
+                        SELECT timestamp FROM prices
+                        WHERE symbol_id = (SELECT id FROM symbols WHERE symbol = ?)
+                          AND series_id = (SELECT id FROM series WHERE timespan = ? AND multiplier = ?)
+                          AND timestamp BETWEEN ? AND ?
+                        ORDER BY timestamp ASC
+                    """;
+            java.util.ArrayList<Long> out = new java.util.ArrayList<>();
+            try (ConnectionPool.Lease r = read();
+                    PreparedStatement ps = r.prepare(sql)) {
+                int i = bindSeries(ps, 1, symbol, multiplier, timespan, legacy);
+                ps.setLong(i, startMs);
+                ps.setLong(i + 1, endMs);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next())
+                        out.add(rs.getLong(1));
+                }
+            }
+            return out;
+        });
+    }
+
+    /**
+     * Streams the distinct UTC days (days since the epoch, ascending) that have at
+     * least one row in [startMs, endMs]. Days are collapsed in SQL and handed over
+     * as primitives, so intraday series do not materialize one value per bar.
+     *
+     * @param sink Receives each epoch day.
+     */
+    public void scanEpochDays(String symbol, int multiplier, String timespan,
+            long startMs, long endMs, java.util.function.LongConsumer sink) throws SQLException {
+        readPrices(legacy -> {
+            String sql = legacy ? """
+                        SELECT timestamp / 86400000 FROM prices
+                        WHERE symbol_id = (SELECT id FROM symbols WHERE symbol = ?)
+                          AND series_id = (SELECT id FROM series WHERE timespan = ? AND multiplier = ?)
+                          AND timestamp BETWEEN ? AND ?
+                        UNION
+                        SELECT timestamp / 86400000 FROM prices_legacy
+                        WHERE symbol = ? AND timespan = ? AND multiplier = ? AND timestamp BETWEEN ? AND ?
+                        ORDER BY 1
+                    """ : """
+                        SELECT DISTINCT timestamp / 86400000 FROM prices
+                        WHERE symbol_id = (SELECT id FROM symbols WHERE symbol = ?)
+                          AND series_id = (SELECT id FROM series WHERE timespan = ? AND multiplier = ?)
+                          AND timestamp BETWEEN ? AND ?
+                        ORDER BY 1
+                    """;
+            try (ConnectionPool.Lease r = read();
+                    PreparedStatement ps = r.prepare(sql)) {
+                bindSeriesRange(ps, 1, symbol, multiplier, timespan, startMs, endMs);
+                if (legacy) bindSeriesRange(ps, 6, symbol, multiplier, timespan, startMs, endMs);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next())
+                        sink.accept(rs.getLong(1));
+                }
+            }
+            return null;
+        });
+    }
+    // symbol, timespan, multiplier, start, end from index i
+    private static void bindSeriesRange(PreparedStatement ps, int i, String symbol, int multiplier, String timespan,
+            long startMs, long endMs) throws SQLException {
+        ps.setString(i, symbol);
+        ps.setString(i + 1, timespan);
+        ps.setInt(i + 2, multiplier);
+        ps.setLong(i + 3, startMs);
+        ps.setLong(i + 4, endMs);
+    }
+
+    // backfill jobs
+    /**
+     * Records a new backfill job and its chunks in one transaction.
+     *
+     * @param chunks   The planned chunks; attempts and next attempt are ignored.
+     * @return The job id.
+     * @throws SQLException If a database access error occurs.
+     */
+    public long createBackfillJob(String symbol, int multiplier, String timespan,
+            List<BackfillChunk> chunks) throws SQLException {
+        writeLock.lock();
+        try {
+            boolean prev = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                long id;
+                try (PreparedStatement ins = prepare("""
+                            INSERT INTO backfill_jobs(symbol, multiplier, timespan, created_ms)
+                            VALUES(?,?,?,?)
+                        """, Statement.RETURN_GENERATED_KEYS)) {
+                    ins.setString(1, symbol);
+                    ins.setInt(2, multiplier);
+                    ins.setString(3, timespan);
+                    ins.setLong(4, System.currentTimeMillis());
+                    ins.executeUpdate();
+                    try (ResultSet ks = ins.getGeneratedKeys()) {
+                        if (!ks.next()) throw new SQLException("No backfill job id");
+                        id = ks.getLong(1);
+                    }
+                }
+                try (PreparedStatement ins = prepare(
+                        "INSERT INTO backfill_chunks(job_id, from_day, to_day) VALUES(?,?,?)")) {
+                    for (BackfillChunk c : chunks) {
+                        ins.setLong(1, id);
+                        ins.setLong(2, c.fromDay());
+                        ins.setLong(3, c.toDay());
+                        ins.addBatch();
+                    }
+                    ins.executeBatch();
+                }
+                conn.commit();
+                return id;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(prev);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Marks a chunk done, and deletes the job once none of its chunks are left.
+     *
+     * @throws SQLException If a database access error occurs.
+     */
+    public void completeBackfillChunk(long jobId, long fromDay) throws SQLException {
+        writeLock.lock();
+        try {
+            try (PreparedStatement up = prepare(
+                    "UPDATE backfill_chunks SET state='done' WHERE job_id=? AND from_day=?")) {
+                up.setLong(1, jobId);
+                up.setLong(2, fromDay);
+                up.executeUpdate();
+            }
+            try (PreparedStatement del = prepare("""
+                        DELETE FROM backfill_jobs WHERE id=? AND NOT EXISTS
+                          (SELECT 1 FROM backfill_chunks WHERE job_id=? AND state <> 'done')
+                    """)) {
+                del.setLong(1, jobId);
+                del.setLong(2, jobId);
+                del.executeUpdate();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Records a failed attempt at a chunk.
+     *
+     * @param attempts      Attempts made so far.
+     * @param nextAttemptMs When to try again, in epoch milliseconds.
+     * @param failed        True once retries for this run are used up; the chunk is
+     *                      kept for the next run.
+     * @throws SQLException If a database access error occurs.
+     */
+    public void deferBackfillChunk(long jobId, long fromDay, int attempts, long nextAttemptMs,
+            boolean failed) throws SQLException {
+        writeLock.lock();
+        try (PreparedStatement up = prepare("""
+                    UPDATE backfill_chunks SET attempts=?, next_attempt_ms=?, state=?
+                    WHERE job_id=? AND from_day=?
+                """)) {
+            up.setInt(1, attempts);
+            up.setLong(2, nextAttemptMs);
+            up.setString(3, failed ? "failed" : "pending");
+            up.setLong(4, jobId);
+            up.setLong(5, fromDay);
+            up.executeUpdate();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Deletes a job and its chunks, e.g. after a permanent error.
+     *
+     * @throws SQLException If a database access error occurs.
+     */
+    public void deleteBackfillJob(long jobId) throws SQLException {
+        writeLock.lock();
+        try (PreparedStatement del = prepare("DELETE FROM backfill_jobs WHERE id=?")) {
+            del.setLong(1, jobId);
+            del.executeUpdate();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Loads every job with unfinished chunks, oldest first. Failed chunks are
+     * returned too, with their attempt count reset.
+     *
+     * @return The jobs, each with its pending and failed chunks in date order.
+     * @throws SQLException If a database access error occurs.
+     */
+    public List<BackfillJob> loadBackfillJobs() throws SQLException {
         String sql = """
-                    SELECT timestamp FROM prices
-                    WHERE symbol=? AND timespan=? AND multiplier=?
-                      AND timestamp BETWEEN ? AND ?
-                    ORDER BY timestamp ASC
+                    SELECT j.id, j.symbol, j.multiplier, j.timespan,
+                           c.from_day, c.to_day, c.state, c.attempts, c.next_attempt_ms
+                    FROM backfill_jobs j JOIN backfill_chunks c ON c.job_id = j.id
+                    WHERE c.state <> 'done'
+                    ORDER BY j.id, c.from_day
                 """;
-        java.util.ArrayList<Long> out = new java.util.ArrayList<>();
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, symbol);
-            ps.setString(2, timespan);
-            ps.setInt(3, multiplier);
-            ps.setLong(4, startMs);
-            ps.setLong(5, endMs);
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next())
-                    out.add(rs.getLong(1));
+        List<BackfillJob> out = new ArrayList<>();
+        try (ConnectionPool.Lease r = read();
+                PreparedStatement ps = r.prepare(sql);
+                ResultSet rs = ps.executeQuery()) {
+            BackfillJob job = null;
+            while (rs.next()) {
+                long id = rs.getLong(1);
+                if (job == null || job.id() != id) {
+                    job = new BackfillJob(id, rs.getString(2), rs.getInt(3), rs.getString(4), new ArrayList<>());
+                    out.add(job);
+                }
+                boolean failed = "failed".equals(rs.getString(7));
+                job.chunks().add(new BackfillChunk(rs.getLong(5), rs.getLong(6),
+                        failed ? 0 : rs.getInt(8), failed ? 0 : rs.getLong(9)));
             }
         }
         return out;
     }
 
     // price candles
-    public ResultSet getCandles(String symbol, int multiplier, String timespan,
-                                long startMs, long endMs) throws SQLException {
-        PreparedStatement ps = conn.prepareStatement("""
-                    SELECT timestamp, open, high, low, close, volume
+    /**
+     * Reads candles in [startMs, endMs] from the columnar candle store.
+     * The first read of a series builds its segment from the prices table; later
+     * reads are binary searches over the mapped timestamp column.
+     *
+     * @param symbol     The stock symbol.
+     * @param multiplier The time multiplier.
+     * @param timespan   The timespan unit.
+     * @param startMs    The start timestamp (inclusive).
+     * @param endMs      The end timestamp (inclusive).
+     * @return The candles in range, ordered by timestamp.
+     * @throws SQLException If the series cannot be read.
+     */
+    public CandleStore.Slice getCandleSlice(String symbol, int multiplier, String timespan,
+                                            long startMs, long endMs) throws SQLException {
+        if (candles == null || legacyPricesPending) {
+            // no segments while prices is still filling; they are dropped when the migration ends anyway
+            return CandleStore.Slice.of(loadCandles(symbol, multiplier, timespan, startMs, endMs));
+        }
+        try {
+            return candles.range(symbol, multiplier, timespan, startMs, endMs,
+                    () -> loadCandles(symbol, multiplier, timespan, Long.MIN_VALUE, Long.MAX_VALUE),
+                    () -> summarizeCandles(symbol, multiplier, timespan));
+        } catch (SQLException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new SQLException("Failed to read candle segment for " + symbol, e);
+        }
+    }
+    private List<CandleData> loadCandles(String symbol, int multiplier, String timespan,
+                                         long startMs, long endMs) throws SQLException {
+        return readPrices(legacy -> {
+            String sql = legacy ? "SELECT timestamp, open, high, low, close, volume FROM " + LEGACY_SERIES + """
+                        WHERE timestamp BETWEEN ? AND ?
+                        ORDER BY timestamp ASC
+                    """ : """
+                        SELECT timestamp, open, high, low, close, volume
+                        FROM prices
+                        WHERE symbol_id = (SELECT id FROM symbols WHERE symbol = ?)
+                          AND series_id = (SELECT id FROM series WHERE timespan = ? AND multiplier = ?)
+                          AND timestamp BETWEEN ? AND ?
+                        ORDER BY timestamp ASC
+                    """;
+            ArrayList<CandleData> out = new ArrayList<>();
+            try (ConnectionPool.Lease r = read();
+                    PreparedStatement ps = r.prepare(sql)) {
+                int i = bindSeries(ps, 1, symbol, multiplier, timespan, legacy);
+                ps.setLong(i, startMs);
+                ps.setLong(i + 1, endMs);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        out.add(new CandleData(symbol, rs.getLong(1),
+                                rs.getDouble(2), rs.getDouble(3), rs.getDouble(4),
+                                rs.getDouble(5), rs.getDouble(6)));
+                    }
+                }
+            }
+            return out;
+        });
+    }
+    private CandleStore.Summary summarizeCandles(String symbol, int multiplier, String timespan) throws SQLException {
+        String sql = """
+                    SELECT COUNT(*) OVER (), timestamp, close, volume
                     FROM prices
-                    WHERE symbol = ? AND timespan = ? AND multiplier = ?
-                      AND timestamp BETWEEN ? AND ?
-                    ORDER BY timestamp ASC
-                """);
-        ps.setString(1, symbol);
-        ps.setString(2, timespan);
-        ps.setInt(3, multiplier);
-        ps.setLong(4, startMs);
-        ps.setLong(5, endMs);
-        return ps.executeQuery();
+                    WHERE symbol_id = (SELECT id FROM symbols WHERE symbol = ?)
+                      AND series_id = (SELECT id FROM series WHERE timespan = ? AND multiplier = ?)
+                    ORDER BY timestamp DESC
+                    LIMIT 1
+                """;
+        try (ConnectionPool.Lease r = read();
+                PreparedStatement ps = r.prepare(sql)) {
+            ps.setString(1, symbol);
+            ps.setString(2, timespan);
+            ps.setInt(3, multiplier);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return new CandleStore.Summary(0, Long.MIN_VALUE, 0, 0);
+                return new CandleStore.Summary(rs.getInt(1), rs.getLong(2), rs.getDouble(3), rs.getDouble(4));
+            }
+        }
+    }
+    // before the SQL write, so a crash in between can't leave a segment with old rows
+    private void beforeWrite(String symbol, int multiplier, String timespan, List<CandleData> rows) {
+        if (candles == null) return;
+        try {
+            candles.beforeWrite(symbol, multiplier, timespan, rows);
+        } catch (Exception e) {
+            candles.invalidate(symbol, multiplier, timespan);
+        }
+    }
+    // keep the candle store in step with prices; failures only cost a rebuild
+    private void writeThrough(String symbol, int multiplier, String timespan, List<CandleData> rows) {
+        if (candles == null) return;
+        try {
+            candles.merge(symbol, multiplier, timespan, rows);
+        } catch (Exception e) {
+            System.err.println("[Database] Candle segment write failed for " + symbol + ": " + e.getMessage());
+            candles.invalidate(symbol, multiplier, timespan);
+        }
     }
     public double getFallbackPrice(String symbol, long ts) {
         try {
@@ -434,59 +1249,72 @@ public class Database implements AutoCloseable {
         }
     }
     public double[] latestAndPrevClose(String symbol, int multiplier, String timespan) throws SQLException {
-        String sql = """
-                    SELECT close FROM prices
-                    WHERE symbol = ? AND timespan = ? AND multiplier = ?
-                    ORDER BY timestamp DESC
-                    LIMIT 2
-                """;
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, symbol);
-            ps.setString(2, timespan);
-            ps.setInt(3, multiplier);
-            try (ResultSet rs = ps.executeQuery()) {
-                Double last = null, prev = null;
-                if (rs.next())
-                    last = rs.getDouble(1);
-                if (rs.next())
-                    prev = rs.getDouble(1);
-                return new double[] {
-                        last == null ? Double.NaN : last,
-                        prev == null ? Double.NaN : prev
-                };
+        return readPrices(legacy -> {
+            String sql = legacy ? "SELECT close FROM " + LEGACY_SERIES + """
+                        ORDER BY timestamp DESC
+                        LIMIT 2
+                    """ : """
+                        SELECT close FROM prices
+                        WHERE symbol_id = (SELECT id FROM symbols WHERE symbol = ?)
+                          AND series_id = (SELECT id FROM series WHERE timespan = ? AND multiplier = ?)
+                        ORDER BY timestamp DESC
+                        LIMIT 2
+                    """;
+            try (ConnectionPool.Lease r = read();
+                    PreparedStatement ps = r.prepare(sql)) {
+                bindSeries(ps, 1, symbol, multiplier, timespan, legacy);
+                try (ResultSet rs = ps.executeQuery()) {
+                    Double last = null, prev = null;
+                    if (rs.next())
+                        last = rs.getDouble(1);
+                    if (rs.next())
+                        prev = rs.getDouble(1);
+                    return new double[] {
+                            last == null ? Double.NaN : last,
+                            prev == null ? Double.NaN : prev
+                    };
+                }
             }
-        }
+        });
     }
     public double getCloseAtOrBefore(String symbol, long ts, int mult, String timespan) throws SQLException {
-        String sql = """
-                    SELECT close FROM prices
-                    WHERE symbol=? AND timespan=? AND multiplier=? AND timestamp <= ?
-                    ORDER BY timestamp DESC LIMIT 1
-                """;
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, symbol);
-            ps.setString(2, timespan);
-            ps.setInt(3, mult);
-            ps.setLong(4, ts);
-            try (ResultSet rs = ps.executeQuery()) {
-                return rs.next() ? rs.getDouble(1) : Double.NaN;
+        return readPrices(legacy -> {
+            String sql = legacy ? "SELECT close FROM " + LEGACY_SERIES + """
+                        WHERE timestamp <= ?
+                        ORDER BY timestamp DESC LIMIT 1
+                    """ : """
+                        SELECT close FROM prices
+                        WHERE symbol_id = (SELECT id FROM symbols WHERE symbol = ?)
+                          AND series_id = (SELECT id FROM series WHERE timespan = ? AND multiplier = ?)
+                          AND timestamp <= ?
+                        ORDER BY timestamp DESC LIMIT 1
+                    """;
+            try (ConnectionPool.Lease r = read();
+                    PreparedStatement ps = r.prepare(sql)) {
+                int i = bindSeries(ps, 1, symbol, mult, timespan, legacy);
+                ps.setLong(i, ts);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next() ? rs.getDouble(1) : Double.NaN;
+                }
             }
-        }
+        });
     }
     public double getFirstClose(String symbol, int mult, String timespan) throws SQLException {
-        String sql = """
-                    SELECT close FROM prices
-                    WHERE symbol=? AND timespan=? AND multiplier=?
-                    ORDER BY timestamp ASC LIMIT 1
-                """;
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, symbol);
-            ps.setString(2, timespan);
-            ps.setInt(3, mult);
-            try (ResultSet rs = ps.executeQuery()) {
-                return rs.next() ? rs.getDouble(1) : Double.NaN;
+        return readPrices(legacy -> {
+            String sql = legacy ? "SELECT close FROM " + LEGACY_SERIES + "ORDER BY timestamp ASC LIMIT 1" : """
+                        SELECT close FROM prices
+                        WHERE symbol_id = (SELECT id FROM symbols WHERE symbol = ?)
+                          AND series_id = (SELECT id FROM series WHERE timespan = ? AND multiplier = ?)
+                        ORDER BY timestamp ASC LIMIT 1
+                    """;
+            try (ConnectionPool.Lease r = read();
+                    PreparedStatement ps = r.prepare(sql)) {
+                bindSeries(ps, 1, symbol, mult, timespan, legacy);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next() ? rs.getDouble(1) : Double.NaN;
+                }
             }
-        }
+        });
     }
     /**
      * Inserts a single candle into the prices table.
@@ -505,21 +1333,30 @@ public class Database implements AutoCloseable {
     public void insertCandle(String symbol, int multiplier, String timespan,
             long timestamp, double open, double high, double low,
             double close, double volume) throws SQLException {
-        String sql = """
-                    INSERT OR REPLACE INTO prices(symbol, timespan, multiplier, timestamp, open, high, low, close, volume)
-                    VALUES(?,?,?,?,?,?,?,?,?)
-                """;
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, symbol);
-            ps.setString(2, timespan);
-            ps.setInt(3, multiplier);
-            ps.setLong(4, timestamp);
-            ps.setDouble(5, open);
-            ps.setDouble(6, high);
-            ps.setDouble(7, low);
-            ps.setDouble(8, close);
-            ps.setDouble(9, volume);
-            ps.executeUpdate();
+        writeLock.lock();
+        try {
+            int symbolId = symbolIdForWrite(symbol);
+            int seriesId = seriesIdForWrite(multiplier, timespan);
+            List<CandleData> row = List.of(new CandleData(symbol, timestamp, open, high, low, close, volume));
+            beforeWrite(symbol, multiplier, timespan, row);
+            String sql = """
+                        INSERT OR REPLACE INTO prices(symbol_id, series_id, timestamp, open, high, low, close, volume)
+                        VALUES(?,?,?,?,?,?,?,?)
+                    """;
+            try (PreparedStatement ps = prepare(sql)) {
+                ps.setInt(1, symbolId);
+                ps.setInt(2, seriesId);
+                ps.setLong(3, timestamp);
+                ps.setDouble(4, open);
+                ps.setDouble(5, high);
+                ps.setDouble(6, low);
+                ps.setDouble(7, close);
+                ps.setDouble(8, volume);
+                ps.executeUpdate();
+            }
+            writeThrough(symbol, multiplier, timespan, row);
+        } finally {
+            writeLock.unlock();
         }
     }
     /**
@@ -533,29 +1370,184 @@ public class Database implements AutoCloseable {
      */
     public void insertCandlesBatch(String symbol, int multiplier, String timespan,
             List<CandleData> rows) throws SQLException {
-        boolean prev = conn.getAutoCommit();
-        conn.setAutoCommit(false);
+        insertCandlesBatch(multiplier, timespan, Map.of(symbol, rows));
+    }
+    /**
+     * Inserts candles for several symbols of one series in a single transaction.
+     *
+     * @param multiplier The time multiplier.
+     * @param timespan   The timespan unit.
+     * @param bySymbol   The candles to insert, keyed by symbol.
+     * @throws SQLException If a database access error occurs.
+     */
+    public void insertCandlesBatch(int multiplier, String timespan,
+            Map<String, List<CandleData>> bySymbol) throws SQLException {
+        writeCandles(multiplier, timespan, bySymbol, false, (seriesId, ids) -> batchCandles("""
+                    INSERT OR REPLACE INTO prices(symbol_id, series_id, timestamp, open, high, low, close, volume)
+                    VALUES(?,?,?,?,?,?,?,?)
+                """, seriesId, ids, bySymbol));
+    }
+    /**
+     * Writes live bars for several symbols of one series in a single transaction.
+     * A completed bar is final once stored: writing it again, e.g. from a replayed
+     * session, leaves the stored row alone. A partial bar is one written before its
+     * bucket ended, such as an open bar on shutdown; it is stored with the time of
+     * its last trade. A later write to a partial bar keeps its open, widens high and
+     * low, takes the new close and adds the new volume, and is final if the new bar
+     * is complete. Callers must only pass trades after the stored time, see
+     * {@link #loadPartialCandleTimes}, so no trade is counted twice.
+     *
+     * @param multiplier The time multiplier.
+     * @param timespan   The timespan unit.
+     * @param completed  Bars whose bucket has ended, keyed by symbol.
+     * @param partial    Bars still open, keyed by symbol.
+     * @throws SQLException If a database access error occurs.
+     */
+    public void mergeCandlesBatch(int multiplier, String timespan,
+            Map<String, List<CandleData>> completed, Map<String, PartialCandle> partial) throws SQLException {
+        Map<String, List<CandleData>> all = new LinkedHashMap<>();
+        completed.forEach((symbol, rows) -> all.computeIfAbsent(symbol, k -> new ArrayList<>()).addAll(rows));
+        partial.forEach((symbol, p) -> all.computeIfAbsent(symbol, k -> new ArrayList<>()).add(p.candle()));
+        writeCandles(multiplier, timespan, all, true, (seriesId, ids) -> {
+            // before the merge: mark new bars and bars that are still partial, never a final one
+            try (PreparedStatement ps = prepare("""
+                        INSERT INTO partial_candles(symbol_id, series_id, timestamp, through_ms)
+                        SELECT ?1, ?2, ?3, ?4
+                        WHERE NOT EXISTS (SELECT 1 FROM prices
+                                          WHERE symbol_id = ?1 AND series_id = ?2 AND timestamp = ?3)
+                           OR EXISTS (SELECT 1 FROM partial_candles
+                                      WHERE symbol_id = ?1 AND series_id = ?2 AND timestamp = ?3)
+                        ON CONFLICT(symbol_id, series_id, timestamp) DO UPDATE SET
+                            through_ms = MAX(through_ms, excluded.through_ms)
+                    """)) {
+                for (Map.Entry<String, PartialCandle> e : partial.entrySet()) {
+                    ps.setInt(1, ids.get(e.getKey()));
+                    ps.setInt(2, seriesId);
+                    ps.setLong(3, e.getValue().candle().timestamp());
+                    ps.setLong(4, e.getValue().throughMs());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            batchCandles("""
+                        INSERT INTO prices(symbol_id, series_id, timestamp, open, high, low, close, volume)
+                        VALUES(?,?,?,?,?,?,?,?)
+                        ON CONFLICT(symbol_id, series_id, timestamp) DO UPDATE SET
+                            high = MAX(high, excluded.high),
+                            low = MIN(low, excluded.low),
+                            close = excluded.close,
+                            volume = volume + excluded.volume
+                        WHERE EXISTS (SELECT 1 FROM partial_candles b
+                                      WHERE b.symbol_id = excluded.symbol_id AND b.series_id = excluded.series_id
+                                        AND b.timestamp = excluded.timestamp)
+                    """, seriesId, ids, all);
+            // completed bars are final from here on
+            try (PreparedStatement ps = prepare(
+                    "DELETE FROM partial_candles WHERE symbol_id = ? AND series_id = ? AND timestamp = ?")) {
+                for (Map.Entry<String, List<CandleData>> e : completed.entrySet()) {
+                    for (CandleData r : e.getValue()) {
+                        ps.setInt(1, ids.get(e.getKey()));
+                        ps.setInt(2, seriesId);
+                        ps.setLong(3, r.timestamp());
+                        ps.addBatch();
+                    }
+                }
+                ps.executeBatch();
+            }
+        });
+    }
+    /**
+     * Gets, per symbol, the time of the last trade held by a partial bar of the
+     * series. A bar aggregator that starts again skips trades up to that time.
+     *
+     * @param multiplier The time multiplier.
+     * @param timespan   The timespan unit.
+     * @return Symbol to epoch milliseconds; empty if no bar is partial.
+     * @throws SQLException If a database access error occurs.
+     */
+    public Map<String, Long> loadPartialCandleTimes(int multiplier, String timespan) throws SQLException {
         String sql = """
-                    INSERT OR REPLACE INTO prices(symbol, timespan, multiplier, timestamp, open, high, low, close, volume)
-                    VALUES(?,?,?,?,?,?,?,?,?)
+                    SELECT s.symbol, MAX(b.through_ms)
+                    FROM partial_candles b
+                    JOIN symbols s ON s.id = b.symbol_id
+                    WHERE b.series_id = (SELECT id FROM series WHERE timespan = ? AND multiplier = ?)
+                    GROUP BY s.symbol
                 """;
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            for (CandleData r : rows) {
-                ps.setString(1, symbol);
-                ps.setString(2, timespan);
-                ps.setInt(3, multiplier);
-                ps.setLong(4, r.timestamp());
-                ps.setDouble(5, r.open());
-                ps.setDouble(6, r.high());
-                ps.setDouble(7, r.low());
-                ps.setDouble(8, r.close());
-                ps.setDouble(9, r.volume());
-                ps.addBatch();
+        Map<String, Long> out = new HashMap<>();
+        try (ConnectionPool.Lease r = read();
+                PreparedStatement ps = r.prepare(sql)) {
+            ps.setString(1, timespan);
+            ps.setInt(2, multiplier);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next())
+                    out.put(rs.getString(1), rs.getLong(2));
+            }
+        }
+        return out;
+    }
+
+    @FunctionalInterface
+    private interface CandleWrites {
+        void run(int seriesId, Map<String, Integer> ids) throws SQLException;
+    }
+
+    // one batch of candle rows; binds symbol id, series id, timestamp, OHLCV
+    private void batchCandles(String sql, int seriesId, Map<String, Integer> ids,
+            Map<String, List<CandleData>> bySymbol) throws SQLException {
+        try (PreparedStatement ps = prepare(sql)) {
+            for (Map.Entry<String, List<CandleData>> e : bySymbol.entrySet()) {
+                int symbolId = ids.get(e.getKey());
+                for (CandleData r : e.getValue()) {
+                    ps.setInt(1, symbolId);
+                    ps.setInt(2, seriesId);
+                    ps.setLong(3, r.timestamp());
+                    ps.setDouble(4, r.open());
+                    ps.setDouble(5, r.high());
+                    ps.setDouble(6, r.low());
+                    ps.setDouble(7, r.close());
+                    ps.setDouble(8, r.volume());
+                    ps.addBatch();
+                }
             }
             ps.executeBatch();
-            conn.commit();
+        }
+    }
+    private void writeCandles(int multiplier, String timespan, Map<String, List<CandleData>> bySymbol,
+            boolean merged, CandleWrites writes) throws SQLException {
+        writeLock.lock();
+        try {
+            int seriesId = seriesIdForWrite(multiplier, timespan);
+            // resolve ids outside the transaction so a rollback can't orphan cached ids
+            Map<String, Integer> ids = new HashMap<>();
+            for (String symbol : bySymbol.keySet()) ids.put(symbol, symbolIdForWrite(symbol));
+            for (Map.Entry<String, List<CandleData>> e : bySymbol.entrySet())
+                beforeWrite(e.getKey(), multiplier, timespan, e.getValue());
+            boolean prev = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                writes.run(seriesId, ids);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(prev);
+            }
+            for (Map.Entry<String, List<CandleData>> e : bySymbol.entrySet()) {
+                List<CandleData> rows = e.getValue();
+                if (merged && !rows.isEmpty()) {
+                    // the stored rows, not the parts, go to the candle store
+                    long lo = Long.MAX_VALUE, hi = Long.MIN_VALUE;
+                    for (CandleData r : rows) {
+                        lo = Math.min(lo, r.timestamp());
+                        hi = Math.max(hi, r.timestamp());
+                    }
+                    rows = loadCandles(e.getKey(), multiplier, timespan, lo, hi);
+                }
+                writeThrough(e.getKey(), multiplier, timespan, rows);
+            }
         } finally {
-            conn.setAutoCommit(prev);
+            writeLock.unlock();
         }
     }
 
@@ -568,27 +1560,33 @@ public class Database implements AutoCloseable {
      * @throws SQLException If a database access error occurs.
      */
     public long getOrCreateProfile(String name) throws SQLException {
-        try (PreparedStatement sel = conn.prepareStatement("SELECT id FROM profiles WHERE name=?")) {
-            sel.setString(1, name);
-            try (ResultSet rs = sel.executeQuery()) {
-                if (rs.next())
-                    return rs.getLong(1);
+        writeLock.lock();
+        try {
+            try (PreparedStatement sel = prepare("SELECT id FROM profiles WHERE name=?")) {
+                sel.setString(1, name);
+                try (ResultSet rs = sel.executeQuery()) {
+                    if (rs.next())
+                        return rs.getLong(1);
+                }
             }
-        }
-        try (PreparedStatement ins = conn.prepareStatement(
-                "INSERT INTO profiles(name) VALUES(?)",
-                Statement.RETURN_GENERATED_KEYS)) {
-            ins.setString(1, name);
-            ins.executeUpdate();
-            try (ResultSet rs = ins.getGeneratedKeys()) {
-                if (rs.next())
-                    return rs.getLong(1);
+            try (PreparedStatement ins = prepare(
+                    "INSERT INTO profiles(name) VALUES(?)",
+                    Statement.RETURN_GENERATED_KEYS)) {
+                ins.setString(1, name);
+                ins.executeUpdate();
+                try (ResultSet rs = ins.getGeneratedKeys()) {
+                    if (rs.next())
+                        return rs.getLong(1);
+                }
             }
+            throw new SQLException("Failed to create profile: " + name);
+        } finally {
+            writeLock.unlock();
         }
-        throw new SQLException("Failed to create profile: " + name);
     }
     public String getProfileName(long profileId) throws SQLException {
-        try (PreparedStatement ps = conn.prepareStatement(
+        try (ConnectionPool.Lease r = read();
+                PreparedStatement ps = r.prepare(
                 "SELECT name FROM profiles WHERE id=?")) {
             ps.setLong(1, profileId);
             try (ResultSet rs = ps.executeQuery()) {
@@ -610,32 +1608,38 @@ public class Database implements AutoCloseable {
      * @throws SQLException If a database access error occurs.
      */
     public long getOrCreateAccount(String accountName, String baseCurrency) throws SQLException {
-        long profileId = getSingletonProfileId();
-        try (PreparedStatement sel = conn.prepareStatement(
-                "SELECT id FROM accounts WHERE profile_id=? AND name=?")) {
-            sel.setLong(1, profileId);
-            sel.setString(2, accountName);
-            try (ResultSet rs = sel.executeQuery()) {
-                if (rs.next())
-                    return rs.getLong(1);
+        writeLock.lock();
+        try {
+            long profileId = getSingletonProfileId();
+            try (PreparedStatement sel = prepare(
+                    "SELECT id FROM accounts WHERE profile_id=? AND name=?")) {
+                sel.setLong(1, profileId);
+                sel.setString(2, accountName);
+                try (ResultSet rs = sel.executeQuery()) {
+                    if (rs.next())
+                        return rs.getLong(1);
+                }
             }
-        }
-        try (PreparedStatement ins = conn.prepareStatement(
-                "INSERT INTO accounts(profile_id, name, base_currency) VALUES(?,?,?)",
-                Statement.RETURN_GENERATED_KEYS)) {
-            ins.setLong(1, profileId);
-            ins.setString(2, accountName);
-            ins.setString(3, baseCurrency == null ? "USD" : baseCurrency);
-            ins.executeUpdate();
-            try (ResultSet rs = ins.getGeneratedKeys()) {
-                if (rs.next())
-                    return rs.getLong(1);
+            try (PreparedStatement ins = prepare(
+                    "INSERT INTO accounts(profile_id, name, base_currency) VALUES(?,?,?)",
+                    Statement.RETURN_GENERATED_KEYS)) {
+                ins.setLong(1, profileId);
+                ins.setString(2, accountName);
+                ins.setString(3, baseCurrency == null ? "USD" : baseCurrency);
+                ins.executeUpdate();
+                try (ResultSet rs = ins.getGeneratedKeys()) {
+                    if (rs.next())
+                        return rs.getLong(1);
+                }
             }
+            throw new SQLException("Failed to create account: " + accountName);
+        } finally {
+            writeLock.unlock();
         }
-        throw new SQLException("Failed to create account: " + accountName);
     }
     public List<Account> listAccounts(long profileId) throws SQLException {
-        try (PreparedStatement ps = conn.prepareStatement(
+        try (ConnectionPool.Lease r = read();
+                PreparedStatement ps = r.prepare(
                 "SELECT id, name FROM accounts WHERE profile_id=? ORDER BY name")) {
             ps.setLong(1, profileId);
             try (ResultSet rs = ps.executeQuery()) {
@@ -648,7 +1652,8 @@ public class Database implements AutoCloseable {
     }
     public Long getDefaultAccountId(long profileId) throws SQLException {
         String sql = "SELECT default_account_id FROM profile_settings WHERE profile_id = ?";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (ConnectionPool.Lease r = read();
+                PreparedStatement ps = r.prepare(sql)) {
             ps.setLong(1, profileId);
             try (ResultSet rs = ps.executeQuery()) {
                 if (!rs.next()) return null;
@@ -659,50 +1664,70 @@ public class Database implements AutoCloseable {
         }
     }
     public void setDefaultAccountId(long profileId, long accountId) throws SQLException {
-        String sql = """
-                INSERT INTO profile_settings (profile_id, default_account_id)
-                VALUES (?, ?)
-                ON CONFLICT(profile_id) DO UPDATE SET default_account_id = excluded.default_account_id
-            """;
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setLong(1, profileId);
-            ps.setLong(2, accountId);
-            ps.executeUpdate();
+        writeLock.lock();
+        try {
+            String sql = """
+                    INSERT INTO profile_settings (profile_id, default_account_id)
+                    VALUES (?, ?)
+                    ON CONFLICT(profile_id) DO UPDATE SET default_account_id = excluded.default_account_id
+                """;
+            try (PreparedStatement ps = prepare(sql)) {
+                ps.setLong(1, profileId);
+                ps.setLong(2, accountId);
+                ps.executeUpdate();
+            }
+        } finally {
+            writeLock.unlock();
         }
     }
     public void clearDefaultAccount(long profileId) throws SQLException {
-        String sql = """
-                INSERT INTO profile_settings (profile_id, default_account_id)
-                VALUES (?, NULL)
-                ON CONFLICT(profile_id) DO UPDATE SET default_account_id = NULL
-            """;
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setLong(1, profileId);
-            ps.executeUpdate();
+        writeLock.lock();
+        try {
+            String sql = """
+                    INSERT INTO profile_settings (profile_id, default_account_id)
+                    VALUES (?, NULL)
+                    ON CONFLICT(profile_id) DO UPDATE SET default_account_id = NULL
+                """;
+            try (PreparedStatement ps = prepare(sql)) {
+                ps.setLong(1, profileId);
+                ps.executeUpdate();
+            }
+        } finally {
+            writeLock.unlock();
         }
     }
     public void renameAccount(long accountId, String newName) throws SQLException {
-        if (newName == null || newName.isBlank()) {
-            throw new IllegalArgumentException("newName must be non-empty");
-        }
+        writeLock.lock();
+        try {
+            if (newName == null || newName.isBlank()) {
+                throw new IllegalArgumentException("newName must be non-empty");
+            }
 
-        String trimmed = newName.trim();
+            String trimmed = newName.trim();
 
-        try (PreparedStatement ps = conn.prepareStatement(
-                "UPDATE accounts SET name = ? WHERE id = ?")) {
-            ps.setString(1, trimmed);
-            ps.setLong(2, accountId);
+            try (PreparedStatement ps = prepare(
+                    "UPDATE accounts SET name = ? WHERE id = ?")) {
+                ps.setString(1, trimmed);
+                ps.setLong(2, accountId);
 
-            int updated = ps.executeUpdate();
-            if (updated == 0) {
-                throw new SQLException("No account found with id=" + accountId);
+                int updated = ps.executeUpdate();
+                if (updated == 0) {
+                    throw new SQLException("No account found with id=" + accountId);
+                }
             }
+        } finally {
+            writeLock.unlock();
         }
     }
     public void deleteAccount(long accountId) throws SQLException {
-        try (PreparedStatement ps = conn.prepareStatement("DELETE FROM accounts WHERE id = ?")) {
-            ps.setLong(1, accountId);
-            ps.executeUpdate();
+        writeLock.lock();
+        try {
+            try (PreparedStatement ps = prepare("DELETE FROM accounts WHERE id = ?")) {
+                ps.setLong(1, accountId);
+                ps.executeUpdate();
+            }
+        } finally {
+            writeLock.unlock();
         }
     }
     /**
@@ -739,34 +1764,136 @@ public class Database implements AutoCloseable {
      * @throws SQLException If a database access error occurs.
      */
     public double getAccountCash(long accountId) throws SQLException {
-        try (PreparedStatement ps = conn.prepareStatement("""
-                    SELECT COALESCE(SUM(delta), 0.0) FROM cash_ledger WHERE account_id=?
-                """)) {
-            ps.setLong(1, accountId);
-            try (ResultSet rs = ps.executeQuery()) {
-                return rs.next() ? rs.getDouble(1) : 0.0;
+        try (ConnectionPool.Lease r = read()) {
+            try (PreparedStatement ps = r.prepare("SELECT cash FROM account_balances WHERE account_id=?")) {
+                ps.setLong(1, accountId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) return rs.getDouble(1);
+                }
+            }
+            // no snapshot yet; derive it from the ledger
+            try (PreparedStatement ps = r.prepare("""
+                        SELECT COALESCE(SUM(delta), 0.0) FROM cash_ledger WHERE account_id=?
+                    """)) {
+                ps.setLong(1, accountId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next() ? rs.getDouble(1) : 0.0;
+                }
             }
         }
     }
-    private long recordCash(long accountId, long ts, double delta, String reason, String note) throws SQLException {
-        try (PreparedStatement ps = conn.prepareStatement("""
-                    INSERT INTO cash_ledger(account_id, timestamp_ms, delta, reason, note)
-                    VALUES(?,?,?,?,?)
-                """, Statement.RETURN_GENERATED_KEYS)) {
+    /**
+     * Re-derives every account's cash from the ledger and repairs snapshot rows
+     * that have drifted. Runs periodically in the background for file databases.
+     * The ledger is scanned on a read connection; the write lock is only taken to
+     * re-check and repair the accounts the scan found, so trades keep going
+     * during the scan.
+     *
+     * @return The number of accounts whose snapshot was corrected.
+     * @throws SQLException If a database access error occurs.
+     */
+    public int verifyAccountBalances() throws SQLException {
+        String sql = """
+                    SELECT l.account_id, l.total, b.cash
+                    FROM (SELECT account_id, SUM(delta) AS total FROM cash_ledger GROUP BY account_id) l
+                    LEFT JOIN account_balances b ON b.account_id = l.account_id
+                    WHERE b.cash IS NULL OR ABS(b.cash - l.total) > 1e-6
+                """;
+        List<Long> suspects = new ArrayList<>();
+        try (ConnectionPool.Lease r = read();
+                PreparedStatement ps = r.prepare(sql);
+                ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) suspects.add(rs.getLong(1));
+        }
+        if (suspects.isEmpty()) return 0;
+
+        // trades may have landed since the scan; re-check each account against the ledger as it is now
+        String recheck = """
+                    SELECT (SELECT COALESCE(SUM(delta), 0.0) FROM cash_ledger WHERE account_id = ?),
+                           (SELECT cash FROM account_balances WHERE account_id = ?)
+                """;
+        int repaired = 0;
+        writeLock.lock();
+        try (PreparedStatement ps = prepare(recheck);
+                PreparedStatement up = prepare("""
+                        INSERT INTO account_balances(account_id, cash, updated_ms) VALUES(?,?,?)
+                        ON CONFLICT(account_id) DO UPDATE SET cash=excluded.cash, updated_ms=excluded.updated_ms
+                    """)) {
+            for (long accountId : suspects) {
+                ps.setLong(1, accountId);
+                ps.setLong(2, accountId);
+                double total;
+                Object cash;
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next()) continue;
+                    total = rs.getDouble(1);
+                    cash = rs.getObject(2);
+                }
+                if (cash != null && Math.abs(((Number) cash).doubleValue() - total) <= 1e-6) continue;
+                System.err.printf("[Database] Cash snapshot for account %d was %s, ledger says %.2f; repairing%n",
+                        accountId, cash == null ? "missing" : String.format("%.2f", ((Number) cash).doubleValue()), total);
+                up.setLong(1, accountId);
+                up.setDouble(2, total);
+                up.setLong(3, System.currentTimeMillis());
+                up.executeUpdate();
+                repaired++;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        return repaired;
+    }
+    // keep the snapshot in step with a ledger insert; callers hold writeLock inside a transaction
+    private void applyCashDelta(long accountId, double delta, long ts) throws SQLException {
+        try (PreparedStatement ps = prepare("""
+                    INSERT INTO account_balances(account_id, cash, updated_ms) VALUES(?,?,?)
+                    ON CONFLICT(account_id) DO UPDATE SET cash = cash + excluded.cash,
+                                                        updated_ms = excluded.updated_ms
+                """)) {
             ps.setLong(1, accountId);
-            ps.setLong(2, ts);
-            ps.setDouble(3, delta);
-            ps.setString(4, reason);
-            ps.setString(5, note);
+            ps.setDouble(2, delta);
+            ps.setLong(3, ts);
             ps.executeUpdate();
-            try (ResultSet ks = ps.getGeneratedKeys()) {
-                return ks.next() ? ks.getLong(1) : 0L;
+        }
+    }
+    private long recordCash(long accountId, long ts, double delta, String reason, String note) throws SQLException {
+        writeLock.lock();
+        try {
+            boolean prev = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (PreparedStatement ps = prepare("""
+                        INSERT INTO cash_ledger(account_id, timestamp_ms, delta, reason, note)
+                        VALUES(?,?,?,?,?)
+                    """, Statement.RETURN_GENERATED_KEYS)) {
+                ps.setLong(1, accountId);
+                ps.setLong(2, ts);
+                ps.setDouble(3, delta);
+                ps.setString(4, reason);
+                ps.setString(5, note);
+                ps.executeUpdate();
+                long id;
+                try (ResultSet ks = ps.getGeneratedKeys()) {
+                    id = ks.next() ? ks.getLong(1) : 0L;
+                }
+                applyCashDelta(accountId, delta, System.currentTimeMillis());
+                // trades after a backdated deposit or withdrawal see it in their running cash
+                shiftLaterTrades(accountId, null, ts, 0, delta);
+                conn.commit();
+                return id;
+            } catch (SQLException ex) {
+                conn.rollback();
+                throw ex;
+            } finally {
+                conn.setAutoCommit(prev);
             }
+        } finally {
+            writeLock.unlock();
         }
     }
     public List<TradeItem> loadWatchlistSymbols(long accountId) throws SQLException {
         Long watchlistId = null;
-        try (PreparedStatement sel = conn.prepareStatement(
+        try (ConnectionPool.Lease r = read();
+                PreparedStatement sel = r.prepare(
                 "SELECT id FROM watchlists WHERE account_id=?")) {
             sel.setLong(1, accountId);
             try (ResultSet rs = sel.executeQuery()) {
@@ -788,43 +1915,48 @@ public class Database implements AutoCloseable {
             WHERE w.watchlist_id = ?
             ORDER BY w.position ASC
         """;
-        try (PreparedStatement sel = conn.prepareStatement(sql)) {
+        try (ConnectionPool.Lease r = read();
+                PreparedStatement sel = r.prepare(sql)) {
             sel.setLong(1, watchlistId);
             try (ResultSet rs = sel.executeQuery()) {
                 ArrayList<TradeItem> out = new ArrayList<>();
                 while (rs.next()) {
-                    String sym = rs.getString("symbol");
-                    if (sym == null || sym.isBlank()) continue;
-
-                    // 1-arg ctor (new path)
-                    TradeItem ti = new TradeItem(sym.trim().toUpperCase());
-
-                    // If we have a company profile in DB, hydrate the TradeItem
-                    String name = rs.getString("name");
-                    if (name != null || rs.getObject("country") != null) {
-                        CompanyProfile cp = new CompanyProfile();
-                        cp.setCountry(rs.getString("country"));
-                        cp.setCurrency(rs.getString("currency"));
-                        cp.setExchange(rs.getString("exchange"));
-                        cp.setIpo(rs.getString("ipo"));
-                        cp.setLogo(rs.getString("logo"));
-                        cp.setMarketCap(rs.getString("market_cap"));
-                        cp.setName(name);
-                        cp.setSharesOutstanding(rs.getString("shares_outstanding"));
-                        cp.setWeburl(rs.getString("web_url"));
-
-                        ti.setCompanyProfile(cp);
-                    } else {
-                        // fallback (API should handle this)
-                        ti.setNameLookup(ti);
-                    }
-
-                    out.add(ti);
+                    TradeItem ti = watchlistItemFrom(rs);
+                    if (ti != null) out.add(ti);
                 }
                 return out;
             }
         }
     }
+    // one watchlist_items row, left joined with company_profiles
+    private static TradeItem watchlistItemFrom(ResultSet rs) throws SQLException {
+        String sym = rs.getString("symbol");
+        if (sym == null || sym.isBlank()) return null;
+
+        // 1-arg ctor (new path)
+        TradeItem ti = new TradeItem(sym.trim().toUpperCase());
+
+        // If we have a company profile in DB, hydrate the TradeItem
+        String name = rs.getString("name");
+        if (name != null || rs.getObject("country") != null) {
+            CompanyProfile cp = new CompanyProfile();
+            cp.setCountry(rs.getString("country"));
+            cp.setCurrency(rs.getString("currency"));
+            cp.setExchange(rs.getString("exchange"));
+            cp.setIpo(rs.getString("ipo"));
+            cp.setLogo(rs.getString("logo"));
+            cp.setMarketCap(rs.getString("market_cap"));
+            cp.setName(name);
+            cp.setSharesOutstanding(rs.getString("shares_outstanding"));
+            cp.setWeburl(rs.getString("web_url"));
+
+            ti.setCompanyProfile(cp);
+        } else {
+            // fallback (API should handle this)
+            ti.setNameLookup(ti);
+        }
+        return ti;
+    }
     /**
      * Saves the watchlist symbols for a given account.
      * Replaces the existing watchlist items.
@@ -836,72 +1968,78 @@ public class Database implements AutoCloseable {
      */
     public void saveWatchlistSymbols(long accountId, String watchlistName, List<TradeItem> symbols)
             throws SQLException {
-        boolean prev = conn.getAutoCommit();
-        conn.setAutoCommit(false);
+        writeLock.lock();
         try {
-            long watchlistId;
-            // ensure a watchlist row
-            try (PreparedStatement sel = conn.prepareStatement(
-                    "SELECT id FROM watchlists WHERE account_id=? AND name=?")) {
-                sel.setLong(1, accountId);
-                sel.setString(2, watchlistName);
-                try (ResultSet rs = sel.executeQuery()) {
-                    if (rs.next()) {
-                        watchlistId = rs.getLong(1);
-                    } else {
-                        try (PreparedStatement ins = conn.prepareStatement(
-                                "INSERT INTO watchlists(account_id, name) VALUES(?,?)",
-                                Statement.RETURN_GENERATED_KEYS)) {
-                            ins.setLong(1, accountId);
-                            ins.setString(2, watchlistName);
-                            ins.executeUpdate();
-                            try (ResultSet ks = ins.getGeneratedKeys()) {
-                                if (ks.next())
-                                    watchlistId = ks.getLong(1);
-                                else
-                                    throw new SQLException("No watchlist id");
+            boolean prev = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                long watchlistId;
+                // ensure a watchlist row
+                try (PreparedStatement sel = prepare(
+                        "SELECT id FROM watchlists WHERE account_id=? AND name=?")) {
+                    sel.setLong(1, accountId);
+                    sel.setString(2, watchlistName);
+                    try (ResultSet rs = sel.executeQuery()) {
+                        if (rs.next()) {
+                            watchlistId = rs.getLong(1);
+                        } else {
+                            try (PreparedStatement ins = prepare(
+                                    "INSERT INTO watchlists(account_id, name) VALUES(?,?)",
+                                    Statement.RETURN_GENERATED_KEYS)) {
+                                ins.setLong(1, accountId);
+                                ins.setString(2, watchlistName);
+                                ins.executeUpdate();
+                                try (ResultSet ks = ins.getGeneratedKeys()) {
+                                    if (ks.next())
+                                        watchlistId = ks.getLong(1);
+                                    else
+                                        throw new SQLException("No watchlist id");
+                                }
                             }
                         }
                     }
                 }
-            }
 
-            // clear & repopulate
-            try (PreparedStatement del = conn.prepareStatement(
-                    "DELETE FROM watchlist_items WHERE watchlist_id=?")) {
-                del.setLong(1, watchlistId);
-                del.executeUpdate();
-            }
+                // clear & repopulate
+                try (PreparedStatement del = prepare(
+                        "DELETE FROM watchlist_items WHERE watchlist_id=?")) {
+                    del.setLong(1, watchlistId);
+                    del.executeUpdate();
+                }
 
-            if (symbols != null) {
-                try (PreparedStatement ins = conn.prepareStatement(
-                        "INSERT INTO watchlist_items(watchlist_id, symbol, position) VALUES(?,?,?)")) {
-                    int pos = 0;
-                    for (TradeItem sym : symbols) {
-                        if (sym == null)
-                            continue;
-                        String s = sym.getSymbol();
-                        if (s == null || s.isBlank())
-                            continue; // skip invalid
-                        ins.setLong(1, watchlistId);
-                        ins.setString(2, s);
-                        ins.setInt(3, pos++);
-                        ins.addBatch();
+                if (symbols != null) {
+                    try (PreparedStatement ins = prepare(
+                            "INSERT INTO watchlist_items(watchlist_id, symbol, position) VALUES(?,?,?)")) {
+                        int pos = 0;
+                        for (TradeItem sym : symbols) {
+                            if (sym == null)
+                                continue;
+                            String s = sym.getSymbol();
+                            if (s == null || s.isBlank())
+                                continue; // skip invalid
+                            ins.setLong(1, watchlistId);
+                            ins.setString(2, s);
+                            ins.setInt(3, pos++);
+                            ins.addBatch();
+                        }
+                        ins.executeBatch();
                     }
-                    ins.executeBatch();
                 }
+                conn.commit();
+            } catch (SQLException ex) {
+                conn.rollback();
+                throw ex;
+            } finally {
+                conn.setAutoCommit(prev);
             }
-            conn.commit();
-        } catch (SQLException ex) {
-            conn.rollback();
-            throw ex;
         } finally {
-            conn.setAutoCommit(prev);
+            writeLock.unlock();
         }
     }
     public double getAccountGoal(long accountId) throws SQLException {
         String sql = "SELECT goal FROM accounts WHERE id = ?";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (ConnectionPool.Lease r = read();
+                PreparedStatement ps = r.prepare(sql)) {
             ps.setLong(1, accountId);
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
@@ -912,11 +2050,16 @@ public class Database implements AutoCloseable {
         return 100000.0; // sensible default
     }
     public void setAccountGoal(long accountId, double goal) throws SQLException {
-        String sql = "UPDATE accounts SET goal = ? WHERE id = ?";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setDouble(1, goal);
-            ps.setLong(2, accountId);
-            ps.executeUpdate();
+        writeLock.lock();
+        try {
+            String sql = "UPDATE accounts SET goal = ? WHERE id = ?";
+            try (PreparedStatement ps = prepare(sql)) {
+                ps.setDouble(1, goal);
+                ps.setLong(2, accountId);
+                ps.executeUpdate();
+            }
+        } finally {
+            writeLock.unlock();
         }
     }
 
@@ -926,7 +2069,7 @@ public class Database implements AutoCloseable {
         int curQty = 0;
         double curAvg = 0.0;
 
-        try (PreparedStatement sel = conn.prepareStatement("""
+        try (PreparedStatement sel = prepare("""
                     SELECT quantity, avg_cost FROM positions
                     WHERE account_id=? AND symbol=?
                 """)) {
@@ -959,7 +2102,7 @@ public class Database implements AutoCloseable {
         }
 
         if (newQty == 0) {
-            try (PreparedStatement del = conn.prepareStatement("""
+            try (PreparedStatement del = prepare("""
                         DELETE FROM positions WHERE account_id=? AND symbol=?
                     """)) {
                 del.setLong(1, accountId);
@@ -967,7 +2110,7 @@ public class Database implements AutoCloseable {
                 del.executeUpdate();
             }
         } else {
-            try (PreparedStatement up = conn.prepareStatement("""
+            try (PreparedStatement up = prepare("""
                         INSERT INTO positions(account_id, symbol, quantity, avg_cost, last_updated_ms)
                         VALUES(?,?,?,?,?)
                         ON CONFLICT(account_id, symbol)
@@ -984,6 +2127,143 @@ public class Database implements AutoCloseable {
             }
         }
     }
+    // running totals as of ts, from the latest trade at or before it; callers hold writeLock
+    private int positionAsOf(long accountId, String symbol, long ts) throws SQLException {
+        try (PreparedStatement ps = prepare("""
+                    SELECT pos_after FROM trades
+                    WHERE account_id=? AND symbol=? AND timestamp_ms <= ?
+                    ORDER BY timestamp_ms DESC, id DESC LIMIT 1
+                """)) {
+            ps.setLong(1, accountId);
+            ps.setString(2, symbol);
+            ps.setLong(3, ts);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+    private double cashAsOf(long accountId, long ts) throws SQLException {
+        double base = 0.0;
+        long anchorTs = Long.MIN_VALUE, anchorId = -1;
+        try (PreparedStatement ps = prepare("""
+                    SELECT t.cash_after, c.timestamp_ms, c.id
+                    FROM trades t JOIN cash_ledger c ON c.ref_trade_id = t.id
+                    WHERE t.account_id=? AND t.timestamp_ms <= ?
+                    ORDER BY t.timestamp_ms DESC, t.id DESC LIMIT 1
+                """)) {
+            ps.setLong(1, accountId);
+            ps.setLong(2, ts);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    base = rs.getDouble(1);
+                    anchorTs = rs.getLong(2);
+                    anchorId = rs.getLong(3);
+                }
+            }
+        }
+        // deposits and withdrawals between that trade and ts
+        try (PreparedStatement ps = prepare("""
+                    SELECT COALESCE(SUM(delta), 0.0) FROM cash_ledger
+                    WHERE account_id=? AND timestamp_ms <= ?
+                      AND (timestamp_ms > ? OR (timestamp_ms = ? AND id > ?))
+                """)) {
+            ps.setLong(1, accountId);
+            ps.setLong(2, ts);
+            ps.setLong(3, anchorTs);
+            ps.setLong(4, anchorTs);
+            ps.setLong(5, anchorId);
+            try (ResultSet rs = ps.executeQuery()) {
+                return base + (rs.next() ? rs.getDouble(1) : 0.0);
+            }
+        }
+    }
+    // symbol may be null when only cash moved
+    private void shiftLaterTrades(long accountId, String symbol, long ts, int qty, double cash) throws SQLException {
+        if (qty != 0) {
+            try (PreparedStatement ps = prepare("""
+                        UPDATE trades SET pos_after = pos_after + ?
+                        WHERE account_id=? AND symbol=? AND timestamp_ms > ?
+                    """)) {
+                ps.setInt(1, qty);
+                ps.setLong(2, accountId);
+                ps.setString(3, symbol);
+                ps.setLong(4, ts);
+                ps.executeUpdate();
+            }
+        }
+        if (cash != 0.0) {
+            try (PreparedStatement ps = prepare("""
+                        UPDATE trades SET cash_after = cash_after + ?
+                        WHERE account_id=? AND timestamp_ms > ?
+                    """)) {
+                ps.setDouble(1, cash);
+                ps.setLong(2, accountId);
+                ps.setLong(3, ts);
+                ps.executeUpdate();
+            }
+        }
+    }
+    /**
+     * Recomputes pos_after and cash_after on every trade in one ordered pass over
+     * the cash ledger. Only needed for trades written before those columns existed.
+     *
+     * @throws SQLException If a database access error occurs.
+     */
+    public void rebuildTradeRunningTotals() throws SQLException {
+        writeLock.lock();
+        try {
+            boolean prev = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                rebuildTradeRunningTotalsInTxn();
+                conn.commit();
+            } catch (SQLException ex) {
+                conn.rollback();
+                throw ex;
+            } finally {
+                conn.setAutoCommit(prev);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+    private void rebuildTradeRunningTotalsInTxn() throws SQLException {
+        String sql = """
+                    SELECT c.account_id, c.delta, t.id, t.symbol, t.side, t.quantity
+                    FROM cash_ledger c
+                    LEFT JOIN trades t ON t.id = c.ref_trade_id
+                    ORDER BY c.account_id, c.timestamp_ms, c.id
+                """;
+        int updated = 0;
+        try (Statement st = conn.createStatement();
+                ResultSet rs = st.executeQuery(sql);
+                PreparedStatement up = conn.prepareStatement(
+                        "UPDATE trades SET pos_after=?, cash_after=? WHERE id=?")) {
+            long account = Long.MIN_VALUE;
+            double cash = 0.0;
+            java.util.HashMap<String, Integer> pos = new java.util.HashMap<>();
+            while (rs.next()) {
+                if (rs.getLong(1) != account) {
+                    account = rs.getLong(1);
+                    cash = 0.0;
+                    pos.clear();
+                }
+                cash += rs.getDouble(2);
+                long tradeId = rs.getLong(3);
+                if (rs.wasNull()) continue; // deposit or withdrawal
+
+                int qty = "BUY".equals(rs.getString(5)) ? rs.getInt(6) : -rs.getInt(6);
+                int after = pos.merge(rs.getString(4), qty, Integer::sum);
+                up.setInt(1, after);
+                up.setDouble(2, cash);
+                up.setLong(3, tradeId);
+                up.addBatch();
+                if (++updated % 1000 == 0) up.executeBatch();
+            }
+            up.executeBatch();
+        }
+        System.out.println("[Database] Rebuilt running totals for " + updated + " trades");
+    }
     /**
      * Records an executed order in the database.
      * Updates trades, cash ledger, and positions.
@@ -1004,65 +2284,78 @@ public class Database implements AutoCloseable {
     }
     private long recordTrade(long accountId, String symbol, long ts, String side,
             int quantity, double price) throws SQLException {
-        if (!"BUY".equals(side) && !"SELL".equals(side)) {
-            throw new IllegalArgumentException("side must be BUY or SELL");
-        }
-        if (quantity <= 0)
-            throw new IllegalArgumentException("quantity must be > 0");
-
-        boolean prev = conn.getAutoCommit();
-        conn.setAutoCommit(false);
-        try (PreparedStatement insTrade = conn.prepareStatement("""
-                    INSERT INTO trades(account_id, symbol, timestamp_ms, side, quantity, price)
-                    VALUES(?,?,?,?,?,?)
-                """, Statement.RETURN_GENERATED_KEYS);
-                PreparedStatement insCash = conn.prepareStatement("""
-                            INSERT INTO cash_ledger(account_id, timestamp_ms, delta, reason, ref_trade_id, note)
-                            VALUES(?,?,?,?,?,?)
-                        """)) {
-
-            // 1) insert trade
-            insTrade.setLong(1, accountId);
-            insTrade.setString(2, symbol);
-            insTrade.setLong(3, ts);
-            insTrade.setString(4, side);
-            insTrade.setInt(5, quantity);
-            insTrade.setDouble(6, price);
-            insTrade.executeUpdate();
-
-            long tradeId;
-            try (ResultSet ks = insTrade.getGeneratedKeys()) {
-                if (!ks.next())
-                    throw new SQLException("No trade id");
-                tradeId = ks.getLong(1);
-            }
-
-            // 2) cash impact: BUY = -qty*price; SELL = +qty*price
-            double delta = ("BUY".equals(side) ? -1.0 : 1.0) * (quantity * price);
-            insCash.setLong(1, accountId);
-            insCash.setLong(2, ts);
-            insCash.setDouble(3, delta);
-            insCash.setString(4, "TRADE");
-            insCash.setLong(5, tradeId);
-            insCash.setString(6, symbol + " " + side);
-            insCash.executeUpdate();
-
-            // 3) update positions (avg cost method)
-            upsertPositionFromTrade(accountId, symbol, side, quantity, price, ts);
-
-            conn.commit();
-            return tradeId;
-        } catch (SQLException ex) {
-            conn.rollback();
-            throw ex;
+        writeLock.lock();
+        try {
+            if (!"BUY".equals(side) && !"SELL".equals(side)) {
+                throw new IllegalArgumentException("side must be BUY or SELL");
+            }
+            if (quantity <= 0)
+                throw new IllegalArgumentException("quantity must be > 0");
+
+            boolean prev = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (PreparedStatement insTrade = prepare("""
+                        INSERT INTO trades(account_id, symbol, timestamp_ms, side, quantity, price, pos_after, cash_after)
+                        VALUES(?,?,?,?,?,?,?,?)
+                    """, Statement.RETURN_GENERATED_KEYS);
+                    PreparedStatement insCash = prepare("""
+                                INSERT INTO cash_ledger(account_id, timestamp_ms, delta, reason, ref_trade_id, note)
+                                VALUES(?,?,?,?,?,?)
+                            """)) {
+
+                // 1) insert trade with its running position and cash
+                int signedQty = "BUY".equals(side) ? quantity : -quantity;
+                double delta = ("BUY".equals(side) ? -1.0 : 1.0) * (quantity * price);
+                insTrade.setLong(1, accountId);
+                insTrade.setString(2, symbol);
+                insTrade.setLong(3, ts);
+                insTrade.setString(4, side);
+                insTrade.setInt(5, quantity);
+                insTrade.setDouble(6, price);
+                insTrade.setInt(7, positionAsOf(accountId, symbol, ts) + signedQty);
+                insTrade.setDouble(8, cashAsOf(accountId, ts) + delta);
+                insTrade.executeUpdate();
+
+                long tradeId;
+                try (ResultSet ks = insTrade.getGeneratedKeys()) {
+                    if (!ks.next())
+                        throw new SQLException("No trade id");
+                    tradeId = ks.getLong(1);
+                }
+
+                // 2) cash impact: BUY = -qty*price; SELL = +qty*price
+                insCash.setLong(1, accountId);
+                insCash.setLong(2, ts);
+                insCash.setDouble(3, delta);
+                insCash.setString(4, "TRADE");
+                insCash.setLong(5, tradeId);
+                insCash.setString(6, symbol + " " + side);
+                insCash.executeUpdate();
+                applyCashDelta(accountId, delta, System.currentTimeMillis());
+
+                // 3) update positions (avg cost method)
+                upsertPositionFromTrade(accountId, symbol, side, quantity, price, ts);
+
+                // 4) a backdated trade moves the running totals of everything after it
+                shiftLaterTrades(accountId, symbol, ts, signedQty, delta);
+
+                conn.commit();
+                return tradeId;
+            } catch (SQLException ex) {
+                conn.rollback();
+                throw ex;
+            } finally {
+                conn.setAutoCommit(prev);
+            }
         } finally {
-            conn.setAutoCommit(prev);
+            writeLock.unlock();
         }
     }
     public java.util.Map<String, Integer> getPositions(long accountId) throws SQLException {
         String sql = "SELECT symbol, quantity FROM positions WHERE account_id=? ORDER BY symbol";
         java.util.LinkedHashMap<String, Integer> out = new java.util.LinkedHashMap<>();
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (ConnectionPool.Lease r = read();
+                PreparedStatement ps = r.prepare(sql)) {
             ps.setLong(1, accountId);
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
@@ -1075,20 +2368,14 @@ public class Database implements AutoCloseable {
     public List<ModelFacade.TradeRow> listRecentTrades(long accountId, int limit) throws SQLException {
         String sql = """
                     SELECT t.id, t.timestamp_ms, t.side, t.symbol, t.quantity, t.price,
-                           -- compute position after this trade by summing trades <= this timestamp
-                           (SELECT COALESCE(SUM(CASE WHEN side='BUY' THEN quantity ELSE -quantity END),0)
-                              FROM trades tt
-                             WHERE tt.account_id = t.account_id
-                               AND tt.symbol = t.symbol
-                               AND (tt.timestamp_ms < t.timestamp_ms
-                                    OR (tt.timestamp_ms = t.timestamp_ms AND tt.id <= t.id))
-                           ) AS pos_after
+                           t.pos_after, t.cash_after -- maintained by recordTrade
                       FROM trades t
                      WHERE t.account_id = ?
                      ORDER BY t.timestamp_ms DESC, t.id DESC
                      LIMIT ?
                 """;
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (ConnectionPool.Lease r = read();
+                PreparedStatement ps = r.prepare(sql)) {
             ps.setLong(1, accountId);
             ps.setInt(2, Math.max(1, limit));
             try (ResultSet rs = ps.executeQuery()) {
@@ -1101,7 +2388,8 @@ public class Database implements AutoCloseable {
                             rs.getString("symbol"),
                             rs.getInt("quantity"),
                             rs.getDouble("price"),
-                            rs.getInt("pos_after")));
+                            rs.getInt("pos_after"),
+                            rs.getDouble("cash_after")));
                 }
                 return out;
             }
@@ -1110,27 +2398,33 @@ public class Database implements AutoCloseable {
 
     // startup helpers
     public long getExistingProfileIdOrZero() throws SQLException {
-        try (PreparedStatement ps = conn.prepareStatement(
+        try (ConnectionPool.Lease r = read();
+                PreparedStatement ps = r.prepare(
                 "SELECT id FROM profiles ORDER BY id LIMIT 1");
                 ResultSet rs = ps.executeQuery()) {
             return rs.next() ? rs.getLong(1) : 0L;
         }
     }
     public long ensureSingletonProfile(String name) throws SQLException {
-        long existing = getExistingProfileIdOrZero();
-        if (existing != 0L)
-            return existing;
-
-        try (PreparedStatement ins = conn.prepareStatement(
-                "INSERT INTO profiles(name) VALUES(?)",
-                Statement.RETURN_GENERATED_KEYS)) {
-            ins.setString(1, name);
-            ins.executeUpdate();
-            try (ResultSet ks = ins.getGeneratedKeys()) {
-                if (ks.next())
-                    return ks.getLong(1);
-                throw new SQLException("Failed to create singleton profile");
+        writeLock.lock();
+        try {
+            long existing = getExistingProfileIdOrZero();
+            if (existing != 0L)
+                return existing;
+
+            try (PreparedStatement ins = prepare(
+                    "INSERT INTO profiles(name) VALUES(?)",
+                    Statement.RETURN_GENERATED_KEYS)) {
+                ins.setString(1, name);
+                ins.executeUpdate();
+                try (ResultSet ks = ins.getGeneratedKeys()) {
+                    if (ks.next())
+                        return ks.getLong(1);
+                    throw new SQLException("Failed to create singleton profile");
+                }
             }
+        } finally {
+            writeLock.unlock();
         }
     }
     public long getSingletonProfileId() throws SQLException {
@@ -1140,7 +2434,8 @@ public class Database implements AutoCloseable {
         return id;
     }
     public boolean profileHasAccounts(long profileId) throws SQLException {
-        try (PreparedStatement ps = conn.prepareStatement(
+        try (ConnectionPool.Lease r = read();
+                PreparedStatement ps = r.prepare(
                 "SELECT EXISTS(SELECT 1 FROM accounts WHERE profile_id=?)")) {
             ps.setLong(1, profileId);
             try (ResultSet rs = ps.executeQuery()) {
@@ -1148,47 +2443,95 @@ public class Database implements AutoCloseable {
             }
         }
     }
+    /**
+     * Loads a profile with all of its accounts, balances, watchlists and positions.
+     * Each kind of data is fetched for every account at once, so the number of
+     * queries does not grow with the number of accounts.
+     *
+     * @param profileId The profile ID.
+     * @return The hydrated Profile.
+     * @throws SQLException If a database access error occurs.
+     */
     public Profile buildProfile(long profileId) throws SQLException {
         String profileName = getProfileName(profileId);
 
-        ArrayList<Account> accounts = new ArrayList<>();
-        try (PreparedStatement ps = conn.prepareStatement("""
-                    SELECT id, name, goal
-                    FROM accounts
-                    WHERE profile_id=?
-                    ORDER BY name
-                """)) {
-            ps.setLong(1, profileId);
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    long accountId = rs.getLong("id");
-                    String accountName = rs.getString("name");
-                    double goal = rs.getDouble("goal");
-                    Account a = new Account(accountId, accountName);
-                    a.setGoal(goal);
-
-                    // balance
-                    double balance = getAccountCash(accountId);
-                    a.setCash(balance);
-
-                    // watchlist
-                    List<TradeItem> wl = loadWatchlistSymbols(accountId);
-                    if (!wl.isEmpty()) {
-                        a.getWatchlist().clearList();
-                        for (TradeItem ti : wl) {
-                            a.getWatchlist().addWatchlistItem(ti);
-                        }
+        java.util.LinkedHashMap<Long, Account> accounts = new java.util.LinkedHashMap<>();
+        try (ConnectionPool.Lease r = read()) {
+            // accounts and cash snapshots
+            try (PreparedStatement ps = r.prepare("""
+                        SELECT a.id, a.name, a.goal, b.cash
+                        FROM accounts a
+                        LEFT JOIN account_balances b ON b.account_id = a.id
+                        WHERE a.profile_id=?
+                        ORDER BY a.name
+                    """)) {
+                ps.setLong(1, profileId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        long accountId = rs.getLong("id");
+                        Account a = new Account(accountId, rs.getString("name"));
+                        a.setGoal(rs.getDouble("goal"));
+                        double cash = rs.getDouble("cash");
+                        a.setCash(rs.wasNull() ? getAccountCash(accountId) : cash);
+                        accounts.put(accountId, a);
                     }
+                }
+            }
 
-                    // portfolio
-                    var positions = getPositions(accountId); // symbol -> qty
-                    a.getPortfolio().setFromDb(positions);
+            // each account's first watchlist, hydrated from company_profiles
+            java.util.HashMap<Long, List<TradeItem>> watchlists = new java.util.HashMap<>();
+            try (PreparedStatement ps = r.prepare("""
+                        SELECT wl.account_id, w.symbol,
+                        cp.country, cp.currency, cp.exchange, cp.ipo, cp.logo,
+                        cp.market_cap, cp.name, cp.shares_outstanding, cp.web_url
+                        FROM accounts a
+                        JOIN watchlists wl ON wl.id = (SELECT MIN(id) FROM watchlists WHERE account_id = a.id)
+                        JOIN watchlist_items w ON w.watchlist_id = wl.id
+                        LEFT JOIN company_profiles cp ON cp.symbol = w.symbol
+                        WHERE a.profile_id=?
+                        ORDER BY wl.account_id, w.position ASC
+                    """)) {
+                ps.setLong(1, profileId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        TradeItem ti = watchlistItemFrom(rs);
+                        if (ti != null)
+                            watchlists.computeIfAbsent(rs.getLong("account_id"), k -> new ArrayList<>()).add(ti);
+                    }
+                }
+            }
+            watchlists.forEach((accountId, items) -> {
+                Account a = accounts.get(accountId);
+                if (a == null) return;
+                a.getWatchlist().clearList();
+                for (TradeItem ti : items) {
+                    a.getWatchlist().addWatchlistItem(ti);
+                }
+            });
 
-                    accounts.add(a);
+            // positions
+            java.util.HashMap<Long, java.util.LinkedHashMap<String, Integer>> positions = new java.util.HashMap<>();
+            try (PreparedStatement ps = r.prepare("""
+                        SELECT p.account_id, p.symbol, p.quantity
+                        FROM positions p
+                        JOIN accounts a ON a.id = p.account_id
+                        WHERE a.profile_id=?
+                        ORDER BY p.account_id, p.symbol
+                    """)) {
+                ps.setLong(1, profileId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        positions.computeIfAbsent(rs.getLong(1), k -> new java.util.LinkedHashMap<>())
+                                .put(rs.getString(2), rs.getInt(3));
+                    }
                 }
             }
+            for (Account a : accounts.values()) {
+                a.getPortfolio().setFromDb(positions.getOrDefault(a.getId(), new java.util.LinkedHashMap<>()));
+            }
         }
-        Profile p = Profile.initProfile(accounts);
+
+        Profile p = Profile.initProfile(new ArrayList<>(accounts.values()));
         p.setOwner(profileName);
         p.setId(profileId);
         return p;
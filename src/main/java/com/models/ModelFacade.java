@@ -1,6 +1,11 @@
 package com.models;
 
+import com.etl.BarAggregator;
+import com.etl.BackfillScheduler;
 import com.etl.HistoricalService;
+import com.etl.HistoryPrefetcher;
+import com.etl.MarketSessionService;
+import com.etl.TickJournal;
 import com.etl.finnhub.ClientFacade;
 import com.models.market.*;
 import com.models.market.TradeItem;
@@ -11,6 +16,7 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 
@@ -27,9 +33,14 @@ public class ModelFacade {
     private final Profile profile;
     private final List<ModelListener> listeners = new CopyOnWriteArrayList<>();
     private final HistoricalService hist;
+    private final HistoryPrefetcher prefetcher;
+    private volatile List<HistoricalService.Range> prefetchWindows; // null until startHistoryPrefetch
+    private final BarAggregator bars; // null for offline clients
+    private final TickJournal journal; // null unless live and TICK_JOURNAL_DIR is set
     private final Map<String, String> logoCache = new ConcurrentHashMap<>();
 
-    public record TradeRow(long id, long timestamp, String side, String symbol, int quantity, double price, int posAfter) { }
+    public record TradeRow(long id, long timestamp, String side, String symbol, int quantity, double price, int posAfter,
+                           double cashAfter) { }
 
     /**
      * Constructs a new ModelFacade.
@@ -41,9 +52,29 @@ public class ModelFacade {
      * @throws Exception If an error occurs during initialization.
      */
     public ModelFacade(Database db, Profile profile) throws Exception {
+        this(db, profile, new ClientFacade());
+    }
+
+    /**
+     * Constructs a new ModelFacade on an existing client, such as an offline
+     * replay from {@link ClientFacade#offline}. Trades from an offline client
+     * are not aggregated into prices or journaled, and pending backfills are
+     * left for the next live run.
+     *
+     * @param db      The database instance.
+     * @param profile The active user profile.
+     * @param client  The market data client.
+     * @throws Exception If an error occurs during initialization.
+     */
+    public ModelFacade(Database db, Profile profile, ClientFacade client) throws Exception {
+        this(db, profile, client, new HistoricalService(db));
+    }
+
+    // package-private for tests
+    ModelFacade(Database db, Profile profile, ClientFacade client, HistoricalService hist) throws Exception {
         this.db = db;
         this.profile = profile;
-        this.client = new ClientFacade();
+        this.client = client;
         this.market = new Market(client);
         this.market.setMarketListener(new MarketListener() {
             @Override
@@ -51,17 +82,58 @@ public class ModelFacade {
                 fireQuotesUpdated();
             }
             @Override
+            public void onMarketUpdate(Set<String> symbols) {
+                fireQuotesUpdated(symbols);
+            }
+            @Override
             public void loadSymbols(List<TradeItem> items) {
                 fireWatchlistChanged(getWatchlistView(), getPortfolioItems());
             }
         });
-        this.hist = new HistoricalService(db);
+        if (client.getSessionService() != null) {
+            client.getSessionService().addListener((from, to) -> {
+                boolean wasOpen = from == MarketSessionService.Session.REGULAR;
+                boolean open = to == MarketSessionService.Session.REGULAR;
+                if (wasOpen != open) fireMarketStatusChanged(open);
+            });
+        }
+        this.hist = hist;
+        this.prefetcher = new HistoryPrefetcher(hist);
+        if (!client.isLive()) {
+            // replayed ticks are not market data; keep them out of prices and the capture directory
+            this.bars = null;
+            this.journal = null;
+            return;
+        }
+        try {
+            hist.resumeBackfills();
+        } catch (SQLException e) {
+            System.err.println("[ModelFacade] Could not resume backfills: " + e.getMessage());
+        }
+        this.bars = new BarAggregator(db);
+        this.bars.start(BarAggregator.DEFAULT_FLUSH_MS);
+        this.client.addTradeTap(bars);
+        this.journal = openJournal(System.getenv("TICK_JOURNAL_DIR"));
+        if (journal != null) client.addTradeTap(journal);
+    }
+
+    private static TickJournal openJournal(String dir) {
+        if (dir == null || dir.isBlank()) return null;
+        try {
+            TickJournal j = TickJournal.open(java.nio.file.Path.of(dir));
+            System.out.println("[ModelFacade] Journaling ticks to " + dir);
+            return j;
+        } catch (java.io.IOException e) {
+            System.err.println("[ModelFacade] Tick journal disabled: " + e.getMessage());
+            return null;
+        }
     }
 
     // listeners
     public void addListener(ModelListener l) { listeners.add(l); }
     public void removeListener(ModelListener l) { listeners.remove(l); }
     private void fireQuotesUpdated() { onEDT(() -> listeners.forEach(ModelListener::onQuotesUpdated)); }
+    private void fireQuotesUpdated(Set<String> symbols) { onEDT(() -> listeners.forEach(l -> l.onQuotesUpdated(symbols))); }
     private void fireWatchlistChanged(List<TradeItem> watchlist, List<TradeItem> portfolio) { onEDT(() -> listeners.forEach(l -> l.onWatchlistChanged(watchlist, portfolio))); }
     private void fireAccountChanged() {
         onEDT(() -> listeners.forEach(l -> {
@@ -72,6 +144,9 @@ public class ModelFacade {
             }
         }));
     }
+    private void fireMarketStatusChanged(boolean open) {
+        onEDT(() -> listeners.forEach(l -> l.onMarketStatusChanged(open)));
+    }
     private void fireError(String msg, Throwable t) {
         onEDT(() -> listeners.forEach(l -> l.onError(msg, t)));
     }
@@ -84,7 +159,8 @@ public class ModelFacade {
 
     // MARKET - queries
     /**
-     * Checks if the market is currently open.
+     * Checks if the market is currently open. Computed locally; listeners get
+     * {@link ModelListener#onMarketStatusChanged} when it changes.
      *
      * @return True if open, false otherwise.
      */
@@ -94,6 +170,14 @@ public class ModelFacade {
     public double getPrice(String symbol) {
         return getPrice(symbol, System.currentTimeMillis());
     }
+    /**
+     * Gets tick conflation counters: ticks received versus quote batches published.
+     *
+     * @return The current stats.
+     */
+    public TickConflator.Stats getTickStats() {
+        return market.getTickStats();
+    }
     /**
      * Gets the price of a symbol at a specific timestamp.
      * Tries to get a live price first, then falls back to historical data from the
@@ -341,6 +425,7 @@ public class ModelFacade {
         market.addFromPortfolio(account.getPortfolio());
         fireWatchlistChanged(getWatchlistView(), getPortfolioItems());
         fireAccountChanged();
+        restartHistoryPrefetch();
         System.out.printf("[Model] Account set to %s (ID %d)%n", account.getName(), account.getId());
     }
     public void setDefaultAccount(Account a) throws Exception {
@@ -479,7 +564,14 @@ public class ModelFacade {
     }
 
     // DATABASE - commands
-    public void close() throws SQLException { db.close(); }
+    public void close() throws SQLException {
+        prefetcher.stop();
+        hist.close(); // the pipeline commits its last rows before the database goes
+        if (journal != null) journal.close();
+        if (bars != null) bars.close();
+        market.close();
+        db.close();
+    }
 
     // helpers
 private CompanyProfile fetchAndCacheCompanyProfile(String symbol) {
@@ -631,6 +723,59 @@ private CompanyProfile fetchAndCacheCompanyProfile(String symbol) {
         var r = new HistoricalService.Range(missing.timespan, missing.mult, from, to);
         return hist.backfillRange(symbol, r);
     }
+    /**
+     * Starts filling in history for the active account's watchlist and holdings
+     * in the background, at low priority. Replaces a prefetch already running,
+     * and starts again for the new account whenever the active account changes.
+     *
+     * @param windows The chart windows to cover.
+     */
+    public void startHistoryPrefetch(List<Range> windows) {
+        var utc = java.time.ZoneOffset.UTC;
+        List<HistoricalService.Range> ranges = new ArrayList<>();
+        for (Range w : windows) {
+            var from = java.time.Instant.ofEpochMilli(w.startMs).atZone(utc).toLocalDate();
+            var to = java.time.Instant.ofEpochMilli(w.endMs).atZone(utc).toLocalDate();
+            ranges.add(new HistoricalService.Range(w.timespan, w.mult, from, to));
+        }
+        prefetchWindows = ranges;
+        restartHistoryPrefetch();
+    }
+    /*
+     * Prefetches the active account's symbols, straight from its watchlist and
+     * positions rather than the market, which only has them once their quotes
+     * arrive. Positions are read on the prefetch thread, so the caller (often
+     * the EDT) never waits on the database.
+     */
+    private void restartHistoryPrefetch() {
+        List<HistoricalService.Range> ranges = prefetchWindows;
+        Account a = profile.getActiveAccount();
+        if (ranges == null || a == null) return;
+        List<String> watched = new ArrayList<>();
+        for (TradeItem ti : a.getWatchlist().getWatchlist()) {
+            String s = ti.getSymbol();
+            if (s != null && !s.isBlank()) watched.add(s.trim().toUpperCase());
+        }
+        long accountId = a.getId();
+        prefetcher.start(() -> {
+            java.util.LinkedHashSet<String> symbols = new java.util.LinkedHashSet<>(watched);
+            for (var e : db.getPositions(accountId).entrySet()) {
+                if (e.getValue() != null && e.getValue() > 0) symbols.add(e.getKey().trim().toUpperCase());
+            }
+            return new ArrayList<>(symbols);
+        }, ranges);
+    }
+    /**
+     * Subscribes to historical backfill progress. Called off the event thread.
+     *
+     * @param l The listener.
+     */
+    public void addBackfillListener(BackfillScheduler.ProgressListener l) {
+        hist.getScheduler().addProgressListener(l);
+    }
+    public void removeBackfillListener(BackfillScheduler.ProgressListener l) {
+        hist.getScheduler().removeProgressListener(l);
+    }
     /**
      * Loads close prices for a symbol within a time range, downsampled to a maximum
      * number of points.
@@ -645,22 +790,15 @@ private CompanyProfile fetchAndCacheCompanyProfile(String symbol) {
      */
     public List<CandlePoint> loadCloses(String symbol, long startMs, long endMs, int maxPoints)
             throws Exception {
-        try (var rs = db.getCandles(symbol, 1, "day", startMs, endMs)) {
-            java.util.TreeMap<Long, Double> sorted = new java.util.TreeMap<>();
-            while (rs.next()) {
-                sorted.put(rs.getLong("timestamp"), rs.getDouble("close"));
-            }
-            if (sorted.isEmpty()) return List.of();
-
-            int dataSize = sorted.size();
-            int step = Math.max(1, dataSize / Math.max(1, maxPoints));
-            java.util.ArrayList<CandlePoint> out = new java.util.ArrayList<>();
-            int i = 0;
-            for (var e : sorted.entrySet()) {
-                if (i++ % step != 0) continue;
-                out.add(new CandlePoint(e.getKey(), e.getValue()));
-            }
-            return out;
+        var slice = db.getCandleSlice(symbol, 1, "day", startMs, endMs);
+        int dataSize = slice.size();
+        if (dataSize == 0) return List.of();
+
+        int step = Math.max(1, dataSize / Math.max(1, maxPoints));
+        java.util.ArrayList<CandlePoint> out = new java.util.ArrayList<>(dataSize / step + 1);
+        for (int i = 0; i < dataSize; i += step) {
+            out.add(new CandlePoint(slice.time(i), slice.close(i)));
         }
+        return out;
     }
-}
\ No newline at end of file
+}
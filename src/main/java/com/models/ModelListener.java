@@ -14,6 +14,15 @@ public interface ModelListener {
     default void onQuotesUpdated() {
     }
 
+    /**
+     * Called at most once per frame with the symbols whose quotes changed.
+     *
+     * @param symbols The changed symbols.
+     */
+    default void onQuotesUpdated(java.util.Set<String> symbols) {
+        onQuotesUpdated();
+    }
+
     /**
      * Called when the account state (cash, positions) has changed.
      *
@@ -30,6 +39,14 @@ public interface ModelListener {
     default void onWatchlistChanged(java.util.List<TradeItem> items,  java.util.List<TradeItem> portfolio) {
     }
 
+    /**
+     * Called when the market opens or closes for the regular session.
+     *
+     * @param open True if the market is now open.
+     */
+    default void onMarketStatusChanged(boolean open) {
+    }
+
     /**
      * Called when an error occurs in the model.
      *
@@ -0,0 +1,185 @@
+package com.models;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded, least-recently-used cache of prepared statements for one connection.
+ * Statements are keyed by their SQL text, so a query is compiled by SQLite once
+ * and only re-bound on later calls.
+ *
+ * Callers use the returned statement exactly like one from
+ * {@link Connection#prepareStatement}, including closing it in try-with-resources;
+ * closing a cached statement clears its parameters and hands it back to the cache.
+ * If the same SQL is requested while its cached statement is still open (nested
+ * calls on one thread), an uncached statement is returned instead.
+ */
+public class StatementCache implements AutoCloseable {
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private final Connection conn;
+    private final int capacity;
+    private final LinkedHashMap<Key, Entry> entries;
+    private boolean closed;
+
+    // metrics
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    private record Key(String sql, int autoGeneratedKeys) { }
+
+    private static final class Entry {
+        final PreparedStatement stmt;
+        PreparedStatement handle;
+        boolean inUse;
+        boolean evicted;
+
+        Entry(PreparedStatement stmt) {
+            this.stmt = stmt;
+        }
+    }
+
+    /**
+     * Constructs a new StatementCache for the given connection.
+     *
+     * @param conn     The connection statements are prepared on.
+     * @param capacity The maximum number of statements kept open.
+     */
+    public StatementCache(Connection conn, int capacity) {
+        this.conn = conn;
+        this.capacity = Math.max(1, capacity);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() <= StatementCache.this.capacity) return false;
+                retire(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Returns a prepared statement for the given SQL, compiling it on first use.
+     *
+     * @param sql The SQL text.
+     * @return The prepared statement; close it when done.
+     * @throws SQLException If the statement cannot be prepared.
+     */
+    public PreparedStatement prepare(String sql) throws SQLException {
+        return prepare(sql, Statement.NO_GENERATED_KEYS);
+    }
+
+    /**
+     * Returns a prepared statement for the given SQL, compiling it on first use.
+     *
+     * @param sql               The SQL text.
+     * @param autoGeneratedKeys Statement.RETURN_GENERATED_KEYS or Statement.NO_GENERATED_KEYS.
+     * @return The prepared statement; close it when done.
+     * @throws SQLException If the statement cannot be prepared.
+     */
+    public synchronized PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+        if (closed) throw new SQLException("Statement cache is closed");
+        Key key = new Key(sql, autoGeneratedKeys);
+        Entry e = entries.get(key);
+        if (e != null && !e.inUse && !e.stmt.isClosed()) {
+            hits++;
+            e.inUse = true;
+            return e.handle;
+        }
+        misses++;
+        if (e != null && e.inUse) {
+            // nested use of the same SQL; don't share the open statement
+            return conn.prepareStatement(sql, autoGeneratedKeys);
+        }
+
+        Entry fresh = new Entry(conn.prepareStatement(sql, autoGeneratedKeys));
+        fresh.handle = wrap(fresh);
+        fresh.inUse = true;
+        entries.put(key, fresh);
+        return fresh.handle;
+    }
+
+    /** @return Number of requests served from the cache. */
+    public synchronized long hits() { return hits; }
+
+    /** @return Number of requests that had to prepare a statement. */
+    public synchronized long misses() { return misses; }
+
+    /** @return Number of statements closed to stay within capacity. */
+    public synchronized long evictions() { return evictions; }
+
+    /** @return Number of statements currently cached. */
+    public synchronized int size() { return entries.size(); }
+
+    /**
+     * Closes every cached statement. Statements still in use are closed when
+     * their caller releases them.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        for (Iterator<Entry> it = entries.values().iterator(); it.hasNext();) {
+            Entry e = it.next();
+            it.remove();
+            e.evicted = true;
+            if (!e.inUse) closeQuietly(e.stmt);
+        }
+    }
+
+    // helpers
+    private void retire(Entry e) {
+        evictions++;
+        e.evicted = true;
+        if (!e.inUse) closeQuietly(e.stmt);
+    }
+
+    private synchronized void release(Entry e) {
+        if (!e.inUse) return; // closed twice
+        e.inUse = false;
+        if (e.evicted) {
+            closeQuietly(e.stmt);
+            return;
+        }
+        try {
+            e.stmt.clearParameters();
+            e.stmt.clearBatch(); // an abandoned addBatch() must not run with the next borrower's
+        } catch (SQLException ex) {
+            // a statement that cannot be reset is not worth keeping
+            entries.values().remove(e);
+            closeQuietly(e.stmt);
+        }
+    }
+
+    // a view of the statement whose close() returns it to the cache
+    private PreparedStatement wrap(Entry e) {
+        InvocationHandler h = (proxy, method, args) -> {
+            if (method.getParameterCount() == 0) {
+                if (method.getName().equals("close")) {
+                    release(e);
+                    return null;
+                }
+                if (method.getName().equals("isClosed")) return !e.inUse || e.stmt.isClosed();
+            }
+            try {
+                return method.invoke(e.stmt, args);
+            } catch (InvocationTargetException ex) {
+                throw ex.getCause();
+            }
+        };
+        return (PreparedStatement) Proxy.newProxyInstance(
+                PreparedStatement.class.getClassLoader(), new Class<?>[] { PreparedStatement.class }, h);
+    }
+
+    private static void closeQuietly(Statement st) {
+        try { st.close(); } catch (SQLException ignore) { }
+    }
+}
@@ -5,15 +5,28 @@ import com.models.profile.Portfolio;
 import com.models.profile.Watchlist;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Manages the collection of active stocks (TradeItems) in the market.
  * Handles subscriptions to real-time data and notifies listeners of updates.
+ *
+ * Prices live on a QuoteBoard, so tick updates and price reads take no
+ * market-wide lock. Only publishing an added or removed symbol is serialized;
+ * network I/O for an add happens outside the lock. Quote requests are paced
+ * by the shared Finnhub request scheduler, so adds need no budget of their own.
  */
-public class Market implements TradeListener {
-    private final Map<String, TradeItem> stocks = new LinkedHashMap<>();
+public class Market implements TradeListener, AutoCloseable {
+    private final Map<String, TradeItem> stocks = new ConcurrentHashMap<>();
+    private final List<TradeItem> order = new CopyOnWriteArrayList<>(); // insertion order for listeners
+    private final QuoteBoard board = new QuoteBoard();
+    private final TickConflator conflator;
+    private final Set<String> adding = ConcurrentHashMap.newKeySet(); // symbols with an add in flight
     private ClientFacade clientFacade;
-    private MarketListener listener;
+    private volatile MarketListener listener;
 
     /**
      * Constructs a new Market instance.
@@ -22,32 +35,90 @@ public class Market implements TradeListener {
      * @throws Exception If an error occurs during initialization.
      */
     public Market(ClientFacade clientFacade) throws Exception {
+        this(clientFacade, TickConflator.DEFAULT_FRAME_MS);
+    }
+
+    /**
+     * Constructs a new Market instance that publishes quote updates at most
+     * once per frame.
+     *
+     * @param clientFacade The facade for accessing market data APIs.
+     * @param frameMs      The quote publish interval in milliseconds.
+     * @throws Exception If an error occurs during initialization.
+     */
+    public Market(ClientFacade clientFacade, long frameMs) throws Exception {
         this.clientFacade = Objects.requireNonNull(clientFacade);
+        this.conflator = new TickConflator(frameMs, symbols -> {
+            MarketListener l = listener;
+            if (l != null)
+                l.onMarketUpdate(symbols);
+        });
+        this.conflator.start();
         clientFacade.setTradeListener(this);
     }
 
     /**
      * Adds a stock to the market and subscribes to real-time updates.
+     * The subscription and quote fetch run without holding the market lock, so
+     * several symbols can be added at once. A symbol that is already present or
+     * being added is ignored.
      *
      * @param item The TradeItem to add.
      * @throws Exception If an error occurs during subscription.
      */
-    public synchronized void add(TradeItem item) throws Exception {
+    public void add(TradeItem item) throws Exception {
         if (item == null) {
             return;
         }
 
         String sym = normalize(item.getSymbol());
-        if (stocks.containsKey(sym)) {
+        if (stocks.containsKey(sym) || !adding.add(sym)) {
             return;
         }
+        try {
+            clientFacade.subscribe(sym);
+            item.bind(board.slot(board.register(sym)));
+            // {open, current, prevClose}; queued behind the API rate limit, not rejected
+            item.setValues(clientFacade.fetchInitializingQuote(sym));
+
+            synchronized (this) {
+                stocks.put(sym, item);
+                order.add(item);
+                MarketListener l = listener;
+                if (l != null)
+                    l.loadSymbols(new ArrayList<>(order));
+            }
+        } finally {
+            adding.remove(sym);
+        }
+    }
 
-        clientFacade.subscribe(sym);
-        item.setValues(clientFacade.fetchInitializingQuote(sym));
-        item.updatePrice(clientFacade.fetchCurrentQuote(sym));
-        stocks.put(sym, item);
-        if (listener != null)
-            listener.loadSymbols(new ArrayList<>(stocks.values()));
+    /**
+     * Adds several stocks concurrently on virtual threads. Their quote requests
+     * wait their turn on the shared request scheduler. Returns immediately.
+     *
+     * @param items The TradeItems to add.
+     * @param what  A label for log messages.
+     */
+    private void warmUp(List<TradeItem> items, String what) {
+        Thread t = new Thread(() -> {
+            long t0 = System.nanoTime();
+            try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (TradeItem ti : items) {
+                    pool.submit(() -> {
+                        try {
+                            add(ti);
+                        } catch (Exception e) {
+                            System.err.println("Failed to add from " + what + ": " + e.getMessage());
+                        }
+                    });
+                }
+            }
+            System.out.printf("[Market] Warmed up %d %s symbols in %d ms%n",
+                    items.size(), what, (System.nanoTime() - t0) / 1_000_000);
+        }, "WarmUp-" + what);
+        t.setDaemon(true); // never keeps the app alive on exit
+        t.start();
     }
 
     /**
@@ -57,8 +128,12 @@ public class Market implements TradeListener {
      */
     public synchronized void remove(String symbol) {
         String sym = normalize(symbol);
-        if (stocks.remove(sym) != null && listener != null) {
-            listener.loadSymbols(new ArrayList<>(stocks.values()));
+        TradeItem removed = stocks.remove(sym);
+        if (removed != null) {
+            order.remove(removed);
+            MarketListener l = listener;
+            if (l != null)
+                l.loadSymbols(new ArrayList<>(order));
         }
         try { clientFacade.unsubscribe(sym); } catch (Exception ignore) { }
     }
@@ -72,47 +147,32 @@ public class Market implements TradeListener {
     public void addFromWatchlist(Watchlist wl) throws Exception {
         if (wl == null)
             return;
-
-        new Thread(() -> {
-            for (TradeItem ti : wl.getWatchlist()) {
-                try {
-                    add(ti);
-                } catch (Exception e) {
-                    System.err.println("Failed to add from watchlist: " + e.getMessage());
-                }
-            }
-        }, "WatchlistInit").start();
+        warmUp(new ArrayList<>(wl.getWatchlist()), "watchlist");
     }
 
     public void addFromPortfolio(Portfolio portfolio) throws Exception {
         if (portfolio == null) return;
-
-        new Thread(() -> {
-            for (String symbol : portfolio.getPortfolioItems()) {
-                try {
-                    TradeItem ti = new TradeItem(symbol);
-                    add(ti);
-                } catch (Exception e) {
-                    System.err.println("Failed to add from portfolio: " + e.getMessage());
-                }
-            }
-        }, "PortfolioInit").start();
+        List<TradeItem> items = new ArrayList<>();
+        for (String symbol : portfolio.getPortfolioItems()) items.add(new TradeItem(symbol));
+        warmUp(items, "portfolio");
     }
 
     /**
-     * Updates the price of a specific stock.
+     * Updates the price of a specific stock. Lock-free apart from the
+     * symbol's own slot.
      *
      * @param symbol The stock symbol.
      * @param price  The new price.
      */
-    public synchronized void updateStock(String symbol, double price) {
-        TradeItem ti = get(symbol);
-        if (ti != null)
-            ti.updatePrice(price);
+    public void updateStock(String symbol, double price) {
+        QuoteBoard.Slot slot = board.slot(symbol);
+        if (slot != null && stocks.containsKey(slot.symbol()))
+            slot.updatePrice(price);
     }
 
     /**
-     * Callback for trade events. Updates the stock price and notifies the listener.
+     * Callback for trade events. Updates the stock price and marks the symbol
+     * for the next conflated listener update.
      *
      * @param symbol The stock symbol.
      * @param price  The trade price.
@@ -120,8 +180,22 @@ public class Market implements TradeListener {
     @Override
     public void onTrade(String symbol, double price) {
         updateStock(symbol, price);
-        if (listener != null)
-            listener.onMarketUpdate();
+        conflator.mark(normalize(symbol));
+    }
+
+    /**
+     * @return Ticks received versus batches published to the listener.
+     */
+    public TickConflator.Stats getTickStats() {
+        return conflator.stats();
+    }
+
+    /**
+     * Stops publishing quote updates and ends the conflator's thread.
+     */
+    @Override
+    public void close() {
+        conflator.close();
     }
 
     /**
@@ -132,7 +206,7 @@ public class Market implements TradeListener {
     public synchronized void setMarketListener(MarketListener l) {
         this.listener = l;
         if (l != null)
-            l.loadSymbols(new ArrayList<>(stocks.values()));
+            l.loadSymbols(new ArrayList<>(order));
     }
 
     /**
@@ -144,6 +218,14 @@ public class Market implements TradeListener {
         return ti == null ? Double.NaN : ti.getCurrentPrice();
     }
 
+    /**
+     * Returns a consistent snapshot of a symbol's quote, or null if it is not in the market.
+     */
+    public QuoteBoard.Quote getQuote(String symbol) {
+        TradeItem ti = get(symbol);
+        return ti == null ? null : ti.getQuote();
+    }
+
     /**
      * Searches for symbols matching the query.
      *
@@ -1,6 +1,7 @@
 package com.models.market;
 
 import java.util.List;
+import java.util.Set;
 
 /**
  * Listener interface for market events.
@@ -11,6 +12,15 @@ public interface MarketListener {
      */
     public void onMarketUpdate();
 
+    /**
+     * Called once per frame with every symbol that traded since the last call.
+     *
+     * @param symbols The symbols whose quotes changed.
+     */
+    default void onMarketUpdate(Set<String> symbols) {
+        onMarketUpdate();
+    }
+
     /**
      * Called when the list of active symbols in the market changes.
      *
@@ -0,0 +1,232 @@
+package com.models.market;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Live quote storage shared between the market data thread and the UI.
+ * Every symbol gets a small integer id and a slot of primitive fields. A slot
+ * is guarded by its own StampedLock: writers take the write stamp for that one
+ * symbol only, and readers take an optimistic stamp, retrying a few times if a
+ * write overlapped. Only a reader that keeps losing to writes falls back to the
+ * read lock, which can hold off that symbol's writer for the length of one
+ * read. Writers of different symbols never contend.
+ */
+public class QuoteBoard {
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile Slot[] slots = new Slot[16];
+    private int count; // guarded by this
+
+    /**
+     * A consistent view of one symbol's quote fields.
+     */
+    public record Quote(String symbol, double price, double open, double prevClose,
+                        double change, double changePercent) { }
+
+    /**
+     * Returns the id for a symbol, assigning a new slot the first time it is seen.
+     *
+     * @param symbol The stock symbol.
+     * @return The symbol id.
+     */
+    public int register(String symbol) {
+        String sym = normalize(symbol);
+        Integer id = ids.get(sym);
+        if (id != null) return id;
+        synchronized (this) {
+            id = ids.get(sym);
+            if (id != null) return id;
+            Slot[] cur = slots;
+            if (count == cur.length) cur = Arrays.copyOf(cur, count * 2);
+            cur[count] = new Slot(sym);
+            slots = cur; // publish the array before the id
+            ids.put(sym, count);
+            return count++;
+        }
+    }
+
+    /**
+     * @param symbol The stock symbol.
+     * @return The symbol id, or -1 if the symbol has never been registered.
+     */
+    public int idOf(String symbol) {
+        Integer id = ids.get(normalize(symbol));
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * @param id A symbol id from {@link #register}.
+     * @return The slot for that id.
+     */
+    public Slot slot(int id) {
+        return slots[id];
+    }
+
+    /**
+     * @param symbol The stock symbol.
+     * @return The slot for that symbol, or null if it has never been registered.
+     */
+    public Slot slot(String symbol) {
+        int id = idOf(symbol);
+        return id < 0 ? null : slots[id];
+    }
+
+    /**
+     * @param symbol The stock symbol.
+     * @return A snapshot of the symbol's quote, or null if it has never been registered.
+     */
+    public Quote snapshot(String symbol) {
+        Slot s = slot(symbol);
+        return s == null ? null : s.snapshot();
+    }
+
+    private static String normalize(String s) {
+        return s == null ? "" : s.trim().toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * Quote fields for one symbol. Slots that are not on a board are used by
+     * TradeItems that have not been added to the market yet.
+     */
+    public static final class Slot {
+        private static final int OPTIMISTIC_TRIES = 4;
+
+        private final String symbol;
+        private final StampedLock lock = new StampedLock();
+        private double price;
+        private double open;
+        private double prevClose = Double.NaN; // for calculating % change
+        private double change;
+        private double changePercent;
+
+        public Slot(String symbol) {
+            this.symbol = symbol;
+        }
+
+        public String symbol() { return symbol; }
+
+        /**
+         * @return All fields as of a single point in time.
+         */
+        public Quote snapshot() {
+            for (int i = 0; i < OPTIMISTIC_TRIES; i++) {
+                long stamp = lock.tryOptimisticRead();
+                double p = price, o = open, pc = prevClose, c = change, cp = changePercent;
+                if (lock.validate(stamp)) return new Quote(symbol, p, o, pc, c, cp);
+                Thread.onSpinWait();
+            }
+            long stamp = lock.readLock();
+            try {
+                return new Quote(symbol, price, open, prevClose, change, changePercent);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        public double price() { return read(s -> s.price); }
+
+        public double change() { return read(s -> s.change); }
+
+        public double changePercent() { return read(s -> s.changePercent); }
+
+        // one field, optimistically; the read lock only after OPTIMISTIC_TRIES overlapping writes
+        private double read(ToDoubleFunction<Slot> field) {
+            for (int i = 0; i < OPTIMISTIC_TRIES; i++) {
+                long stamp = lock.tryOptimisticRead();
+                double v = field.applyAsDouble(this);
+                if (lock.validate(stamp)) return v;
+                Thread.onSpinWait();
+            }
+            long stamp = lock.readLock();
+            try { return field.applyAsDouble(this); } finally { lock.unlockRead(stamp); }
+        }
+
+        /**
+         * Sets open, price and previous close together and recomputes the change.
+         */
+        public void setValues(double open, double price, double prevClose) {
+            long stamp = lock.writeLock();
+            try {
+                this.open = open;
+                this.price = price;
+                this.prevClose = prevClose;
+                calculateChange();
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        /**
+         * Sets the price and recomputes the change.
+         *
+         * @return True if updated, false if the price is invalid.
+         */
+        public boolean updatePrice(double price) {
+            if (price < 0) return false;
+            long stamp = lock.writeLock();
+            try {
+                this.price = price;
+                calculateChange();
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+            return true;
+        }
+
+        /**
+         * Sets the previous close, recomputing the change if the price is valid.
+         */
+        public void setPrevClose(double prevClose) {
+            long stamp = lock.writeLock();
+            try {
+                this.prevClose = prevClose;
+                if (!Double.isNaN(price) && prevClose > 0.0) {
+                    this.change = price - prevClose;
+                    this.changePercent = (change / prevClose) * 100.0;
+                }
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        public void setOpen(double open) {
+            long stamp = lock.writeLock();
+            try { this.open = open; } finally { lock.unlockWrite(stamp); }
+        }
+
+        public void setChange(double change, double changePercent) {
+            long stamp = lock.writeLock();
+            try {
+                this.change = change;
+                this.changePercent = changePercent;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        void copyFrom(Slot other) {
+            Quote q = other.snapshot();
+            long stamp = lock.writeLock();
+            try {
+                price = q.price(); open = q.open(); prevClose = q.prevClose();
+                change = q.change(); changePercent = q.changePercent();
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        // caller holds the write stamp
+        private void calculateChange() {
+            if (!Double.isNaN(prevClose) && prevClose > 0) {
+                this.change = price - prevClose;
+                this.changePercent = change / prevClose * 100;
+            } else {
+                this.change = Double.NaN;
+                this.changePercent = Double.NaN;
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.models.market;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Merges per-symbol tick notifications into at most one batch per frame.
+ * Producers only mark a symbol dirty; a single daemon thread drains the dirty
+ * set every frame and hands the batch to the sink. Any number of ticks for one
+ * symbol within a frame produce one entry in the next batch.
+ */
+public class TickConflator implements AutoCloseable {
+    public static final long DEFAULT_FRAME_MS = 200;
+
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+    private final Consumer<Set<String>> sink;
+    private final long frameMs;
+    private ScheduledExecutorService scheduler;
+
+    // metrics
+    private final AtomicLong ticksIn = new AtomicLong();
+    private final AtomicLong batchesOut = new AtomicLong();
+    private final AtomicLong symbolsOut = new AtomicLong();
+
+    /**
+     * Conflation counters since the conflator was created.
+     *
+     * @param ticksIn    Ticks marked by producers.
+     * @param batchesOut Batches delivered to the sink.
+     * @param symbolsOut Symbols delivered across all batches.
+     */
+    public record Stats(long ticksIn, long batchesOut, long symbolsOut) {
+        /** @return Ticks absorbed per delivered batch. */
+        public double ticksPerBatch() { return batchesOut == 0 ? 0.0 : ticksIn / (double) batchesOut; }
+    }
+
+    /**
+     * Constructs a new TickConflator.
+     *
+     * @param frameMs The publish interval in milliseconds.
+     * @param sink    Receives each non-empty batch of dirty symbols.
+     */
+    public TickConflator(long frameMs, Consumer<Set<String>> sink) {
+        if (frameMs <= 0) throw new IllegalArgumentException("frameMs must be > 0");
+        this.frameMs = frameMs;
+        this.sink = sink;
+    }
+
+    /**
+     * Starts publishing on a daemon thread. Does nothing if already started.
+     */
+    public synchronized void start() {
+        if (scheduler != null) return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "TickConflator");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleAtFixedRate(this::flush, frameMs, frameMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Marks a symbol as changed since the last batch.
+     *
+     * @param symbol The stock symbol.
+     */
+    public void mark(String symbol) {
+        ticksIn.incrementAndGet();
+        dirty.add(symbol);
+    }
+
+    /**
+     * Delivers the current dirty set now, if it is not empty.
+     *
+     * @return The number of symbols delivered.
+     */
+    public int flush() {
+        if (dirty.isEmpty()) return 0;
+        Set<String> batch = new LinkedHashSet<>();
+        // a symbol marked again after its removal stays dirty for the next frame
+        for (Iterator<String> it = dirty.iterator(); it.hasNext();) {
+            batch.add(it.next());
+            it.remove();
+        }
+        if (batch.isEmpty()) return 0;
+        batchesOut.incrementAndGet();
+        symbolsOut.addAndGet(batch.size());
+        try {
+            sink.accept(Collections.unmodifiableSet(batch));
+        } catch (RuntimeException e) {
+            System.err.println("[TickConflator] Listener failed: " + e.getMessage());
+        }
+        return batch.size();
+    }
+
+    /**
+     * @return A snapshot of the conflation counters.
+     */
+    public Stats stats() {
+        return new Stats(ticksIn.get(), batchesOut.get(), symbolsOut.get());
+    }
+
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+}
@@ -5,14 +5,13 @@ import com.gui.navigation.SymbolListEntry;
 /**
  * Represents a stock or tradeable item in the market.
  * Holds current price, change, and other market data.
+ *
+ * Quote fields live in a QuoteBoard slot. Once the item is added to the market
+ * it shares the board's slot for its symbol, so price reads never lock.
  */
 public class TradeItem implements SymbolListEntry {
     private final String symbol;
-    private double price;
-    private double changePercent;
-    private double change;
-    private double open;
-    private double prevClose = Double.NaN; // for calculating % change
+    private volatile QuoteBoard.Slot quote;
     private CompanyProfile companyProfile;
 
     public TradeItem(String symbol) {
@@ -20,8 +19,23 @@ public class TradeItem implements SymbolListEntry {
             throw new IllegalArgumentException("symbol required");
         }
         this.symbol = symbol.trim().toUpperCase();
+        this.quote = new QuoteBoard.Slot(this.symbol);
     }
 
+    /**
+     * Moves this item's quote onto a board slot, carrying over current values.
+     */
+    void bind(QuoteBoard.Slot slot) {
+        if (slot == quote) return;
+        slot.copyFrom(quote);
+        this.quote = slot;
+    }
+
+    /**
+     * @return A consistent snapshot of all quote fields.
+     */
+    public QuoteBoard.Quote getQuote() { return quote.snapshot(); }
+
     public String getName() {
         if (companyProfile != null && companyProfile.getName() != null && !companyProfile.getName().isBlank()) {
             return companyProfile.getName();
@@ -42,13 +56,10 @@ public class TradeItem implements SymbolListEntry {
      *
      * @return The current price.
      */
-    public double getCurrentPrice() { return price; }
-    public double getChangePercent() { return changePercent; }
+    public double getCurrentPrice() { return quote.price(); }
+    public double getChangePercent() { return quote.changePercent(); }
     public void setValues(double[] openCurrent) {
-        this.open = openCurrent[0];
-        this.price = openCurrent[1];
-        this.prevClose = openCurrent[2];
-        calculateChange();
+        quote.setValues(openCurrent[0], openCurrent[1], openCurrent[2]);
     }
 
     /**
@@ -58,26 +69,10 @@ public class TradeItem implements SymbolListEntry {
      * @return True if updated successfully, false if price is invalid.
      */
     public boolean updatePrice(double price) {
-        if (price < 0) {
-            return false;
-        }
-        this.price = price;
-        calculateChange();
-
-        return true;
+        return quote.updatePrice(price);
     }
 
-    private void calculateChange() {
-        if (!Double.isNaN(prevClose) && prevClose > 0) {
-            this.change = price - prevClose;
-            this.changePercent = change / prevClose * 100;
-        } else {
-            this.change = Double.NaN;
-            this.changePercent = Double.NaN;
-        }
-    }
-
-    public double getChange() { return change; }
+    public double getChange() { return quote.change(); }
 
     /**
      * Sets the previous close price and recalculates change metrics if current
@@ -86,26 +81,20 @@ public class TradeItem implements SymbolListEntry {
      * @param prevClose The previous close price.
      */
     public void setPrevClose(double prevClose) {
-
-        this.prevClose = prevClose;
-        if (!Double.isNaN(price) && prevClose > 0.0) {
-            this.change = price - prevClose;
-            this.changePercent = (change / prevClose) * 100.0;
-        }
+        quote.setPrevClose(prevClose);
     }
 
     public void setOpen(double open) {
-        this.open = open;
+        quote.setOpen(open);
     }
 
     public void setChange(double change, double changePercent) {
-        this.change = change;
-        this.changePercent = changePercent;
+        quote.setChange(change, changePercent);
     }
 
     @Override
     public String toString() {
-        return this.getClass().getSimpleName() + "{" + "name=" + companyProfile.getName() + ", symbol=" + symbol + ", price=" + price + '}';
+        return this.getClass().getSimpleName() + "{" + "name=" + companyProfile.getName() + ", symbol=" + symbol + ", price=" + getCurrentPrice() + '}';
     }
 
     @Override
@@ -11,4 +11,17 @@ public interface TradeListener {
     * @param price  The trade price.
     */
    public void onTrade(String symbol, double price);
+
+   /**
+    * Called when a trade with exchange time and size occurs. Listeners that only
+    * need the price can ignore this; it forwards to {@link #onTrade(String, double)}.
+    *
+    * @param symbol    The stock symbol.
+    * @param price     The trade price.
+    * @param timestamp The trade time in milliseconds since the epoch.
+    * @param volume    The trade size.
+    */
+   default void onTrade(String symbol, double price, long timestamp, double volume) {
+      onTrade(symbol, price);
+   }
 }
@@ -64,14 +64,17 @@ public class CloneDbPrices {
 
     private static int copyPrices(Connection src, Connection dst) throws SQLException {
         System.out.println("Copying prices...");
+        // sources written before the dictionary layout still have text columns on prices
+        String source = tableExists(src, "symbols") ? "prices_named" : "prices";
         String selectSql = """
                 SELECT symbol, timespan, multiplier, timestamp,
                        open, high, low, close, volume
-                FROM prices
-                """;
+                FROM %s
+                """.formatted(source);
 
+        // the view's insert trigger fills the symbol and series dictionaries
         String insertSql = """
-                INSERT OR REPLACE INTO prices
+                INSERT OR REPLACE INTO prices_named
                 (symbol, timespan, multiplier, timestamp, open, high, low, close, volume)
                 VALUES (?,?,?,?,?,?,?,?,?)
                 """;
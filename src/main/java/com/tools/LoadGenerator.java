@@ -0,0 +1,344 @@
+package com.tools;
+
+import com.etl.TradeSource;
+import com.etl.finnhub.ClientFacade;
+import com.etl.finnhub.WebSocketClient;
+import com.models.market.Market;
+import com.models.market.MarketListener;
+import com.models.market.TickConflator;
+import com.models.market.TradeItem;
+import com.models.market.TradeListener;
+
+import javax.swing.SwingUtilities;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Synthetic high-rate trade source for stress-testing the tick pipeline.
+ *
+ * Generates random-walk trades for a universe of symbols named S00000, S00001, ...
+ * at a target aggregate rate. Several producer threads each own a disjoint share
+ * of the symbols, so trades for one symbol stay in order. With JSON framing on,
+ * trades are encoded as Finnhub frames and decoded by WebSocketClient.parseAndNotify,
+ * as they would be off the wire.
+ *
+ * Every symbol in the universe is emitted; subscribe and unsubscribe are no-ops.
+ *
+ * The driver reports two latencies per published symbol: from the oldest
+ * unpublished tick to the market's batch callback, and on to the Swing event
+ * thread, reached through invokeLater the way ModelFacade hands quote batches
+ * to the UI.
+ *
+ * Usage:
+ *   java com.tools.LoadGenerator [symbols] [ticksPerSec] [seconds] [threads] [uniform|poisson|bursty] [json]
+ */
+public class LoadGenerator implements TradeSource, AutoCloseable {
+
+    /**
+     * How trade arrival times are spaced.
+     */
+    public enum Arrival {
+        /** Evenly spaced. */
+        UNIFORM,
+        /** Exponential gaps (a Poisson process). */
+        POISSON,
+        /** Poisson, but 20% of 100 ms windows run at 4x the rate and the rest at 0.25x. */
+        BURSTY
+    }
+
+    /**
+     * Generator settings.
+     *
+     * @param symbols        Size of the symbol universe.
+     * @param ticksPerSecond Target aggregate rate across all producers.
+     * @param threads        Producer threads.
+     * @param arrival        Arrival distribution.
+     * @param jsonFraming    Whether to go through Finnhub JSON frames.
+     * @param tradesPerFrame Trades per JSON frame.
+     * @param seed           Random seed; the same seed produces the same prices.
+     */
+    public record Config(int symbols, double ticksPerSecond, int threads, Arrival arrival,
+                         boolean jsonFraming, int tradesPerFrame, long seed) {
+        public Config {
+            if (symbols <= 0 || threads <= 0 || ticksPerSecond <= 0 || tradesPerFrame <= 0)
+                throw new IllegalArgumentException("symbols, threads, rate and frame size must be > 0");
+        }
+    }
+
+    private static final long BURST_WINDOW_NS = 100_000_000L;
+
+    private final Config config;
+    private final String[] symbols;
+    private final double[] prices;
+    private final AtomicLongArray pendingSince; // nanoTime of the first unpublished tick, 0 if none
+    private final LongAdder emitted = new LongAdder();
+    private volatile TradeListener listener;
+    private volatile boolean running;
+    private final List<Thread> producers = new ArrayList<>();
+
+    /**
+     * Constructs a new LoadGenerator. Nothing is emitted until {@link #start()}.
+     *
+     * @param config The generator settings.
+     */
+    public LoadGenerator(Config config) {
+        this.config = config;
+        this.symbols = new String[config.symbols()];
+        this.prices = new double[config.symbols()];
+        this.pendingSince = new AtomicLongArray(config.symbols());
+        Random rnd = new Random(config.seed());
+        for (int i = 0; i < symbols.length; i++) {
+            symbols[i] = symbolName(i);
+            prices[i] = 20 + rnd.nextDouble() * 480;
+        }
+    }
+
+    /**
+     * @param index The symbol index.
+     * @return The generated symbol name.
+     */
+    public static String symbolName(int index) {
+        return String.format("S%05d", index);
+    }
+
+    /** @return The symbol universe, in index order. */
+    public List<String> symbols() {
+        return List.of(symbols);
+    }
+
+    /**
+     * Starts the producer threads. Does nothing if already started.
+     */
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        for (int p = 0; p < config.threads(); p++) {
+            int id = p;
+            Thread t = new Thread(() -> produce(id), "LoadGenerator-" + p);
+            t.setDaemon(true);
+            producers.add(t);
+            t.start();
+        }
+    }
+
+    /** @return Trades emitted so far. */
+    public long emitted() {
+        return emitted.sum();
+    }
+
+    /**
+     * Returns and clears the time the oldest unpublished tick for a symbol was
+     * emitted. Call when the symbol's update reaches the consumer to measure
+     * end-to-end latency.
+     *
+     * @param symbol A generated symbol.
+     * @return The emit time in System.nanoTime units, or 0 if none is pending.
+     */
+    public long takePending(String symbol) {
+        int idx = indexOf(symbol);
+        return idx < 0 ? 0 : pendingSince.getAndSet(idx, 0);
+    }
+
+    private static int indexOf(String symbol) {
+        if (symbol == null || symbol.length() < 2 || symbol.charAt(0) != 'S') return -1;
+        try {
+            return Integer.parseInt(symbol, 1, symbol.length(), 10);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void produce(int producer) {
+        int threads = config.threads();
+        int owned = (symbols.length - producer + threads - 1) / threads; // indexes producer, producer+threads, ...
+        if (owned == 0) return;
+        Random rnd = new Random(config.seed() * 31 + producer);
+        double rate = config.ticksPerSecond() / threads;
+        double meanGapNs = 1e9 / rate;
+        WebSocketClient framer = null;
+        StringBuilder frame = null;
+        int inFrame = 0;
+        if (config.jsonFraming()) {
+            framer = new WebSocketClient(null); // never connected; used only to decode
+            framer.setTradeListener(relay);
+            frame = new StringBuilder(256 * config.tradesPerFrame());
+        }
+
+        long due = System.nanoTime();
+        long window = -1;
+        double windowFactor = 1.0;
+        while (running) {
+            long now = System.nanoTime();
+            if (due > now) {
+                // flush a partial frame rather than hold trades while idle
+                if (inFrame > 0) { sendFrame(framer, frame); inFrame = 0; }
+                LockSupport.parkNanos(due - now);
+                continue;
+            }
+            int idx = producer + threads * rnd.nextInt(owned);
+            double px = prices[idx] * (1.0 + rnd.nextGaussian() * 0.001);
+            prices[idx] = Math.max(0.01, px); // each index is owned by one producer
+            long ts = System.currentTimeMillis();
+            int volume = 1 + rnd.nextInt(500);
+            pendingSince.compareAndSet(idx, 0, Math.max(1, System.nanoTime()));
+            emitted.increment();
+
+            if (framer == null) {
+                TradeListener l = listener;
+                if (l != null) l.onTrade(symbols[idx], prices[idx], ts, volume);
+            } else {
+                frame.append(inFrame == 0 ? "{\"data\":[" : ",")
+                     .append("{\"p\":").append(prices[idx])
+                     .append(",\"s\":\"").append(symbols[idx])
+                     .append("\",\"t\":").append(ts)
+                     .append(",\"v\":").append(volume).append('}');
+                if (++inFrame == config.tradesPerFrame()) { sendFrame(framer, frame); inFrame = 0; }
+            }
+
+            switch (config.arrival()) {
+                case UNIFORM -> due += (long) meanGapNs;
+                case POISSON -> due += (long) (-Math.log(1.0 - rnd.nextDouble()) * meanGapNs);
+                case BURSTY -> {
+                    long w = due / BURST_WINDOW_NS;
+                    if (w != window) {
+                        window = w;
+                        windowFactor = rnd.nextDouble() < 0.2 ? 4.0 : 0.25;
+                    }
+                    due += (long) (-Math.log(1.0 - rnd.nextDouble()) * meanGapNs / windowFactor);
+                }
+            }
+        }
+    }
+
+    private static void sendFrame(WebSocketClient framer, StringBuilder frame) {
+        frame.append("],\"type\":\"trade\"}");
+        framer.parseAndNotify(frame.toString());
+        frame.setLength(0);
+    }
+
+    // forwards decoded frames to the current listener, keeping time and size
+    private final TradeListener relay = new TradeListener() {
+        @Override
+        public void onTrade(String symbol, double price) {
+            TradeListener l = listener;
+            if (l != null) l.onTrade(symbol, price);
+        }
+
+        @Override
+        public void onTrade(String symbol, double price, long timestamp, double volume) {
+            TradeListener l = listener;
+            if (l != null) l.onTrade(symbol, price, timestamp, volume);
+        }
+    };
+
+    @Override
+    public void setTradeListener(TradeListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void subscribe(String symbol) { }
+
+    @Override
+    public void unsubscribe(String symbol) { }
+
+    /**
+     * Stops and joins the producer threads.
+     */
+    @Override
+    public synchronized void close() {
+        running = false;
+        for (Thread t : producers) {
+            try {
+                t.join(1_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        producers.clear();
+    }
+
+    // benchmark driver
+    public static void main(String[] args) throws Exception {
+        int symbols = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        double rate = args.length > 1 ? Double.parseDouble(args[1]) : 200_000;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : 4;
+        Arrival arrival = args.length > 4 ? Arrival.valueOf(args[4].toUpperCase(Locale.ROOT)) : Arrival.POISSON;
+        boolean json = args.length > 5 && args[5].equalsIgnoreCase("json");
+
+        LoadGenerator gen = new LoadGenerator(new Config(symbols, rate, threads, arrival, json, 16, 42));
+        ClientFacade client = ClientFacade.offline(gen);
+        Market market = new Market(client);
+        for (String s : gen.symbols()) market.add(new TradeItem(s));
+
+        // batch latencies are written on the conflator thread, EDT latencies on the EDT
+        long[] latencies = new long[1 << 20];
+        long[] edtLatencies = new long[1 << 20];
+        int[] count = {0};
+        int[] edtCount = {0};
+        long[] batches = {0};
+        market.setMarketListener(new MarketListener() {
+            @Override public void onMarketUpdate() { }
+            @Override public void onMarketUpdate(Set<String> dirty) {
+                long now = System.nanoTime();
+                batches[0]++;
+                long[] sinces = new long[dirty.size()];
+                int n = 0;
+                for (String s : dirty) {
+                    long since = gen.takePending(s);
+                    if (since <= 0) continue;
+                    sinces[n++] = since;
+                    if (count[0] < latencies.length) latencies[count[0]++] = now - since;
+                }
+                int pending = n;
+                SwingUtilities.invokeLater(() -> {
+                    long delivered = System.nanoTime();
+                    for (int i = 0; i < pending && edtCount[0] < edtLatencies.length; i++)
+                        edtLatencies[edtCount[0]++] = delivered - sinces[i];
+                });
+            }
+            @Override public void loadSymbols(List<TradeItem> items) { }
+        });
+
+        System.out.printf("[LoadGenerator] %d symbols, target %.0f ticks/s, %d threads, %s arrivals%s%n",
+                symbols, rate, threads, arrival, json ? ", JSON frames" : "");
+        long t0 = System.nanoTime();
+        gen.start();
+        TimeUnit.SECONDS.sleep(seconds);
+        gen.close();
+        double elapsed = (System.nanoTime() - t0) / 1e9;
+        TimeUnit.MILLISECONDS.sleep(2 * TickConflator.DEFAULT_FRAME_MS); // let the last frame publish
+        SwingUtilities.invokeAndWait(() -> { }); // and reach the EDT
+        market.close();
+
+        TickConflator.Stats stats = market.getTickStats();
+        long[] lat = Arrays.copyOf(latencies, count[0]);
+        Arrays.sort(lat);
+        long[] edt = Arrays.copyOf(edtLatencies, edtCount[0]); // the invokeAndWait above orders these reads
+        Arrays.sort(edt);
+        System.out.println("==================================================");
+        System.out.printf("  emitted        : %,d ticks (%,.0f ticks/s achieved)%n", gen.emitted(), gen.emitted() / elapsed);
+        System.out.printf("  market received: %,d ticks (%,.0f ticks/s)%n", stats.ticksIn(), stats.ticksIn() / elapsed);
+        System.out.printf("  published      : %,d batches, %.1f ticks/batch, %,d symbol updates%n",
+                batches[0], stats.ticksPerBatch(), stats.symbolsOut());
+        if (lat.length > 0) {
+            System.out.printf("  tick -> batch callback: p50 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+                    lat[lat.length / 2] / 1e6, lat[(int) (lat.length * 0.99)] / 1e6, lat[lat.length - 1] / 1e6);
+        }
+        if (edt.length > 0) {
+            System.out.printf("  tick -> EDT delivery  : p50 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+                    edt[edt.length / 2] / 1e6, edt[(int) (edt.length * 0.99)] / 1e6, edt[edt.length - 1] / 1e6);
+        }
+        System.out.println("==================================================");
+        System.exit(0);
+    }
+}
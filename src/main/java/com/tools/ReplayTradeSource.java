@@ -0,0 +1,228 @@
+package com.tools;
+
+import com.etl.TickJournal;
+import com.etl.TradeSource;
+import com.models.CandleStore;
+import com.models.Database;
+import com.models.market.TradeListener;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A TradeSource that replays recorded data at a fixed speed, for reproducible
+ * load and regression runs without a network.
+ *
+ * The same feed always produces the same trades in the same order, with the
+ * recorded timestamps. The speed multiplier only changes the wall-clock pacing:
+ * 1 replays in real time, 100 replays a minute in 0.6 s, and
+ * {@link #AS_FAST_AS_POSSIBLE} does not wait at all. By default only subscribed
+ * symbols are emitted; subscribe before {@link #start()} for an identical
+ * stream on every run.
+ */
+public class ReplayTradeSource implements TradeSource, AutoCloseable {
+    public static final double AS_FAST_AS_POSSIBLE = 0.0;
+
+    /**
+     * A recorded trade stream, read once in order.
+     */
+    @FunctionalInterface
+    public interface Feed extends AutoCloseable {
+        /**
+         * @return The next trade, or null at the end of the stream.
+         * @throws IOException If the recording cannot be read.
+         */
+        TickJournal.Tick next() throws IOException;
+
+        @Override
+        default void close() throws IOException { }
+    }
+
+    private final Feed feed;
+    private final double speed;
+    private final Set<String> subscribed = ConcurrentHashMap.newKeySet();
+    private volatile boolean allSymbols;
+    private volatile TradeListener listener;
+    private volatile boolean running;
+    private Thread player;
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    // metrics
+    private final AtomicLong emitted = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+
+    /**
+     * Constructs a new ReplayTradeSource. Nothing is emitted until {@link #start()}.
+     *
+     * @param feed  The recorded trades.
+     * @param speed The replay speed multiplier, or {@link #AS_FAST_AS_POSSIBLE}.
+     */
+    public ReplayTradeSource(Feed feed, double speed) {
+        if (speed < 0 || Double.isNaN(speed)) throw new IllegalArgumentException("speed must be >= 0");
+        this.feed = feed;
+        this.speed = speed;
+    }
+
+    /**
+     * Replays a tick journal recorded by {@link TickJournal}.
+     *
+     * @param dir    The journal directory.
+     * @param fromTs The first timestamp to replay, in milliseconds.
+     * @return The feed.
+     * @throws IOException If the journal cannot be opened.
+     */
+    public static Feed journal(Path dir, long fromTs) throws IOException {
+        TickJournal.Reader reader = new TickJournal.Reader(dir);
+        reader.seek(fromTs);
+        return new Feed() {
+            @Override public TickJournal.Tick next() throws IOException { return reader.next(); }
+            @Override public void close() throws IOException { reader.close(); }
+        };
+    }
+
+    /**
+     * Replays candles from the prices table as trades. Each candle becomes four
+     * trades spread evenly over its interval: open, then low and high (high
+     * first on a down bar), then close, each carrying a quarter of the volume.
+     * Trades of different symbols at the same time keep the order of {@code symbols}.
+     *
+     * @param db         The database.
+     * @param symbols    The symbols to replay.
+     * @param multiplier The candle multiplier.
+     * @param timespan   The candle timespan ("minute", "hour" or "day").
+     * @param fromMs     The start timestamp (inclusive).
+     * @param toMs       The end timestamp (inclusive).
+     * @return The feed.
+     * @throws SQLException If the candles cannot be read.
+     */
+    public static Feed prices(Database db, Collection<String> symbols, int multiplier, String timespan,
+                              long fromMs, long toMs) throws SQLException {
+        long barMs = multiplier * switch (timespan.toLowerCase(Locale.ROOT)) {
+            case "minute" -> 60_000L;
+            case "hour" -> 3_600_000L;
+            default -> 86_400_000L;
+        };
+        long step = barMs / 4;
+        List<TickJournal.Tick> ticks = new ArrayList<>();
+        for (String sym : symbols) {
+            CandleStore.Slice s = db.getCandleSlice(sym, multiplier, timespan, fromMs, toMs);
+            for (int i = 0; i < s.size(); i++) {
+                long t = s.time(i);
+                double v = s.volume(i) / 4;
+                boolean up = s.close(i) >= s.open(i);
+                ticks.add(new TickJournal.Tick(sym, t, s.open(i), v));
+                ticks.add(new TickJournal.Tick(sym, t + step, up ? s.low(i) : s.high(i), v));
+                ticks.add(new TickJournal.Tick(sym, t + 2 * step, up ? s.high(i) : s.low(i), v));
+                ticks.add(new TickJournal.Tick(sym, t + 3 * step, s.close(i), v));
+            }
+        }
+        ticks.sort(Comparator.comparingLong(TickJournal.Tick::timestamp)); // stable across symbols
+        Iterator<TickJournal.Tick> it = ticks.iterator();
+        return () -> it.hasNext() ? it.next() : null;
+    }
+
+    /**
+     * Emits every symbol in the feed, not only subscribed ones.
+     *
+     * @return This source.
+     */
+    public ReplayTradeSource replayAllSymbols() {
+        this.allSymbols = true;
+        return this;
+    }
+
+    /**
+     * Starts replaying on a daemon thread. Does nothing if already started.
+     */
+    public synchronized void start() {
+        if (player != null) return;
+        running = true;
+        player = new Thread(this::play, "ReplayTradeSource");
+        player.setDaemon(true);
+        player.start();
+    }
+
+    /**
+     * Waits for the feed to be fully replayed.
+     *
+     * @param timeout The maximum time to wait.
+     * @return True if the replay finished, false if the timeout elapsed.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public boolean awaitCompletion(Duration timeout) throws InterruptedException {
+        return done.await(timeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /** @return Trades delivered to the listener. */
+    public long emitted() { return emitted.get(); }
+    /** @return Trades skipped because their symbol was not subscribed. */
+    public long skipped() { return skipped.get(); }
+
+    private void play() {
+        long firstTs = Long.MIN_VALUE;
+        long wallStart = 0;
+        try (feed) {
+            for (TickJournal.Tick t; running && (t = feed.next()) != null;) {
+                if (speed > 0) {
+                    if (firstTs == Long.MIN_VALUE) {
+                        firstTs = t.timestamp();
+                        wallStart = System.nanoTime();
+                    }
+                    long due = wallStart + (long) ((t.timestamp() - firstTs) * 1_000_000L / speed);
+                    long wait = due - System.nanoTime();
+                    if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+                }
+                TradeListener l = listener;
+                if (l == null || !(allSymbols || subscribed.contains(t.symbol()))) {
+                    skipped.incrementAndGet();
+                    continue;
+                }
+                l.onTrade(t.symbol(), t.price(), t.timestamp(), t.volume());
+                emitted.incrementAndGet();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            System.err.println("[Replay] Stopped: " + e.getMessage());
+        } finally {
+            done.countDown();
+        }
+    }
+
+    @Override
+    public void setTradeListener(TradeListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void subscribe(String symbol) {
+        subscribed.add(symbol);
+    }
+
+    @Override
+    public void unsubscribe(String symbol) {
+        subscribed.remove(symbol);
+    }
+
+    /**
+     * Stops the replay.
+     */
+    @Override
+    public synchronized void close() {
+        running = false;
+        if (player != null) player.interrupt();
+    }
+}
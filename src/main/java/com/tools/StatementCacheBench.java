@@ -0,0 +1,141 @@
+package com.tools;
+
+import com.models.Database;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Micro-benchmark for the database price fallback used by ModelFacade.getPrice
+ * when there is no live quote: close at or before a timestamp, then the first
+ * close, then the latest close.
+ *
+ * Runs the same lookups through Database (cached prepared statements) and through
+ * a plain JDBC connection that prepares every statement per call, and prints the
+ * average latency of each.
+ *
+ * Usage:
+ *   java com.tools.StatementCacheBench [symbols] [iterations]
+ */
+public class StatementCacheBench {
+    private static final String AT_OR_BEFORE = """
+                SELECT close FROM prices
+                WHERE symbol_id = (SELECT id FROM symbols WHERE symbol = ?)
+                  AND series_id = (SELECT id FROM series WHERE timespan = ? AND multiplier = ?)
+                  AND timestamp <= ?
+                ORDER BY timestamp DESC LIMIT 1
+            """;
+    private static final String FIRST = """
+                SELECT close FROM prices
+                WHERE symbol_id = (SELECT id FROM symbols WHERE symbol = ?)
+                  AND series_id = (SELECT id FROM series WHERE timespan = ? AND multiplier = ?)
+                ORDER BY timestamp ASC LIMIT 1
+            """;
+    private static final String LATEST = """
+                SELECT close FROM prices
+                WHERE symbol_id = (SELECT id FROM symbols WHERE symbol = ?)
+                  AND series_id = (SELECT id FROM series WHERE timespan = ? AND multiplier = ?)
+                ORDER BY timestamp DESC
+                LIMIT 2
+            """;
+
+    private static final long DAY_MS = 86_400_000L;
+    private static final long START_MS = 1_600_000_000_000L;
+    private static final int DAYS = 500;
+
+    public static void main(String[] args) throws Exception {
+        int symbols = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+
+        Path dir = Files.createTempDirectory("marketsim-bench");
+        String dbFile = dir.resolve("bench.db").toString();
+
+        List<String> syms = new ArrayList<>();
+        try (Database db = new Database(dbFile)) {
+            for (int s = 0; s < symbols; s++) {
+                String sym = "SYM" + s;
+                syms.add(sym);
+                List<Database.CandleData> rows = new ArrayList<>(DAYS);
+                for (int d = 0; d < DAYS; d++) {
+                    double px = 100 + s + d * 0.1;
+                    rows.add(new Database.CandleData(sym, START_MS + d * DAY_MS, px, px + 1, px - 1, px, 1000));
+                }
+                db.insertCandlesBatch(sym, 1, "day", rows);
+            }
+
+            // a quarter of lookups fall before the first candle and take the second query
+            long[] ts = new long[1024];
+            Random rnd = new Random(42);
+            for (int i = 0; i < ts.length; i++) {
+                ts[i] = (i % 4 == 0) ? START_MS - DAY_MS : START_MS + rnd.nextInt(DAYS) * DAY_MS;
+            }
+
+            try (Connection raw = DriverManager.getConnection("jdbc:sqlite:" + dbFile)) {
+                // warm up both paths
+                run(db, raw, syms, ts, iterations / 10, true);
+                run(db, raw, syms, ts, iterations / 10, false);
+
+                long cached = run(db, raw, syms, ts, iterations, true);
+                long uncached = run(db, raw, syms, ts, iterations, false);
+
+                System.out.println("==================================================");
+                System.out.printf("Price fallback, %d symbols x %d candles, %d lookups%n", symbols, DAYS, iterations);
+                System.out.printf("  prepare per call : %8.2f us/lookup%n", uncached / 1e3 / iterations);
+                System.out.printf("  cached statements: %8.2f us/lookup%n", cached / 1e3 / iterations);
+                System.out.printf("  speedup          : %8.2fx%n", uncached / (double) cached);
+                System.out.println("==================================================");
+            }
+        } finally {
+            try (var walk = Files.walk(dir)) {
+                walk.sorted((a, b) -> b.compareTo(a)).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+
+    private static long run(Database db, Connection raw, List<String> syms, long[] ts,
+                            int iterations, boolean cached) throws SQLException {
+        double sink = 0;
+        long t0 = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            String sym = syms.get(i % syms.size());
+            long at = ts[i & (ts.length - 1)];
+            sink += cached ? fallbackCached(db, sym, at) : fallbackUncached(raw, sym, at);
+        }
+        long elapsed = System.nanoTime() - t0;
+        if (sink == 42) System.out.println(); // keep the loop from being optimized away
+        return elapsed;
+    }
+
+    // mirrors ModelFacade.getPrice after the live quote misses
+    private static double fallbackCached(Database db, String sym, long ts) throws SQLException {
+        double px = db.getCloseAtOrBefore(sym, ts, 1, "day");
+        if (!Double.isNaN(px)) return px;
+        px = db.getFirstClose(sym, 1, "day");
+        if (!Double.isNaN(px)) return px;
+        return db.latestAndPrevClose(sym, 1, "day")[0];
+    }
+
+    private static double fallbackUncached(Connection conn, String sym, long ts) throws SQLException {
+        double px = query(conn, AT_OR_BEFORE, sym, ts);
+        if (!Double.isNaN(px)) return px;
+        px = query(conn, FIRST, sym, null);
+        if (!Double.isNaN(px)) return px;
+        return query(conn, LATEST, sym, null);
+    }
+
+    private static double query(Connection conn, String sql, String sym, Long ts) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, sym);
+            ps.setString(2, "day");
+            ps.setInt(3, 1);
+            if (ts != null) ps.setLong(4, ts);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getDouble(1) : Double.NaN;
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.tools;
+
+import com.etl.finnhub.TradeFrameParser;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * Micro-benchmark for decoding Finnhub trade frames on the WebSocket thread.
+ *
+ * Decodes the same synthetic frames with the Gson tree model (the previous
+ * WebSocketClient.parseAndNotify) and with TradeFrameParser, and prints the
+ * average time and heap bytes allocated per frame for each. Allocation is read
+ * from the JVM's per-thread allocation counter.
+ *
+ * Usage:
+ *   java com.tools.TradeParserBench [tradesPerFrame] [frames]
+ */
+public class TradeParserBench {
+    private static final String[] SYMBOLS = {
+            "AAPL", "MSFT", "NVDA", "AMZN", "GOOGL", "META", "TSLA", "BINANCE:BTCUSDT"
+    };
+
+    private static double sink;
+
+    public static void main(String[] args) {
+        int tradesPerFrame = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int frames = args.length > 1 ? Integer.parseInt(args[1]) : 500_000;
+
+        String[] msgs = new String[256];
+        Random rnd = new Random(42);
+        for (int i = 0; i < msgs.length; i++) msgs[i] = frame(rnd, tradesPerFrame);
+
+        com.sun.management.ThreadMXBean mx =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        TradeFrameParser parser = new TradeFrameParser();
+        TradeFrameParser.Sink onTrade = t -> sink += t.price + t.volume + t.timestamp + t.symbol.length();
+
+        // warm up both paths
+        run(msgs, frames / 5, null, null);
+        run(msgs, frames / 5, parser, onTrade);
+
+        long[] gson = measure(mx, msgs, frames, null, null);
+        long[] streaming = measure(mx, msgs, frames, parser, onTrade);
+
+        System.out.println("==================================================");
+        System.out.printf("Trade frames, %d trades/frame, %d frames%n", tradesPerFrame, frames);
+        System.out.printf("  Gson tree       : %8.2f us/frame  %10.1f B/frame%n",
+                gson[0] / 1e3 / frames, gson[1] / (double) frames);
+        System.out.printf("  TradeFrameParser: %8.2f us/frame  %10.1f B/frame%n",
+                streaming[0] / 1e3 / frames, streaming[1] / (double) frames);
+        System.out.printf("  speedup         : %8.2fx%n", gson[0] / (double) streaming[0]);
+        System.out.println("==================================================");
+    }
+
+    // {elapsed ns, allocated bytes}
+    private static long[] measure(com.sun.management.ThreadMXBean mx, String[] msgs, int frames,
+                                  TradeFrameParser parser, TradeFrameParser.Sink onTrade) {
+        long tid = Thread.currentThread().threadId();
+        long b0 = mx.getThreadAllocatedBytes(tid);
+        long t0 = System.nanoTime();
+        run(msgs, frames, parser, onTrade);
+        long elapsed = System.nanoTime() - t0;
+        return new long[] { elapsed, mx.getThreadAllocatedBytes(tid) - b0 };
+    }
+
+    private static void run(String[] msgs, int frames, TradeFrameParser parser, TradeFrameParser.Sink onTrade) {
+        for (int i = 0; i < frames; i++) {
+            String msg = msgs[i & (msgs.length - 1)];
+            if (parser != null) parser.parse(msg, onTrade);
+            else gson(msg);
+        }
+    }
+
+    // mirrors the Gson decode WebSocketClient used before TradeFrameParser
+    private static void gson(String msg) {
+        JsonObject obj = JsonParser.parseString(msg).getAsJsonObject();
+        if (!obj.has("data")) return;
+        for (JsonElement el : obj.getAsJsonArray("data")) {
+            JsonObject trade = el.getAsJsonObject();
+            double price = trade.get("p").getAsDouble();
+            String symbol = trade.get("s").getAsString();
+            long ts = trade.get("t").getAsLong();
+            double volume = trade.get("v").getAsDouble();
+            sink += price + volume + ts + symbol.length();
+        }
+    }
+
+    private static String frame(Random rnd, int trades) {
+        StringBuilder sb = new StringBuilder("{\"data\":[");
+        for (int i = 0; i < trades; i++) {
+            if (i > 0) sb.append(',');
+            String sym = SYMBOLS[rnd.nextInt(SYMBOLS.length)];
+            double price = Math.round((50 + rnd.nextDouble() * 500) * 100) / 100.0;
+            sb.append("{\"c\":[\"1\",\"12\"],\"p\":").append(price)
+              .append(",\"s\":\"").append(sym)
+              .append("\",\"t\":").append(1_760_000_000_000L + rnd.nextInt(1_000_000))
+              .append(",\"v\":").append(1 + rnd.nextInt(500))
+              .append('}');
+        }
+        return sb.append("],\"type\":\"trade\"}").toString();
+    }
+}
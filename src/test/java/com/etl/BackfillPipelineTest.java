@@ -0,0 +1,212 @@
+package com.etl;
+
+import com.models.Database;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSession;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.Authenticator;
+import java.net.CookieHandler;
+import java.net.ProxySelector;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BackfillPipelineTest {
+
+    @Test
+    void fetchesEveryChunkAndCommitsAllRows() throws Exception {
+        // one bar per trading day the request asks for
+        StubClient http = new StubClient(200);
+        try (Database db = new Database(":memory:");
+             BackfillPipeline p = new BackfillPipeline(db, http, () -> { }, BackfillPipelineTest::url)) {
+            var gaps = List.of(
+                    range("2025-01-02", "2025-03-31"),  // 4 chunks of up to 30 calendar days
+                    range("2025-06-02", "2025-06-06"));
+
+            int rows = p.submit("AAPL", gaps).get(5, TimeUnit.SECONDS);
+
+            TradingCalendar cal = TradingCalendar.nyse();
+            int expected = cal.countTradingDays(LocalDate.parse("2025-01-02"), LocalDate.parse("2025-03-31"))
+                    + cal.countTradingDays(LocalDate.parse("2025-06-02"), LocalDate.parse("2025-06-06"));
+            assertEquals(expected, rows);
+            assertEquals(5, http.requests);
+            var st = p.stats();
+            assertEquals(5, st.chunksFetched());
+            assertEquals(expected, st.rowsWritten());
+            assertTrue(st.commits() >= 1);
+            assertEquals(expected, db.getCandleSlice("AAPL", 1, "day", 0, Long.MAX_VALUE).size());
+        }
+    }
+
+    @Test
+    void failsTheJobOnAnErrorStatus() throws Exception {
+        try (Database db = new Database(":memory:");
+             BackfillPipeline p = new BackfillPipeline(db, new StubClient(403), () -> { }, BackfillPipelineTest::url)) {
+            var job = p.submit("AAPL", List.of(range("2025-01-02", "2025-01-10")));
+            ExecutionException ex = assertThrows(ExecutionException.class, () -> job.get(5, TimeUnit.SECONDS));
+            assertTrue(ex.getCause().getMessage().contains("[HistoricalService] 403"));
+            assertTrue(db.loadBackfillJobs().isEmpty(), "a permanent failure drops the saved job");
+        }
+    }
+
+    @Test
+    void resumesOnlyTheChunksASavedJobHadLeft() throws Exception {
+        try (Database db = new Database(":memory:")) {
+            long jan = LocalDate.parse("2025-01-02").toEpochDay();
+            long feb = LocalDate.parse("2025-02-03").toEpochDay();
+            long mar = LocalDate.parse("2025-03-03").toEpochDay();
+            long id = db.createBackfillJob("AAPL", 1, "day", List.of(
+                    new Database.BackfillChunk(jan, jan + 29, 0, 0),
+                    new Database.BackfillChunk(feb, feb + 24, 0, 0),
+                    new Database.BackfillChunk(mar, mar + 28, 0, 0)));
+            db.completeBackfillChunk(id, jan);
+            db.deferBackfillChunk(id, mar, 8, Long.MAX_VALUE, true); // out of attempts last run
+
+            List<Database.BackfillJob> saved = db.loadBackfillJobs();
+            assertEquals(1, saved.size());
+            assertEquals(2, saved.get(0).chunks().size());
+            assertEquals(0, saved.get(0).chunks().get(1).attempts(), "failed chunks start over");
+
+            StubClient http = new StubClient(200);
+            try (BackfillPipeline p = new BackfillPipeline(db, http, () -> { }, BackfillPipelineTest::url)) {
+                p.resume(saved.get(0), BackfillScheduler.Priority.BACKGROUND, null).get(5, TimeUnit.SECONDS);
+            }
+            assertEquals(List.of("/AAPL/2025-02-03/2025-02-27", "/AAPL/2025-03-03/2025-03-31"),
+                    http.paths.stream().sorted().toList());
+            assertTrue(db.loadBackfillJobs().isEmpty(), "a finished job is deleted");
+        }
+    }
+
+    @Test
+    void retriesAChunkWhoseBodyIsCutOff() throws Exception {
+        StubClient http = new StubClient(200);
+        http.resets = 1;
+        try (Database db = new Database(":memory:");
+             BackfillPipeline p = new BackfillPipeline(db, http, () -> { }, BackfillPipelineTest::url)) {
+            p.retryBaseMs = 10;
+            int rows = p.submit("AAPL", List.of(range("2025-06-02", "2025-06-06"))).get(5, TimeUnit.SECONDS);
+
+            assertEquals(5, rows);
+            assertEquals(2, http.requests);
+            assertTrue(db.loadBackfillJobs().isEmpty(), "the job finished rather than being dropped");
+        }
+    }
+
+    @Test
+    void countsRowsOfARefetchedChunkOnce() throws Exception {
+        StubClient http = new StubClient(200);
+        http.resets = 1;
+        try (Database db = new Database(":memory:");
+             BackfillPipeline p = new BackfillPipeline(db, http, () -> { }, BackfillPipelineTest::url)) {
+            p.retryBaseMs = 10;
+            p.batchRows = 1; // rows before the cut are committed by the first attempt
+            int rows = p.submit("AAPL", List.of(range("2025-06-02", "2025-06-06"))).get(5, TimeUnit.SECONDS);
+
+            assertEquals(5, rows);
+            assertEquals(5, p.stats().rowsWritten());
+            assertEquals(5, db.getCandleSlice("AAPL", 1, "day", 0, Long.MAX_VALUE).size());
+        }
+    }
+
+    private static HistoricalService.Range range(String from, String to) {
+        return new HistoricalService.Range(HistoricalService.Timespan.DAY, 1,
+                LocalDate.parse(from), LocalDate.parse(to));
+    }
+
+    static String url(String symbol, int mult, HistoricalService.Timespan ts, LocalDate from, LocalDate to) {
+        return "http://localhost/" + symbol + "/" + from + "/" + to;
+    }
+
+    // answers with a polygon-like body holding one bar per trading day in the requested range
+    static final class StubClient extends HttpClient {
+        final int status;
+        final List<String> paths = new CopyOnWriteArrayList<>();
+        volatile int requests;
+        int resets; // responses whose connection drops halfway through the body
+
+        StubClient(int status) { this.status = status; }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public synchronized <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest req, HttpResponse.BodyHandler<T> h) {
+            requests++;
+            paths.add(req.uri().getPath());
+            String[] parts = req.uri().getPath().split("/");
+            LocalDate from = LocalDate.parse(parts[2]), to = LocalDate.parse(parts[3]);
+            StringBuilder sb = new StringBuilder("{\"ticker\":\"AAPL\",\"results\":[");
+            TradingCalendar cal = TradingCalendar.nyse();
+            boolean first = true;
+            for (LocalDate d = from; !d.isAfter(to); d = d.plusDays(1)) {
+                if (!cal.isTradingDay(d)) continue;
+                if (!first) sb.append(',');
+                first = false;
+                long t = d.atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+                sb.append("{\"v\":100,\"vw\":1.5,\"o\":1,\"c\":2,\"h\":3,\"l\":0.5,\"t\":").append(t).append('}');
+            }
+            sb.append("],\"status\":\"OK\"}");
+            byte[] body = sb.toString().getBytes(StandardCharsets.UTF_8);
+            boolean reset = resets > 0;
+            if (reset) resets--;
+            HttpResponse<InputStream> resp = new Stub(req, status, body, reset);
+            return CompletableFuture.completedFuture((HttpResponse<T>) resp);
+        }
+
+        @Override
+        public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest req, HttpResponse.BodyHandler<T> h,
+                                                                HttpResponse.PushPromiseHandler<T> p) {
+            return sendAsync(req, h);
+        }
+
+        @Override
+        public <T> HttpResponse<T> send(HttpRequest req, HttpResponse.BodyHandler<T> h) throws IOException {
+            throw new IOException("not used");
+        }
+
+        @Override public Optional<CookieHandler> cookieHandler() { return Optional.empty(); }
+        @Override public Optional<Duration> connectTimeout() { return Optional.empty(); }
+        @Override public Redirect followRedirects() { return Redirect.NEVER; }
+        @Override public Optional<ProxySelector> proxy() { return Optional.empty(); }
+        @Override public SSLContext sslContext() { return null; }
+        @Override public SSLParameters sslParameters() { return null; }
+        @Override public Optional<Authenticator> authenticator() { return Optional.empty(); }
+        @Override public Version version() { return Version.HTTP_1_1; }
+        @Override public Optional<Executor> executor() { return Optional.empty(); }
+    }
+
+    private record Stub(HttpRequest request, int statusCode, byte[] bytes, boolean reset)
+            implements HttpResponse<InputStream> {
+        @Override public Optional<HttpResponse<InputStream>> previousResponse() { return Optional.empty(); }
+        @Override public HttpHeaders headers() { return HttpHeaders.of(Map.of(), (a, b) -> true); }
+        @Override public InputStream body() {
+            if (!reset) return new ByteArrayInputStream(bytes);
+            return new SequenceInputStream(new ByteArrayInputStream(bytes, 0, bytes.length / 2), new InputStream() {
+                @Override public int read() throws IOException { throw new IOException("Connection reset"); }
+            });
+        }
+        @Override public Optional<SSLSession> sslSession() { return Optional.empty(); }
+        @Override public URI uri() { return request.uri(); }
+        @Override public HttpClient.Version version() { return HttpClient.Version.HTTP_1_1; }
+    }
+}
@@ -0,0 +1,145 @@
+package com.etl;
+
+import com.models.Database;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BackfillSchedulerTest {
+
+    @Test
+    void sendsVisibleWorkAheadOfQueuedBackgroundWork() throws Exception {
+        BackfillPipelineTest.StubClient http = new BackfillPipelineTest.StubClient(200);
+        Semaphore tokens = new Semaphore(0);
+        CountDownLatch waiting = new CountDownLatch(1);
+        BackfillPipeline.Gate gate = () -> {
+            waiting.countDown();
+            tokens.acquire();
+        };
+        try (Database db = new Database(":memory:");
+             BackfillPipeline p = new BackfillPipeline(db, http, gate, BackfillPipelineTest::url)) {
+            BackfillScheduler s = new BackfillScheduler(p, (sym, r) -> List.of(r));
+            List<BackfillScheduler.Progress> seen = new CopyOnWriteArrayList<>();
+            s.addProgressListener(seen::add);
+
+            var msft = s.request("MSFT", range("2025-01-02", "2025-03-31"), BackfillScheduler.Priority.BACKGROUND);
+            assertTrue(waiting.await(5, TimeUnit.SECONDS)); // first MSFT chunk is at the gate
+            var aapl = s.request("AAPL", range("2025-06-02", "2025-06-06"), BackfillScheduler.Priority.VISIBLE);
+            tokens.release(100);
+
+            assertEquals(5, aapl.get(5, TimeUnit.SECONDS));
+            msft.get(5, TimeUnit.SECONDS);
+
+            List<String> symbols = new ArrayList<>();
+            for (String path : http.paths) symbols.add(path.split("/")[1]);
+            assertEquals(List.of("MSFT", "AAPL", "MSFT", "MSFT", "MSFT"), symbols);
+
+            var last = seen.stream().filter(pr -> pr.symbol().equals("AAPL") && pr.finished()).findFirst().orElseThrow();
+            assertEquals(1, last.chunksDone());
+            assertEquals(1, last.chunksTotal());
+            assertEquals(5, last.rows());
+        }
+    }
+
+    @Test
+    void overlappingRequestsOnlyFetchTheUncoveredPart() throws Exception {
+        BackfillPipelineTest.StubClient http = new BackfillPipelineTest.StubClient(200);
+        Semaphore tokens = new Semaphore(0);
+        try (Database db = new Database(":memory:");
+             BackfillPipeline p = new BackfillPipeline(db, http, tokens::acquire, BackfillPipelineTest::url)) {
+            BackfillScheduler s = new BackfillScheduler(p, (sym, r) -> List.of(r));
+
+            var first = s.request("AAPL", range("2025-01-02", "2025-01-31"), BackfillScheduler.Priority.WATCHLIST);
+            var second = s.request("AAPL", range("2025-01-15", "2025-02-14"), BackfillScheduler.Priority.VISIBLE);
+            tokens.release(100);
+
+            second.get(5, TimeUnit.SECONDS);
+            assertTrue(first.isDone());
+            assertEquals(List.of("/AAPL/2025-01-02/2025-01-31", "/AAPL/2025-02-03/2025-02-14"), http.paths);
+        }
+    }
+
+    @Test
+    void backgroundWorkWaitsOutInteractiveRequests() throws Exception {
+        BackfillPipelineTest.StubClient http = new BackfillPipelineTest.StubClient(200);
+        Semaphore tokens = new Semaphore(0);
+        try (Database db = new Database(":memory:");
+             BackfillPipeline p = new BackfillPipeline(db, http, tokens::acquire, BackfillPipelineTest::url)) {
+            BackfillScheduler s = new BackfillScheduler(p, (sym, r) -> List.of(r));
+            s.awaitQuiet(BackfillScheduler.Priority.BACKGROUND); // nothing under way
+
+            var aapl = s.request("AAPL", range("2025-06-02", "2025-06-06"), BackfillScheduler.Priority.VISIBLE);
+            CountDownLatch quiet = new CountDownLatch(1);
+            Thread bg = new Thread(() -> {
+                try {
+                    s.awaitQuiet(BackfillScheduler.Priority.BACKGROUND);
+                    quiet.countDown();
+                } catch (InterruptedException ignored) { }
+            });
+            bg.start();
+            assertFalse(quiet.await(200, TimeUnit.MILLISECONDS));
+
+            tokens.release(100);
+            aapl.get(5, TimeUnit.SECONDS);
+            assertTrue(quiet.await(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void aSlowJobWriteDoesNotHoldTheScheduler() throws Exception {
+        BackfillPipelineTest.StubClient http = new BackfillPipelineTest.StubClient(200);
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try (Database db = new Database(":memory:") {
+                 @Override
+                 public long createBackfillJob(String symbol, int multiplier, String timespan,
+                                               List<BackfillChunk> chunks) throws java.sql.SQLException {
+                     writing.countDown();
+                     try {
+                         release.await();
+                     } catch (InterruptedException e) {
+                         Thread.currentThread().interrupt();
+                     }
+                     return super.createBackfillJob(symbol, multiplier, timespan, chunks);
+                 }
+             };
+             BackfillPipeline p = new BackfillPipeline(db, http, () -> { }, BackfillPipelineTest::url)) {
+            BackfillScheduler s = new BackfillScheduler(p, (sym, r) -> List.of(r));
+            List<java.util.concurrent.CompletableFuture<Integer>> requested = new CopyOnWriteArrayList<>();
+            Thread t = new Thread(() -> {
+                try {
+                    requested.add(s.request("AAPL", range("2025-06-02", "2025-06-06"),
+                            BackfillScheduler.Priority.BACKGROUND));
+                } catch (java.sql.SQLException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            t.start();
+            assertTrue(writing.await(5, TimeUnit.SECONDS)); // the job insert is stuck
+
+            try {
+                Thread other = new Thread(() -> s.reprioritize("AAPL", BackfillScheduler.Priority.VISIBLE));
+                other.start();
+                other.join(2_000);
+                assertFalse(other.isAlive(), "reprioritize waited on the job insert");
+            } finally {
+                release.countDown();
+            }
+            t.join(5_000);
+            assertEquals(5, requested.get(0).get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    private static HistoricalService.Range range(String from, String to) {
+        return new HistoricalService.Range(HistoricalService.Timespan.DAY, 1,
+                LocalDate.parse(from), LocalDate.parse(to));
+    }
+}
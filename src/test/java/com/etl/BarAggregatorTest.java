@@ -0,0 +1,135 @@
+package com.etl;
+
+import com.models.CandleStore;
+import com.models.Database;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BarAggregatorTest {
+    private static final long T0 = 1_714_060_800_000L; // minute-aligned
+
+    @Test
+    void rollsTradesIntoMinuteBarsAndFlushesCompletedOnes() throws Exception {
+        try (Database db = new Database(":memory:")) {
+            BarAggregator agg = new BarAggregator(db);
+
+            agg.onTrade("AAPL", 10.0, T0 + 1_000, 5);
+            agg.onTrade("AAPL", 12.0, T0 + 20_000, 1);
+            agg.onTrade("AAPL", 9.0, T0 + 40_000, 2);
+            agg.onTrade("AAPL", 11.0, T0 + 59_999, 3);
+            agg.onTrade("MSFT", 50.0, T0 + 5_000, 1);
+            agg.onTrade("AAPL", 13.0, T0 + 60_000, 4);   // opens the next minute
+            agg.onTrade("AAPL", 99.0, T0 + 30_000, 1);   // late for a closed bar
+
+            // AAPL's first bar is complete; MSFT's closes once its minute has passed
+            assertEquals(2, agg.flush(T0 + 65_000));
+            assertEquals(1, agg.lateTrades());
+
+            CandleStore.Slice rows = db.getCandleSlice("AAPL", 1, "minute", T0, T0 + 120_000);
+            assertEquals(1, rows.size(), "the open bar is not written yet");
+            assertEquals(T0, rows.time(0));
+            assertEquals(10.0, rows.open(0));
+            assertEquals(12.0, rows.high(0));
+            assertEquals(9.0, rows.low(0));
+            assertEquals(11.0, rows.close(0));
+            assertEquals(11.0, rows.volume(0));
+
+            agg.close(); // writes the open bar
+            rows = db.getCandleSlice("AAPL", 1, "minute", T0 + 60_000, T0 + 60_000);
+            assertEquals(1, rows.size());
+            assertEquals(13.0, rows.close(0));
+            assertEquals(3, agg.barsWritten());
+        }
+    }
+
+    @Test
+    void tradesForAFlushedMinuteDoNotOverwriteIt() throws Exception {
+        try (Database db = new Database(":memory:")) {
+            BarAggregator agg = new BarAggregator(db);
+            agg.onTrade("MSFT", 50.0, T0 + 5_000, 10);
+            agg.onTrade("MSFT", 52.0, T0 + 30_000, 10);
+            assertEquals(1, agg.flush(T0 + 65_000));
+
+            agg.onTrade("MSFT", 40.0, T0 + 50_000, 1); // arrives after its minute was flushed
+            assertEquals(1, agg.lateTrades());
+            assertEquals(0, agg.flush(T0 + 200_000));
+            CandleStore.Slice rows = db.getCandleSlice("MSFT", 1, "minute", T0, T0);
+            assertEquals(1, rows.size());
+            assertEquals(50.0, rows.open(0));
+            assertEquals(50.0, rows.low(0));
+            assertEquals(20.0, rows.volume(0));
+        }
+    }
+
+    @Test
+    void aBarWrittenBeforeARestartIsCompletedAfterIt() throws Exception {
+        try (Database db = new Database(":memory:")) {
+            BarAggregator before = new BarAggregator(db);
+            before.onTrade("AAPL", 10.0, T0 + 1_000, 5);
+            before.onTrade("AAPL", 12.0, T0 + 10_000, 1);
+            before.close(); // partial bar
+
+            BarAggregator after = new BarAggregator(db);
+            after.onTrade("AAPL", 8.0, T0 + 40_000, 2);
+            after.onTrade("AAPL", 11.0, T0 + 50_000, 3);
+            after.close();
+
+            CandleStore.Slice rows = db.getCandleSlice("AAPL", 1, "minute", T0, T0);
+            assertEquals(1, rows.size());
+            assertEquals(10.0, rows.open(0));
+            assertEquals(12.0, rows.high(0));
+            assertEquals(8.0, rows.low(0));
+            assertEquals(11.0, rows.close(0));
+            assertEquals(11.0, rows.volume(0));
+        }
+    }
+
+    @Test
+    void replayingASessionLeavesCompletedBarsAlone() throws Exception {
+        try (Database db = new Database(":memory:")) {
+            for (int run = 0; run < 2; run++) {
+                BarAggregator agg = new BarAggregator(db);
+                agg.onTrade("AAPL", 10.0, T0 + 1_000, 5);
+                agg.onTrade("AAPL", 12.0, T0 + 30_000, 1);
+                agg.onTrade("AAPL", 13.0, T0 + 60_000, 4); // completes the first minute
+                agg.flush(T0 + 200_000);
+                agg.close();
+            }
+
+            CandleStore.Slice rows = db.getCandleSlice("AAPL", 1, "minute", T0, T0 + 60_000);
+            assertEquals(2, rows.size());
+            assertEquals(6.0, rows.volume(0), "written once, not summed per run");
+            assertEquals(4.0, rows.volume(1));
+        }
+    }
+
+    @Test
+    void anOverlappingFeedAfterARestartCountsEachTradeOnce() throws Exception {
+        try (Database db = new Database(":memory:")) {
+            BarAggregator before = new BarAggregator(db);
+            before.onTrade("AAPL", 10.0, T0 + 1_000, 5);
+            before.onTrade("AAPL", 12.0, T0 + 10_000, 1);
+            before.close(); // partial bar
+
+            BarAggregator after = new BarAggregator(db);
+            after.onTrade("AAPL", 10.0, T0 + 1_000, 5);   // sent again by the feed
+            after.onTrade("AAPL", 12.0, T0 + 10_000, 1);
+            after.onTrade("AAPL", 11.0, T0 + 50_000, 3);
+            assertEquals(2, after.lateTrades());
+            assertEquals(1, after.flush(T0 + 65_000));    // now final
+            after.close();
+
+            BarAggregator again = new BarAggregator(db);
+            again.onTrade("AAPL", 9.0, T0 + 55_000, 7);   // a replayed tail changes nothing
+            again.close();
+
+            CandleStore.Slice rows = db.getCandleSlice("AAPL", 1, "minute", T0, T0);
+            assertEquals(1, rows.size());
+            assertEquals(10.0, rows.open(0));
+            assertEquals(10.0, rows.low(0));
+            assertEquals(11.0, rows.close(0));
+            assertEquals(9.0, rows.volume(0));
+        }
+    }
+}
@@ -1,9 +1,9 @@
 package com.etl;
 
+import com.models.CandleStore;
 import com.models.Database;
 import com.etl.finnhub.WebSocketClient;
 import org.junit.jupiter.api.Test;
-import java.sql.ResultSet;
 import static org.junit.jupiter.api.Assertions.*;
 
 class FinnhubClientParserTest {
@@ -22,19 +22,15 @@ class FinnhubClientParserTest {
             // parse sample and store into the in-memory DB for assertions
             WebSocketClient.parseAndStore(sample, db);
 
-            try (ResultSet rs = db.getCandles("AAPL", 1, "day", 0, Long.MAX_VALUE)) {
-                assertTrue(rs.next());
-                assertEquals(1714060800123L, rs.getLong("timestamp"));
-                assertEquals(185.12, rs.getDouble("close"), 1e-9);
-                assertEquals(100L, rs.getLong("volume"));
+            CandleStore.Slice rows = db.getCandleSlice("AAPL", 1, "day", 0, Long.MAX_VALUE);
+            assertEquals(2, rows.size());
+            assertEquals(1714060800123L, rows.time(0));
+            assertEquals(185.12, rows.close(0), 1e-9);
+            assertEquals(100, rows.volume(0), 1e-9);
 
-                assertTrue(rs.next());
-                assertEquals(1714060800456L, rs.getLong("timestamp"));
-                assertEquals(185.15, rs.getDouble("close"), 1e-9);
-                assertEquals(50L, rs.getLong("volume"));
-
-                assertFalse(rs.next());
-            }
+            assertEquals(1714060800456L, rows.time(1));
+            assertEquals(185.15, rows.close(1), 1e-9);
+            assertEquals(50, rows.volume(1), 1e-9);
 
         }
     }
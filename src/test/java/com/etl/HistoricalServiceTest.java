@@ -5,10 +5,14 @@ import com.google.gson.JsonObject;
 import com.google.gson.JsonArray;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.net.http.HttpClient;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -19,7 +23,7 @@ class HistoricalServiceTest {
     void ensureRange_insertsDailyBars() throws Exception {
         HttpClient mockHttp = mock(HttpClient.class);
         @SuppressWarnings("unchecked")
-        HttpResponse<String> mockResp = (HttpResponse<String>) mock(HttpResponse.class);
+        HttpResponse<InputStream> mockResp = (HttpResponse<InputStream>) mock(HttpResponse.class);
 
         when(mockResp.statusCode()).thenReturn(200);
         // Build a tiny Polygon-like payload with two “daily candles”
@@ -34,8 +38,9 @@ class HistoricalServiceTest {
         results.add(candle(d2, 106, 115, 101, 112, 1_200_000));
         root.add("results", results);
 
-        when(mockResp.body()).thenReturn(root.toString());
-        when(mockHttp.send(any(), any(HttpResponse.BodyHandler.class))).thenReturn(mockResp);
+        when(mockResp.body()).thenAnswer(inv -> body(root.toString()));
+        when(mockHttp.sendAsync(any(), any(HttpResponse.BodyHandler.class)))
+                .thenAnswer(inv -> CompletableFuture.completedFuture(mockResp));
 
         try (Database db = new Database(":memory:")) {
             HistoricalService.Range range = new HistoricalService.Range(
@@ -50,15 +55,12 @@ class HistoricalServiceTest {
             long latest = db.getLatestTimestamp("AAPL");
             assertEquals(d2, latest);
 
-            try (var rs = db.getCandles("AAPL", 1, "day", 0, Long.MAX_VALUE)) {
-                assertTrue(rs.next());
-                assertEquals(d1, rs.getLong("timestamp"));
-                assertEquals(105.0, rs.getDouble("close"), 1e-9);
-                assertTrue(rs.next());
-                assertEquals(d2, rs.getLong("timestamp"));
-                assertEquals(112.0, rs.getDouble("close"), 1e-9);
-                assertFalse(rs.next());
-            }
+            var rows = db.getCandleSlice("AAPL", 1, "day", 0, Long.MAX_VALUE);
+            assertEquals(2, rows.size());
+            assertEquals(d1, rows.time(0));
+            assertEquals(105.0, rows.close(0), 1e-9);
+            assertEquals(d2, rows.time(1));
+            assertEquals(112.0, rows.close(1), 1e-9);
         }
     }
 
@@ -66,11 +68,12 @@ class HistoricalServiceTest {
     void ensureRange_throwsOnNon200() throws Exception {
         HttpClient mockHttp = mock(HttpClient.class);
         @SuppressWarnings("unchecked")
-        HttpResponse<String> mockResp = (HttpResponse<String>) mock(HttpResponse.class);
+        HttpResponse<InputStream> mockResp = (HttpResponse<InputStream>) mock(HttpResponse.class);
 
         when(mockResp.statusCode()).thenReturn(403);
-        when(mockResp.body()).thenReturn("{\"status\":\"NOT_AUTHORIZED\"}");
-        when(mockHttp.send(any(), any(HttpResponse.BodyHandler.class))).thenReturn(mockResp);
+        when(mockResp.body()).thenAnswer(inv -> body("{\"status\":\"NOT_AUTHORIZED\"}"));
+        when(mockHttp.sendAsync(any(), any(HttpResponse.BodyHandler.class)))
+                .thenAnswer(inv -> CompletableFuture.completedFuture(mockResp));
 
         try (Database db = new Database(":memory:")) {
             HistoricalService.Range range = new HistoricalService.Range(
@@ -87,6 +90,37 @@ class HistoricalServiceTest {
         }
     }
 
+    @Test
+    void findGaps_returnsEveryHoleInOnePass() throws Exception {
+        try (Database db = new Database(":memory:")) {
+            // 2025-03-03 .. 2025-03-21 minus 03-06, 03-07, 03-12 and the last week
+            var rows = new java.util.ArrayList<Database.CandleData>();
+            for (String d : new String[] {"2025-03-03", "2025-03-04", "2025-03-05",
+                    "2025-03-10", "2025-03-11", "2025-03-13", "2025-03-14"}) {
+                long t = LocalDate.parse(d).atStartOfDay(java.time.ZoneOffset.UTC).toInstant().toEpochMilli();
+                rows.add(new Database.CandleData("AAPL", t, 1, 1, 1, 1, 1));
+            }
+            db.insertCandlesBatch("AAPL", 1, "day", rows);
+
+            HistoricalService svc = new HistoricalService(db, mock(HttpClient.class), "test-key", "https://fake");
+            var gaps = svc.findGaps("AAPL", new HistoricalService.Range(
+                    HistoricalService.Timespan.DAY, 1,
+                    LocalDate.parse("2025-03-01"), LocalDate.parse("2025-03-23")));
+
+            assertEquals(3, gaps.size());
+            assertEquals(LocalDate.parse("2025-03-06"), gaps.get(0).from);
+            assertEquals(LocalDate.parse("2025-03-07"), gaps.get(0).to);
+            assertEquals(LocalDate.parse("2025-03-12"), gaps.get(1).from);
+            assertEquals(LocalDate.parse("2025-03-12"), gaps.get(1).to);
+            assertEquals(LocalDate.parse("2025-03-17"), gaps.get(2).from);
+            assertEquals(LocalDate.parse("2025-03-21"), gaps.get(2).to);
+        }
+    }
+
+    private static InputStream body(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
     private static JsonObject candle(long t, double o, double h, double l, double c, long v) {
         var obj = new JsonObject();
         obj.addProperty("t", t);
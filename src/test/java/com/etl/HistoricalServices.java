@@ -0,0 +1,17 @@
+package com.etl;
+
+import com.models.Database;
+
+import java.net.http.HttpClient;
+
+/**
+ * Builds a HistoricalService for tests outside this package, without needing
+ * a Polygon key in the environment.
+ */
+public final class HistoricalServices {
+    private HistoricalServices() { }
+
+    public static HistoricalService forTest(Database db) {
+        return new HistoricalService(db, HttpClient.newHttpClient(), "test-key", "https://fake");
+    }
+}
@@ -0,0 +1,65 @@
+package com.etl;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.etl.MarketSessionService.Session.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class MarketSessionServiceTest {
+
+    private static ZonedDateTime ny(int y, int m, int d, int h, int min) {
+        return ZonedDateTime.of(y, m, d, h, min, 0, 0, MarketSessionService.EXCHANGE_ZONE);
+    }
+
+    @Test
+    void computesSessionsFromTheCalendar() {
+        // Tuesday 2025-03-04
+        assertEquals(CLOSED, MarketSessionService.localSession(ny(2025, 3, 4, 3, 59)));
+        assertEquals(PRE_MARKET, MarketSessionService.localSession(ny(2025, 3, 4, 9, 29)));
+        assertEquals(REGULAR, MarketSessionService.localSession(ny(2025, 3, 4, 9, 30)));
+        assertEquals(POST_MARKET, MarketSessionService.localSession(ny(2025, 3, 4, 16, 0)));
+        assertEquals(CLOSED, MarketSessionService.localSession(ny(2025, 3, 4, 20, 0)));
+        // weekend and Independence Day
+        assertEquals(CLOSED, MarketSessionService.localSession(ny(2025, 3, 8, 12, 0)));
+        assertEquals(CLOSED, MarketSessionService.localSession(ny(2025, 7, 4, 12, 0)));
+        // same instant expressed in UTC
+        assertEquals(REGULAR, MarketSessionService.localSession(
+                ny(2025, 3, 4, 12, 0).withZoneSameInstant(ZoneOffset.UTC)));
+    }
+
+    @Test
+    void notifiesListenersOnTransitions() {
+        MutableClock clock = new MutableClock(ny(2025, 3, 4, 9, 0).toInstant());
+        MarketSessionService svc = new MarketSessionService(clock, null);
+        List<String> seen = new ArrayList<>();
+        svc.addListener((from, to) -> seen.add(from + "->" + to));
+
+        svc.evaluate();
+        clock.now = ny(2025, 3, 4, 9, 31).toInstant();
+        svc.evaluate();
+        svc.evaluate();
+        clock.now = ny(2025, 3, 4, 16, 1).toInstant();
+        svc.evaluate();
+
+        assertEquals(List.of("PRE_MARKET->REGULAR", "REGULAR->POST_MARKET"), seen);
+        assertFalse(svc.isOpen());
+    }
+
+    private static final class MutableClock extends Clock {
+        Instant now;
+
+        MutableClock(Instant now) { this.now = now; }
+
+        @Override public ZoneId getZone() { return ZoneOffset.UTC; }
+        @Override public Clock withZone(ZoneId zone) { return this; }
+        @Override public Instant instant() { return now; }
+    }
+}
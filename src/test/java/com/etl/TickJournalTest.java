@@ -0,0 +1,64 @@
+package com.etl;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TickJournalTest {
+    private static final long T0 = 1_714_060_800_000L;
+
+    @Test
+    void roundTripsTicksAcrossSegmentsAndSeeks() throws Exception {
+        Path dir = Files.createTempDirectory("tick-journal");
+        try {
+            int n = 5_000;
+            // ~100 records per segment so the journal rolls many times
+            try (TickJournal j = new TickJournal(dir, TickJournal.RECORD_BYTES * 101, n)) {
+                for (int i = 0; i < n; i++) {
+                    j.onTrade(i % 2 == 0 ? "AAPL" : "MSFT", 100 + i, T0 + i, i);
+                }
+                j.onTrade("AAPL", 1.0); // untimed ticks are ignored
+            }
+
+            try (TickJournal.Reader r = new TickJournal.Reader(dir)) {
+                int count = 0;
+                for (TickJournal.Tick t; (t = r.next()) != null; count++) {
+                    assertEquals(count % 2 == 0 ? "AAPL" : "MSFT", t.symbol());
+                    assertEquals(T0 + count, t.timestamp());
+                    assertEquals(100.0 + count, t.price());
+                    assertEquals(count, t.volume());
+                }
+                assertEquals(n, count);
+            }
+
+            try (TickJournal.Reader r = new TickJournal.Reader(dir)) {
+                r.seek(T0 + 4_321);
+                TickJournal.Tick t = r.next();
+                assertNotNull(t);
+                assertEquals(T0 + 4_321, t.timestamp());
+                assertEquals("MSFT", t.symbol());
+            }
+
+            // a second session appends new segments and keeps the symbol ids
+            try (TickJournal j = TickJournal.open(dir)) {
+                j.onTrade("MSFT", 1.0, T0 + n, 1);
+                j.onTrade("NVDA", 2.0, T0 + n + 1, 1);
+            }
+            try (TickJournal.Reader r = new TickJournal.Reader(dir)) {
+                r.seek(T0 + n);
+                assertEquals("MSFT", r.next().symbol());
+                assertEquals("NVDA", r.next().symbol());
+                assertNull(r.next());
+            }
+        } finally {
+            try (Stream<Path> walk = Files.walk(dir)) {
+                walk.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+}
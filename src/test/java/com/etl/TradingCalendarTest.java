@@ -0,0 +1,52 @@
+package com.etl;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TradingCalendarTest {
+    private final TradingCalendar cal = TradingCalendar.nyse();
+
+    @Test
+    void knowsNyseHolidaysAndClosures() {
+        assertFalse(cal.isTradingDay(LocalDate.of(2025, 1, 1)));   // New Year's Day
+        assertFalse(cal.isTradingDay(LocalDate.of(2025, 1, 9)));   // day of mourning
+        assertTrue(cal.isTradingDay(LocalDate.of(2026, 1, 9)));    // ...only in 2025
+        assertFalse(cal.isTradingDay(LocalDate.of(2025, 4, 18)));  // Good Friday
+        assertFalse(cal.isTradingDay(LocalDate.of(2026, 7, 3)));   // July 4th on a Saturday
+        assertFalse(cal.isTradingDay(LocalDate.of(2022, 12, 26))); // Christmas on a Sunday
+        assertTrue(cal.isTradingDay(LocalDate.of(2021, 12, 31)));  // Saturday New Year's not observed
+        assertFalse(cal.isTradingDay(LocalDate.of(2025, 3, 8)));   // Saturday
+    }
+
+    @Test
+    void stepsAndCountsAcrossYears() {
+        LocalDate from = LocalDate.of(2024, 12, 20);
+        assertEquals(LocalDate.of(2025, 1, 2), cal.nextTradingDay(LocalDate.of(2025, 1, 1)));
+        assertEquals(LocalDate.of(2024, 12, 31), cal.prevTradingDay(LocalDate.of(2025, 1, 1)));
+        assertEquals(LocalDate.of(2024, 12, 23), cal.plusTradingDays(from, 1));
+        assertEquals(LocalDate.of(2025, 1, 2), cal.plusTradingDays(LocalDate.of(2024, 12, 31), 1));
+        assertEquals(LocalDate.of(2024, 12, 31), cal.plusTradingDays(LocalDate.of(2025, 1, 1), -1));
+        assertEquals(from, cal.plusTradingDays(from, 0));
+
+        // brute force over a few years
+        for (LocalDate start : List.of(from, LocalDate.of(2023, 1, 1), LocalDate.of(2025, 7, 5))) {
+            LocalDate d = start;
+            int seen = 0;
+            for (int i = 0; i < 800; i++, d = d.plusDays(1)) {
+                boolean weekday = d.getDayOfWeek() != DayOfWeek.SATURDAY && d.getDayOfWeek() != DayOfWeek.SUNDAY;
+                if (weekday && cal.isTradingDay(d)) {
+                    seen++;
+                    assertEquals(d, cal.plusTradingDays(start, cal.isTradingDay(start) ? seen - 1 : seen));
+                    assertEquals(cal.nextTradingDay(start), cal.plusTradingDays(d, 1 - seen));
+                }
+                assertEquals(seen, cal.countTradingDays(start, d));
+            }
+        }
+        assertEquals(0, cal.countTradingDays(LocalDate.of(2025, 2, 1), LocalDate.of(2025, 1, 1)));
+    }
+}
@@ -0,0 +1,148 @@
+package com.etl.finnhub;
+
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSession;
+import java.io.IOException;
+import java.net.Authenticator;
+import java.net.CookieHandler;
+import java.net.ProxySelector;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestSchedulerTest {
+
+    @Test
+    void sendsByPriorityWithinTheRateAndDropsCancelledRequests() throws Exception {
+        RecordingClient http = new RecordingClient();
+        // one token, refilled every 100 ms
+        try (RequestScheduler s = new RequestScheduler(http, 1, 600)) {
+            CompletableFuture<HttpResponse<String>> first = s.submit(get("first"), RequestScheduler.Priority.PROFILE);
+            first.get(1, TimeUnit.SECONDS); // takes the only token
+
+            CompletableFuture<HttpResponse<String>> profile = s.submit(get("profile"), RequestScheduler.Priority.PROFILE);
+            CompletableFuture<HttpResponse<String>> dropped = s.submit(get("dropped"), RequestScheduler.Priority.QUOTE);
+            CompletableFuture<HttpResponse<String>> quote = s.submit(get("quote"), RequestScheduler.Priority.QUOTE);
+            CompletableFuture<HttpResponse<String>> search = s.submit(get("search"), RequestScheduler.Priority.SEARCH);
+            dropped.cancel(false);
+
+            CompletableFuture.allOf(profile, quote, search).get(2, TimeUnit.SECONDS);
+
+            assertEquals(List.of("/first", "/search", "/quote", "/profile"), http.paths);
+            assertEquals(200, search.get().statusCode());
+            assertEquals(1, s.cancelled());
+            assertEquals(4, s.sent());
+        }
+    }
+
+    @Test
+    void neverSendsMoreThanAMinutesQuotaInTheFirstMinute() throws Exception {
+        RecordingClient http = new RecordingClient();
+        // the default quota with time sped up 60x: one "minute" lasts a second
+        int perMinute = RequestScheduler.DEFAULT_PER_MINUTE;
+        long t0 = System.nanoTime();
+        try (RequestScheduler s = new RequestScheduler(http, RequestScheduler.DEFAULT_BURST, perMinute * 60)) {
+            for (int i = 0; i < 150; i++) s.submit(get("q" + i), RequestScheduler.Priority.QUOTE);
+            TimeUnit.MILLISECONDS.sleep(1_500);
+        }
+        long minuteEnd = t0 + TimeUnit.SECONDS.toNanos(1);
+        long inFirstMinute = http.sentAt.stream().filter(t -> t < minuteEnd).count();
+        assertTrue(inFirstMinute <= perMinute, inFirstMinute + " sent in the first minute");
+        assertTrue(inFirstMinute >= perMinute / 2, "only " + inFirstMinute + " sent in the first minute");
+    }
+
+    @Test
+    void retriesA429WhoseRetryAfterIsADate() throws Exception {
+        RecordingClient http = new RecordingClient();
+        http.throttle.add("Wed, 21 Oct 2015 07:28:00 GMT"); // in the past: use the default backoff
+        try (RequestScheduler s = new RequestScheduler(http, 5, 600)) {
+            HttpResponse<String> resp = s.submit(get("quote"), RequestScheduler.Priority.QUOTE).get(5, TimeUnit.SECONDS);
+            assertEquals(200, resp.statusCode());
+            assertEquals(1, s.throttled());
+            assertEquals(List.of("/quote", "/quote"), http.paths);
+        }
+    }
+
+    @Test
+    void readsRetryAfterAsSecondsOrADate() {
+        long now = 1_445_412_480_000L; // Wed, 21 Oct 2015 07:28:00 GMT
+        assertEquals(2_500, RequestScheduler.retryAfterMs(headers("2.5"), now));
+        assertEquals(30_000, RequestScheduler.retryAfterMs(headers("Wed, 21 Oct 2015 07:28:30 GMT"), now));
+        assertEquals(1_000, RequestScheduler.retryAfterMs(headers("soon"), now));
+        assertEquals(60_000, RequestScheduler.retryAfterMs(headers("3600"), now));
+    }
+
+    private static HttpHeaders headers(String retryAfter) {
+        return HttpHeaders.of(Map.of("Retry-After", List.of(retryAfter)), (a, b) -> true);
+    }
+
+    private static HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create("http://localhost/" + path)).GET().build();
+    }
+
+    // answers with 429 for each queued Retry-After value, then 200; records the order requests were sent in
+    private static final class RecordingClient extends HttpClient {
+        final List<String> paths = new CopyOnWriteArrayList<>();
+        final List<Long> sentAt = new CopyOnWriteArrayList<>(); // System.nanoTime
+        final Queue<String> throttle = new ConcurrentLinkedQueue<>();
+
+        @Override
+        public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest req, HttpResponse.BodyHandler<T> h) {
+            sentAt.add(System.nanoTime());
+            paths.add(req.uri().getPath());
+            String retryAfter = throttle.poll();
+            HttpResponse<T> resp = retryAfter == null
+                    ? new Resp<>(req, 200, Map.of())
+                    : new Resp<>(req, 429, Map.of("Retry-After", List.of(retryAfter)));
+            return CompletableFuture.completedFuture(resp);
+        }
+
+        @Override
+        public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest req, HttpResponse.BodyHandler<T> h,
+                                                                HttpResponse.PushPromiseHandler<T> p) {
+            return sendAsync(req, h);
+        }
+
+        @Override
+        public <T> HttpResponse<T> send(HttpRequest req, HttpResponse.BodyHandler<T> h) throws IOException {
+            throw new IOException("not used");
+        }
+
+        @Override public Optional<CookieHandler> cookieHandler() { return Optional.empty(); }
+        @Override public Optional<Duration> connectTimeout() { return Optional.empty(); }
+        @Override public Redirect followRedirects() { return Redirect.NEVER; }
+        @Override public Optional<ProxySelector> proxy() { return Optional.empty(); }
+        @Override public SSLContext sslContext() { return null; }
+        @Override public SSLParameters sslParameters() { return null; }
+        @Override public Optional<Authenticator> authenticator() { return Optional.empty(); }
+        @Override public Version version() { return Version.HTTP_1_1; }
+        @Override public Optional<Executor> executor() { return Optional.empty(); }
+    }
+
+    private record Resp<T>(HttpRequest request, int statusCode, Map<String, List<String>> fields)
+            implements HttpResponse<T> {
+        @Override public Optional<HttpResponse<T>> previousResponse() { return Optional.empty(); }
+        @Override public HttpHeaders headers() { return HttpHeaders.of(fields, (a, b) -> true); }
+        @Override public T body() { return null; }
+        @Override public Optional<SSLSession> sslSession() { return Optional.empty(); }
+        @Override public URI uri() { return request.uri(); }
+        @Override public HttpClient.Version version() { return HttpClient.Version.HTTP_1_1; }
+    }
+}
@@ -0,0 +1,90 @@
+package com.etl.finnhub;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    @Test
+    void concurrentCallersShareOneLoadAndThenHitTheCache() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>(60_000);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> flight.get("AAPL", () -> {
+            loads.incrementAndGet();
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "profile";
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<String> follower = flight.submit("AAPL", () -> {
+            loads.incrementAndGet();
+            return "duplicate";
+        });
+        assertFalse(follower.isDone());
+        release.countDown();
+
+        assertEquals("profile", leader.get(5, TimeUnit.SECONDS));
+        assertEquals("profile", follower.get(5, TimeUnit.SECONDS));
+        assertEquals("profile", flight.get("AAPL", () -> "reloaded"));
+        assertEquals(1, loads.get());
+        assertEquals(new SingleFlight.Stats(1, 1, 1), flight.stats());
+    }
+
+    @Test
+    void failuresAndNullsAreNotCached() {
+        SingleFlight<String, String> flight = new SingleFlight<>(60_000);
+
+        assertThrows(IllegalStateException.class,
+                () -> flight.get("MSFT", () -> { throw new IllegalStateException("HTTP 500"); }));
+        assertNull(flight.get("MSFT", () -> null));
+        assertEquals("ok", flight.get("MSFT", () -> "ok"));
+        assertEquals(3, flight.stats().misses());
+    }
+
+    @Test
+    void anErrorInTheLoaderReleasesCallersThatJoined() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>(60_000);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<Throwable> leader = CompletableFuture.supplyAsync(() -> {
+            try {
+                flight.get("AAPL", () -> {
+                    started.countDown();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    throw new LinkageError("loader");
+                });
+                return null;
+            } catch (Throwable t) {
+                return t;
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> follower = flight.submit("AAPL", () -> "duplicate");
+        release.countDown();
+
+        assertInstanceOf(LinkageError.class, leader.get(5, TimeUnit.SECONDS));
+        ExecutionException e = assertThrows(ExecutionException.class, () -> follower.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(LinkageError.class, e.getCause());
+        assertEquals("ok", flight.get("AAPL", () -> "ok"));
+    }
+}
@@ -0,0 +1,72 @@
+package com.etl.finnhub;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TradeFrameParserTest {
+
+    private record Row(String symbol, double price, long ts, double volume) { }
+
+    private static List<Row> parse(TradeFrameParser parser, String frame) {
+        List<Row> rows = new ArrayList<>();
+        parser.parse(frame, t -> rows.add(new Row(t.symbol, t.price, t.timestamp, t.volume)));
+        return rows;
+    }
+
+    @Test
+    void extractsTradesAndSkipsUnknownFields() {
+        TradeFrameParser parser = new TradeFrameParser();
+        String frame = """
+            {"data":[
+              {"c":["1","12"],"p":185.12,"s":"AAPL","t":1714060800123,"v":100},
+              {"c":null,"p":7296.89,"s":"BINANCE:BTCUSDT","t":1575526691134,"v":0.011467,"x":{"n":[1,{"q":"]}"}]}},
+              {"p":-1.5e2,"s":"ESC\\"D","t":1,"v":2}
+            ],"type":"trade"}
+            """;
+
+        List<Row> rows = parse(parser, frame);
+
+        assertEquals(3, rows.size());
+        assertEquals(new Row("AAPL", 185.12, 1714060800123L, 100.0), rows.get(0));
+        assertEquals(new Row("BINANCE:BTCUSDT", 7296.89, 1575526691134L, 0.011467), rows.get(1));
+        assertEquals(new Row("ESC\"D", -150.0, 1L, 2.0), rows.get(2));
+    }
+
+    @Test
+    void decodesEscapesInSymbols() {
+        TradeFrameParser parser = new TradeFrameParser();
+        String frame = """
+            {"data":[{"p":1,"s":"A\\/B\\u0043\\\\","t":1,"v":1},{"p":2,"s":"AB","t":2,"v":1}],"type":"trade"}
+            """;
+
+        List<Row> rows = parse(parser, frame);
+
+        assertEquals("A/BC\\", rows.get(0).symbol());
+        assertEquals("AB", rows.get(1).symbol());
+    }
+
+    @Test
+    void reusesSymbolStringsAcrossFrames() {
+        TradeFrameParser parser = new TradeFrameParser();
+        String frame = "{\"data\":[{\"p\":1.0,\"s\":\"MSFT\",\"t\":1,\"v\":1}],\"type\":\"trade\"}";
+
+        String first = parse(parser, frame).get(0).symbol();
+        String second = parse(parser, frame).get(0).symbol();
+
+        assertSame(first, second);
+    }
+
+    @Test
+    void ignoresPingsAndIncompleteTrades() {
+        TradeFrameParser parser = new TradeFrameParser();
+
+        assertEquals(0, parser.parse("{\"type\":\"ping\"}", t -> fail("no trades in a ping")));
+        assertEquals(0, parser.parse("{\"data\":[{\"s\":\"AAPL\",\"t\":1}],\"type\":\"trade\"}",
+                t -> fail("trade without a price")));
+        assertThrows(IllegalArgumentException.class, () -> parser.parse("{\"data\":[{\"p\":1", t -> { }));
+    }
+}
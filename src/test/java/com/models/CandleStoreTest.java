@@ -0,0 +1,110 @@
+package com.models;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CandleStoreTest {
+
+    private static Database.CandleData candle(long t, double close) {
+        return new Database.CandleData("AAPL", t, close - 1, close + 1, close - 2, close, 1000);
+    }
+
+    @Test
+    void sliceReadsBuildFromPricesAndFollowWrites() throws Exception {
+        Path dir = Files.createTempDirectory("marketsim-candles");
+        String dbFile = dir.resolve("test.db").toString();
+
+        try (Database db = new Database(dbFile)) {
+            db.insertCandlesBatch("AAPL", 1, "day", List.of(candle(1000L, 10), candle(2000L, 20), candle(3000L, 30)));
+
+            // first read builds the segment from the prices table
+            CandleStore.Slice all = db.getCandleSlice("AAPL", 1, "day", 0L, Long.MAX_VALUE);
+            assertEquals(3, all.size());
+            assertEquals(1000L, all.time(0));
+            assertEquals(30.0, all.close(2), 1e-9);
+
+            // appends, backfills and replacements are merged into the segment
+            db.insertCandlesBatch("AAPL", 1, "day", List.of(candle(500L, 5), candle(2000L, 21), candle(4000L, 40)));
+            db.insertCandle("AAPL", 1, "day", 5000L, 49, 51, 48, 50, 10);
+
+            CandleStore.Slice merged = db.getCandleSlice("AAPL", 1, "day", 0L, Long.MAX_VALUE);
+            assertEquals(6, merged.size());
+            assertEquals(500L, merged.time(0));
+            assertEquals(21.0, merged.close(2), 1e-9);
+            assertEquals(50.0, merged.close(5), 1e-9);
+
+            // range bounds are inclusive on both ends
+            CandleStore.Slice mid = db.getCandleSlice("AAPL", 1, "day", 2000L, 4000L);
+            assertEquals(3, mid.size());
+            assertEquals(2000L, mid.time(0));
+            assertEquals(4000L, mid.time(2));
+
+            assertTrue(db.getCandleSlice("AAPL", 1, "day", 6000L, 9000L).isEmpty());
+            assertTrue(db.getCandleSlice("MSFT", 1, "day", 0L, Long.MAX_VALUE).isEmpty());
+        }
+
+        // a reopened database maps the existing segment
+        try (Database db = new Database(dbFile)) {
+            CandleStore.Slice reopened = db.getCandleSlice("AAPL", 1, "day", 0L, Long.MAX_VALUE);
+            assertEquals(6, reopened.size());
+            assertEquals(40.0, reopened.close(4), 1e-9);
+        }
+    }
+
+    @Test
+    void appendsInPlaceAndRebuildsASegmentThePricesTableHasMovedPast() throws Exception {
+        Path dir = Files.createTempDirectory("marketsim-candles");
+        String dbFile = dir.resolve("test.db").toString();
+
+        try (Database db = new Database(dbFile)) {
+            db.insertCandlesBatch("AAPL", 1, "day", List.of(candle(1000L, 10), candle(2000L, 20)));
+            assertEquals(2, db.getCandleSlice("AAPL", 1, "day", 0L, Long.MAX_VALUE).size());
+
+            // new rows and a rewrite of the last row land in the loaded segment
+            db.insertCandle("AAPL", 1, "day", 2000L, 21, 23, 20, 22, 5);
+            db.insertCandlesBatch("AAPL", 1, "day", List.of(candle(3000L, 30), candle(4000L, 40)));
+            CandleStore.Slice all = db.getCandleSlice("AAPL", 1, "day", 0L, Long.MAX_VALUE);
+            assertEquals(4, all.size());
+            assertEquals(22.0, all.close(1), 1e-9);
+            assertEquals(40.0, all.close(3), 1e-9);
+
+            // more rows than the segment has room for move it to a bigger one
+            for (int i = 5; i <= 600; i++) db.insertCandle("AAPL", 1, "day", i * 1000L, i - 1, i + 1, i - 2, i, 1);
+            assertEquals(600, db.getCandleSlice("AAPL", 1, "day", 0L, Long.MAX_VALUE).size());
+        }
+
+        // a write that committed without reaching the segment, as after a crash
+        try (Connection c = DriverManager.getConnection("jdbc:sqlite:" + dbFile);
+                Statement st = c.createStatement()) {
+            st.executeUpdate("""
+                    INSERT INTO prices(symbol_id, series_id, timestamp, open, high, low, close, volume)
+                    SELECT symbol_id, series_id, 601000, 1, 1, 1, 601, 1 FROM prices LIMIT 1
+                    """);
+        }
+
+        try (Database db = new Database(dbFile)) {
+            CandleStore.Slice reopened = db.getCandleSlice("AAPL", 1, "day", 0L, Long.MAX_VALUE);
+            assertEquals(601, reopened.size());
+            assertEquals(601.0, reopened.close(600), 1e-9);
+        }
+    }
+
+    @Test
+    void inMemoryDatabaseFallsBackToPricesTable() throws Exception {
+        try (Database db = new Database(":memory:")) {
+            db.insertCandlesBatch("AAPL", 1, "day", List.of(candle(1000L, 10), candle(2000L, 20)));
+
+            CandleStore.Slice slice = db.getCandleSlice("AAPL", 1, "day", 1500L, 2500L);
+            assertEquals(1, slice.size());
+            assertEquals(20.0, slice.close(0), 1e-9);
+        }
+    }
+}
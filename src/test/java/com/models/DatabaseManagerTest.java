@@ -2,7 +2,12 @@ package com.models;
 
 
 import org.junit.jupiter.api.Test;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
 import java.sql.ResultSet;
+import java.sql.Statement;
 import static org.junit.jupiter.api.Assertions.*;
 
 class DatabaseManagerTest {
@@ -15,17 +20,13 @@ class DatabaseManagerTest {
 
             assertEquals(2000L, db.getLatestTimestamp("AAPL"));
 
-            try (ResultSet rs = db.getCandles("AAPL", 1, "day", 0L, 3000L)) {
-                assertTrue(rs.next());
-                assertEquals(1000L, rs.getLong("timestamp"));
-                assertEquals(10.5, rs.getDouble("close"), 1e-9);
+            CandleStore.Slice rows = db.getCandleSlice("AAPL", 1, "day", 0L, 3000L);
+            assertEquals(2, rows.size());
+            assertEquals(1000L, rows.time(0));
+            assertEquals(10.5, rows.close(0), 1e-9);
 
-                assertTrue(rs.next());
-                assertEquals(2000L, rs.getLong("timestamp"));
-                assertEquals(11.9, rs.getDouble("close"), 1e-9);
-
-                assertFalse(rs.next());
-            }
+            assertEquals(2000L, rows.time(1));
+            assertEquals(11.9, rows.close(1), 1e-9);
         }
     }
 
@@ -36,11 +37,76 @@ class DatabaseManagerTest {
             // REPLACE behavior means this will overwrite rather than duplicate
             db.insertCandle("MSFT", 1, "day", 12345L, 2, 2, 2, 2, 2);
 
-            try (ResultSet rs = db.getCandles("MSFT", 1, "day", 0L, 99999L)) {
-                assertTrue(rs.next());
-                assertEquals(2, rs.getDouble("open"), 1e-9); // updated row
-                assertFalse(rs.next());
-            }
+            CandleStore.Slice rows = db.getCandleSlice("MSFT", 1, "day", 0L, 99999L);
+            assertEquals(1, rows.size());
+            assertEquals(2, rows.open(0), 1e-9); // updated row
+        }
+    }
+
+    @Test
+    void migratesLegacyPricesTable() throws Exception {
+        Path dir = Files.createTempDirectory("marketsim-migrate");
+        String dbFile = dir.resolve("legacy.db").toString();
+
+        // version 0 layout: text keys on every row
+        try (Connection c = DriverManager.getConnection("jdbc:sqlite:" + dbFile);
+             Statement st = c.createStatement()) {
+            st.execute("""
+                    CREATE TABLE prices (
+                    id INTEGER PRIMARY KEY AUTOINCREMENT,
+                    symbol TEXT NOT NULL, timespan TEXT NOT NULL, multiplier INTEGER NOT NULL,
+                    timestamp INTEGER NOT NULL,
+                    open REAL, high REAL, low REAL, close REAL, volume REAL,
+                    UNIQUE(symbol, timespan, multiplier, timestamp))
+                    """);
+            st.execute("INSERT INTO prices(symbol, timespan, multiplier, timestamp, open, high, low, close, volume) "
+                    + "VALUES ('AAPL','day',1,1000,1,2,0,1.5,10), ('AAPL','day',1,2000,2,3,1,2.5,20), "
+                    + "('MSFT','minute',5,1000,7,8,6,7.5,30)");
+        }
+
+        try (Database db = new Database(dbFile)) {
+            // before the copy, reads see the legacy rows alongside new ones
+            db.insertCandle("AAPL", 1, "day", 2000L, 2, 3, 1, 2.75, 25); // newer than the legacy row
+            CandleStore.Slice before = db.getCandleSlice("AAPL", 1, "day", 0L, Long.MAX_VALUE);
+            assertEquals(2, before.size());
+            assertEquals(1.5, before.close(0), 1e-9);
+            assertEquals(2.75, before.close(1), 1e-9);
+            java.util.List<Long> days = new java.util.ArrayList<>();
+            db.scanEpochDays("MSFT", 5, "minute", 0L, Long.MAX_VALUE, days::add);
+            assertEquals(java.util.List.of(0L), days, "legacy rows are not gaps");
+            assertEquals(java.util.List.of("AAPL", "MSFT"), db.listSymbols());
+            assertEquals(2000L, db.getLatestTimestamp("AAPL"));
+            assertEquals(1000L, db.getEarliestTimestamp("MSFT", 5, "minute"));
+            assertEquals(java.util.List.of(1000L, 2000L), db.listTimestamps("AAPL", 1, "day", 0L, 5000L));
+            assertEquals(7.5, db.getCloseAtOrBefore("MSFT", 5000L, 5, "minute"), 1e-9);
+            assertEquals(1.5, db.getFirstClose("AAPL", 1, "day"), 1e-9);
+            assertArrayEquals(new double[] {2.75, 1.5}, db.latestAndPrevClose("AAPL", 1, "day"), 1e-9);
+
+            db.migrateLegacyPrices(); // normally on the maintenance thread; waits for it if already running
+            CandleStore.Slice after = db.getCandleSlice("AAPL", 1, "day", 0L, Long.MAX_VALUE);
+            assertEquals(2, after.size());
+            assertEquals(1.5, after.close(0), 1e-9);
+            assertEquals(2.75, after.close(1), 1e-9);
+            assertEquals(java.util.List.of("AAPL", "MSFT"), db.listSymbols());
+            assertEquals(2000L, db.getLatestTimestamp("AAPL"));
+            assertEquals(7.5, db.getCloseAtOrBefore("MSFT", 5000L, 5, "minute"), 1e-9);
+            assertTrue(Double.isNaN(db.getCloseAtOrBefore("MSFT", 5000L, 1, "day")));
+
+            // new rows land in the same series
+            db.insertCandle("AAPL", 1, "day", 3000L, 3, 4, 2, 3.5, 30);
+            assertEquals(3, db.getCandleSlice("AAPL", 1, "day", 0L, Long.MAX_VALUE).size());
+        }
+
+        try (Connection c = DriverManager.getConnection("jdbc:sqlite:" + dbFile);
+             Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery("SELECT name FROM sqlite_master WHERE name = 'prices_legacy'")) {
+            assertFalse(rs.next());
+        }
+        try (Connection c = DriverManager.getConnection("jdbc:sqlite:" + dbFile);
+             Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery("PRAGMA user_version")) {
+            assertTrue(rs.next());
+            assertEquals(1, rs.getInt(1), "later starts skip the layout checks");
         }
     }
 }
@@ -94,4 +94,56 @@ class DatabaseTradeExecutionTest {
             assertEquals("BUY", trades.get(1).side(), "Earlier trade should be buy");
         }
     }
+
+    @Test
+    void runningTotalsFollowBackdatedTradesAndDeposits() throws Exception {
+        try (var ctx = setupAccount(10_000.0)) {
+            ctx.db().recordOrder(new Order(ctx.account(), "AAPL", Order.side.BUY, 10, 100.0, 2_000_000L));
+            ctx.db().recordOrder(new Order(ctx.account(), "AAPL", Order.side.SELL, 4, 110.0, 4_000_000L));
+            // lands between the two trades above
+            ctx.db().recordOrder(new Order(ctx.account(), "AAPL", Order.side.BUY, 5, 90.0, 3_000_000L));
+            ctx.db().depositCash(ctx.accountId(), 1_000.0, 2_500_000L, "Late deposit");
+
+            List<ModelFacade.TradeRow> trades = ctx.db().listRecentTrades(ctx.accountId(), 10);
+            assertEquals(3, trades.size());
+
+            // newest first: sell @4.0M, buy @3.0M, buy @2.0M
+            assertEquals(11, trades.get(0).posAfter());
+            assertEquals(15, trades.get(1).posAfter());
+            assertEquals(10, trades.get(2).posAfter());
+
+            assertEquals(9_000.0, trades.get(2).cashAfter(), 1e-6);
+            assertEquals(9_550.0, trades.get(1).cashAfter(), 1e-6);
+            assertEquals(9_990.0, trades.get(0).cashAfter(), 1e-6);
+            assertEquals(ctx.db().getAccountCash(ctx.accountId()), trades.get(0).cashAfter(), 1e-6);
+
+            // a full rebuild agrees with the incrementally maintained values
+            ctx.db().rebuildTradeRunningTotals();
+            List<ModelFacade.TradeRow> rebuilt = ctx.db().listRecentTrades(ctx.accountId(), 10);
+            assertEquals(trades, rebuilt);
+        }
+    }
+
+    @Test
+    void cashSnapshotTracksLedgerAndVerifierRepairsDrift() throws Exception {
+        String dbFile = java.nio.file.Files.createTempDirectory("marketsim-cash").resolve("cash.db").toString();
+        try (Database db = new Database(dbFile)) {
+            db.ensureSingletonProfile("JUnit Profile");
+            long accountId = db.getOrCreateAccount("JUnit Account", "USD");
+            Account account = new Account(accountId, "JUnit Account");
+            db.depositCash(accountId, 5_000.0, 1_000_000L, "Initial deposit");
+            db.recordOrder(new Order(account, "AAPL", Order.side.BUY, 10, 100.0, 2_000_000L));
+            db.withdrawCash(accountId, 500.0, 3_000_000L, "Withdrawal");
+            assertEquals(3_500.0, db.getAccountCash(accountId), 1e-6);
+            assertEquals(0, db.verifyAccountBalances());
+
+            try (var c = java.sql.DriverManager.getConnection("jdbc:sqlite:" + dbFile);
+                 var st = c.createStatement()) {
+                st.execute("UPDATE account_balances SET cash = 1 WHERE account_id = " + accountId);
+            }
+            assertEquals(1.0, db.getAccountCash(accountId), 1e-6);
+            assertEquals(1, db.verifyAccountBalances());
+            assertEquals(3_500.0, db.getAccountCash(accountId), 1e-6);
+        }
+    }
 }
@@ -0,0 +1,60 @@
+package com.models;
+
+import com.etl.HistoricalServices;
+import com.etl.finnhub.ClientFacade;
+import com.models.profile.Account;
+import com.models.profile.Profile;
+import com.tools.ReplayTradeSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ModelFacadeTest {
+    private static final long DAY_MS = 86_400_000L;
+    private static final long T0 = 1_700_000_000_000L - 1_700_000_000_000L % DAY_MS;
+
+    @BeforeEach
+    void resetProfileSingleton() throws Exception {
+        Field instance = Profile.class.getDeclaredField("profile");
+        instance.setAccessible(true);
+        instance.set(null, null);
+    }
+
+    @Test
+    void replayLeavesPricesUnchanged() throws Exception {
+        String dbFile = Files.createTempDirectory("marketsim-replay").resolve("replay.db").toString();
+        try (Database db = new Database(dbFile)) {
+            for (int d = 0; d < 3; d++)
+                db.insertCandle("AAPL", 1, "day", T0 + d * DAY_MS, 10, 12, 9, 11, 400);
+        }
+
+        Database db = new Database(dbFile);
+        ReplayTradeSource replay = new ReplayTradeSource(
+                ReplayTradeSource.prices(db, List.of("AAPL"), 1, "day", T0, T0 + 3 * DAY_MS),
+                ReplayTradeSource.AS_FAST_AS_POSSIBLE);
+        ClientFacade client = ClientFacade.offline(replay);
+        Profile profile = Profile.initProfile(new ArrayList<>(List.of(new Account("Replay"))));
+        ModelFacade model = new ModelFacade(db, profile, client, HistoricalServices.forTest(db));
+        client.subscribe("AAPL");
+        replay.start();
+        assertTrue(replay.awaitCompletion(Duration.ofSeconds(5)));
+        assertEquals(12, replay.emitted());
+        model.close(); // would flush any aggregated bars
+
+        try (Database reopened = new Database(dbFile)) {
+            assertEquals(List.of("AAPL"), reopened.listSymbols());
+            assertEquals(0L, reopened.getLatestTimestamp("AAPL", 1, "minute"), "no bars from replayed ticks");
+            assertEquals(List.of(T0, T0 + DAY_MS, T0 + 2 * DAY_MS),
+                    reopened.listTimestamps("AAPL", 1, "day", 0L, Long.MAX_VALUE));
+            assertEquals(11, reopened.getCloseAtOrBefore("AAPL", Long.MAX_VALUE, 1, "day"), 1e-9);
+        }
+    }
+}
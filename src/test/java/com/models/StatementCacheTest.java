@@ -0,0 +1,90 @@
+package com.models;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StatementCacheTest {
+
+    @Test
+    void reusesStatementsAndIsolatesNestedUse() throws Exception {
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite::memory:");
+             StatementCache cache = new StatementCache(conn, 2)) {
+            String sql = "SELECT ? + 1";
+
+            try (PreparedStatement ps = cache.prepare(sql)) {
+                ps.setInt(1, 1);
+                try (ResultSet rs = ps.executeQuery()) {
+                    assertTrue(rs.next());
+                    assertEquals(2, rs.getInt(1));
+                }
+
+                // same SQL while the first is still open gets its own statement
+                try (PreparedStatement nested = cache.prepare(sql)) {
+                    assertNotSame(ps, nested);
+                    nested.setInt(1, 10);
+                    try (ResultSet rs = nested.executeQuery()) {
+                        assertTrue(rs.next());
+                        assertEquals(11, rs.getInt(1));
+                    }
+                }
+            }
+
+            try (PreparedStatement again = cache.prepare(sql)) {
+                again.setInt(1, 41);
+                try (ResultSet rs = again.executeQuery()) {
+                    assertTrue(rs.next());
+                    assertEquals(42, rs.getInt(1));
+                }
+            }
+            assertEquals(1L, cache.hits());
+            assertEquals(2L, cache.misses());
+        }
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedBeyondCapacity() throws Exception {
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite::memory:");
+             StatementCache cache = new StatementCache(conn, 2)) {
+            cache.prepare("SELECT 1").close();
+            cache.prepare("SELECT 2").close();
+            cache.prepare("SELECT 1").close(); // 2 is now eldest
+            cache.prepare("SELECT 3").close();
+
+            assertEquals(2, cache.size());
+            assertEquals(1L, cache.evictions());
+
+            cache.prepare("SELECT 1").close();
+            assertEquals(2L, cache.hits());
+        }
+    }
+
+    @Test
+    void dropsAnAbandonedBatchOnRelease() throws Exception {
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite::memory:");
+             StatementCache cache = new StatementCache(conn, 2)) {
+            conn.createStatement().execute("CREATE TABLE t(v INTEGER)");
+            String sql = "INSERT INTO t(v) VALUES (?)";
+
+            try (PreparedStatement ps = cache.prepare(sql)) {
+                ps.setInt(1, 1);
+                ps.addBatch(); // never executed, e.g. the caller threw
+            }
+            try (PreparedStatement ps = cache.prepare(sql)) {
+                ps.setInt(1, 2);
+                ps.addBatch();
+                assertEquals(1, ps.executeBatch().length);
+            }
+            try (ResultSet rs = conn.createStatement().executeQuery("SELECT group_concat(v) FROM t")) {
+                assertTrue(rs.next());
+                assertEquals("2", rs.getString(1));
+            }
+            assertEquals(1L, cache.hits());
+        }
+    }
+}
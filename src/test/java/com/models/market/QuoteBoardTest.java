@@ -0,0 +1,69 @@
+package com.models.market;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QuoteBoardTest {
+
+    @Test
+    void registerIsStableAndCaseInsensitive() {
+        QuoteBoard board = new QuoteBoard();
+        int aapl = board.register("aapl");
+        assertEquals(aapl, board.register(" AAPL "));
+        assertEquals(aapl, board.idOf("AAPL"));
+        assertEquals(-1, board.idOf("MSFT"));
+
+        // grows past the initial capacity without moving earlier ids
+        for (int i = 0; i < 100; i++) board.register("SYM" + i);
+        assertEquals(aapl, board.idOf("AAPL"));
+        assertEquals("SYM99", board.slot(board.idOf("SYM99")).symbol());
+    }
+
+    @Test
+    void boundItemSharesSlotAndKeepsEarlierValues() {
+        QuoteBoard board = new QuoteBoard();
+        TradeItem ti = new TradeItem("MSFT");
+        ti.setValues(new double[] { 99.0, 101.0, 100.0 });
+
+        ti.bind(board.slot(board.register("MSFT")));
+        assertEquals(101.0, board.snapshot("MSFT").price(), 1e-9);
+
+        board.slot("MSFT").updatePrice(110.0);
+        assertEquals(110.0, ti.getCurrentPrice(), 1e-9);
+        assertEquals(10.0, ti.getChangePercent(), 1e-9);
+    }
+
+    @Test
+    void readersNeverSeeTornQuotes() throws Exception {
+        QuoteBoard board = new QuoteBoard();
+        QuoteBoard.Slot slot = board.slot(board.register("AAPL"));
+        slot.setValues(1.0, 2.0, 1.0);
+
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicInteger torn = new AtomicInteger();
+        // every write keeps open == prevClose == price - 1
+        Thread writer = new Thread(() -> {
+            for (int i = 2; !stop.get(); i++) slot.setValues(i - 1, i, i - 1);
+        });
+        Thread[] readers = new Thread[3];
+        for (int r = 0; r < readers.length; r++) {
+            readers[r] = new Thread(() -> {
+                for (int i = 0; i < 200_000; i++) {
+                    QuoteBoard.Quote q = slot.snapshot();
+                    if (q.open() != q.prevClose() || q.price() - q.prevClose() != 1.0) torn.incrementAndGet();
+                }
+            });
+        }
+        writer.start();
+        for (Thread t : readers) t.start();
+        for (Thread t : readers) t.join();
+        stop.set(true);
+        writer.join();
+
+        assertEquals(0, torn.get());
+    }
+}
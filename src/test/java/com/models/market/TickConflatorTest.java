@@ -0,0 +1,76 @@
+package com.models.market;
+
+import com.etl.TradeSource;
+import com.etl.finnhub.ClientFacade;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TickConflatorTest {
+
+    @Test
+    void mergesTicksPerSymbolIntoOneBatch() {
+        List<Set<String>> batches = new ArrayList<>();
+        try (TickConflator c = new TickConflator(1_000, batches::add)) {
+            for (int i = 0; i < 500; i++) {
+                c.mark("AAPL");
+                c.mark(i % 2 == 0 ? "MSFT" : "NVDA");
+            }
+            assertEquals(3, c.flush());
+            assertEquals(0, c.flush()); // nothing new since
+
+            c.mark("AAPL");
+            assertEquals(1, c.flush());
+
+            assertEquals(List.of(Set.of("AAPL", "MSFT", "NVDA"), Set.of("AAPL")), batches);
+            TickConflator.Stats stats = c.stats();
+            assertEquals(1_001L, stats.ticksIn());
+            assertEquals(2L, stats.batchesOut());
+            assertEquals(4L, stats.symbolsOut());
+        }
+    }
+
+    @Test
+    void publishesOnItsOwnThreadOncePerFrame() throws Exception {
+        List<Set<String>> batches = new java.util.concurrent.CopyOnWriteArrayList<>();
+        try (TickConflator c = new TickConflator(20, batches::add)) {
+            c.start();
+            for (int i = 0; i < 10_000; i++) c.mark("AAPL");
+            long deadline = System.currentTimeMillis() + 2_000;
+            while (batches.isEmpty() && System.currentTimeMillis() < deadline) Thread.sleep(5);
+
+            assertFalse(batches.isEmpty());
+            assertTrue(c.stats().batchesOut() < c.stats().ticksIn());
+        }
+    }
+
+    @Test
+    void closingTheMarketEndsItsConflatorThread() throws Exception {
+        Set<Thread> before = conflatorThreads();
+        Market market = new Market(ClientFacade.offline(new TradeSource() {
+            @Override public void setTradeListener(TradeListener listener) { }
+            @Override public void subscribe(String symbol) { }
+            @Override public void unsubscribe(String symbol) { }
+        }));
+        // other tests' conflators may still be winding down, so follow only this one
+        Set<Thread> started = conflatorThreads();
+        started.removeAll(before);
+        assertEquals(1, started.size());
+        Thread t = started.iterator().next();
+
+        market.close();
+        t.join(2_000);
+        assertFalse(t.isAlive());
+    }
+
+    private static Set<Thread> conflatorThreads() {
+        Set<Thread> out = new java.util.HashSet<>();
+        for (Thread t : Thread.getAllStackTraces().keySet())
+            if (t.getName().equals("TickConflator") && t.isAlive()) out.add(t);
+        return out;
+    }
+}
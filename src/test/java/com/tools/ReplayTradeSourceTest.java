@@ -0,0 +1,74 @@
+package com.tools;
+
+import com.models.Database;
+import com.models.market.TradeListener;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplayTradeSourceTest {
+    private static final long DAY_MS = 86_400_000L;
+    private static final long T0 = 1_700_000_000_000L - 1_700_000_000_000L % DAY_MS;
+
+    private static List<String> replay(Database db) throws Exception {
+        List<String> out = new ArrayList<>();
+        ReplayTradeSource src = new ReplayTradeSource(
+                ReplayTradeSource.prices(db, List.of("AAPL", "MSFT"), 1, "day", T0, T0 + 10 * DAY_MS),
+                ReplayTradeSource.AS_FAST_AS_POSSIBLE);
+        src.setTradeListener(new TradeListener() {
+            @Override public void onTrade(String symbol, double price) { }
+            @Override public void onTrade(String symbol, double price, long ts, double volume) {
+                out.add(symbol + "@" + ts + "=" + price + "x" + volume);
+            }
+        });
+        src.subscribe("AAPL");
+        src.subscribe("MSFT");
+        src.start();
+        assertTrue(src.awaitCompletion(Duration.ofSeconds(5)));
+        assertEquals(0, src.skipped());
+        return out;
+    }
+
+    @Test
+    void replaysCandlesDeterministicallyInTimeOrder() throws Exception {
+        try (Database db = new Database(":memory:")) {
+            for (int d = 0; d < 3; d++) {
+                db.insertCandle("AAPL", 1, "day", T0 + d * DAY_MS, 10, 12, 9, 11, 400);
+                db.insertCandle("MSFT", 1, "day", T0 + d * DAY_MS, 50, 51, 47, 48, 40);
+            }
+
+            List<String> first = replay(db);
+            assertEquals(first, replay(db));
+            assertEquals(24, first.size());
+            // up bar: open, low, high, close; down bar: open, high, low, close
+            assertEquals("AAPL@" + T0 + "=10.0x100.0", first.get(0));
+            assertEquals("MSFT@" + T0 + "=50.0x10.0", first.get(1));
+            assertEquals("AAPL@" + (T0 + DAY_MS / 4) + "=9.0x100.0", first.get(2));
+            assertEquals("MSFT@" + (T0 + DAY_MS / 4) + "=51.0x10.0", first.get(3));
+        }
+    }
+
+    @Test
+    void skipsUnsubscribedSymbols() throws Exception {
+        try (Database db = new Database(":memory:")) {
+            db.insertCandle("AAPL", 1, "day", T0, 10, 12, 9, 11, 400);
+            db.insertCandle("MSFT", 1, "day", T0, 50, 51, 47, 48, 40);
+
+            List<String> seen = new ArrayList<>();
+            ReplayTradeSource src = new ReplayTradeSource(
+                    ReplayTradeSource.prices(db, List.of("AAPL", "MSFT"), 1, "day", T0, T0),
+                    ReplayTradeSource.AS_FAST_AS_POSSIBLE);
+            src.setTradeListener((symbol, price) -> seen.add(symbol));
+            src.subscribe("MSFT");
+            src.start();
+            assertTrue(src.awaitCompletion(Duration.ofSeconds(5)));
+
+            assertEquals(List.of("MSFT", "MSFT", "MSFT", "MSFT"), seen);
+            assertEquals(4, src.skipped());
+        }
+    }
+}